@@ -0,0 +1,54 @@
+package com.websearcher.impl;
+
+import com.websearcher.TextExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text extraction as done by UrlProcessorImpl.extractText :
+ * extract, then lower case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractBenchmark {
+
+    @Param({"streaming", "jsoup"})
+    public String extractor;
+
+    private TextExtractor textExtractor;
+    private List<String> pages;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        textExtractor = "jsoup".equals(extractor) ?
+                new JsoupTextExtractor() : new StreamingTextExtractor();
+        pages = PageCorpus.generate(50, 42);
+    }
+
+    /**
+     * One page per call
+     */
+    @Benchmark
+    public String extractText() {
+        String html = pages.get(next);
+        next = (next + 1) % pages.size();
+        return textExtractor.extractText(html).toLowerCase();
+    }
+}
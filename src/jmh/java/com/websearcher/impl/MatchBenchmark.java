@@ -0,0 +1,84 @@
+package com.websearcher.impl;
+
+import com.websearcher.AppUtils;
+import com.websearcher.MatchOffsets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AppUtils.findAllMatches over the extracted text of the corpus,
+ * decoded text and UTF-8 bytes as read from a text file.
+ * Sparse : keywords that hit a few times in the corpus.
+ * Dense : common words that hit every few words.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchBenchmark {
+
+    @Param({"sparse", "dense"})
+    public String hits;
+
+    private AppUtils appUtils;
+    private List<String> texts;
+    private List<ByteBuffer> utf8Texts;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        appUtils = new AppUtils(
+                "sparse".equals(hits) ?
+                        Arrays.asList(PageCorpus.RARE_WORD, "web searcher", "c++") :
+                        Arrays.asList("the", "web", "of the", "page"),
+                System.getProperty("java.io.tmpdir"));
+        StreamingTextExtractor extractor = new StreamingTextExtractor();
+        texts = new ArrayList<>();
+        utf8Texts = new ArrayList<>();
+        for (String html : PageCorpus.generate(50, 42)) {
+            String text = extractor.extractText(html).toLowerCase();
+            texts.add(text);
+            utf8Texts.add(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * One page per call
+     */
+    @Benchmark
+    public Map<String, MatchOffsets> findAllMatches() {
+        String text = texts.get(next);
+        next = (next + 1) % texts.size();
+        return appUtils.findAllMatches(text);
+    }
+
+    /**
+     * One page per call, matched on its bytes
+     */
+    @Benchmark
+    public Map<String, MatchOffsets> findAllMatchesUtf8() {
+        ByteBuffer utf8 = utf8Texts.get(next);
+        next = (next + 1) % utf8Texts.size();
+        return appUtils.findAllMatches(utf8);
+    }
+}
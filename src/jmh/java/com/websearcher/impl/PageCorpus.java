@@ -0,0 +1,100 @@
+package com.websearcher.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generated html pages shaped like the crawled ones : head with meta,
+ * inline style and script, navigation, paragraphs with links, entities
+ * and comments. Seeded so every run benchmarks the same corpus.
+ */
+final class PageCorpus {
+
+    /**
+     * Frequent words, "the" and "web" hit often
+     */
+    private static final String[] WORDS = {
+            "the", "web", "of", "and", "to", "a", "in", "for", "is", "on", "that", "by",
+            "this", "with", "you", "it", "not", "or", "be", "are", "from", "at", "as",
+            "your", "all", "have", "new", "more", "an", "was", "we", "will", "home",
+            "can", "us", "about", "if", "page", "my", "has", "search", "free", "but",
+            "our", "one", "other", "do", "no", "information", "time", "they", "site",
+            "he", "up", "may", "what", "which", "their", "news", "out", "use", "any",
+            "there", "see", "only", "so", "his", "when", "contact", "here", "business",
+            "who", "also", "now", "help", "get", "pm", "view", "online", "first", "am",
+            "been", "would", "how", "were", "me", "services", "some", "these", "click",
+            "its", "like", "service", "than", "find", "price", "date", "back", "top"
+    };
+
+    static final String RARE_WORD = "zyzzyva";  //One hit every few pages
+
+    private PageCorpus() {
+    }
+
+    /**
+     * @param pageCount
+     * @param seed
+     * @return pages of 20 to 120 KB
+     */
+    static List<String> generate(int pageCount, long seed) {
+        Random random = new Random(seed);
+        List<String> pages = new ArrayList<>();
+        for (int i = 0; i < pageCount; i++) {
+            pages.add(generatePage(random, 20 * 1024 + random.nextInt(100 * 1024)));
+        }
+        return pages;
+    }
+
+    private static String generatePage(Random random, int size) {
+
+        StringBuilder html = new StringBuilder(size + 4096);
+        html.append("<!DOCTYPE html>\n<html lang=\"en\"><head><meta charset=\"utf-8\">")
+                .append("<title>").append(sentence(random, 6)).append("</title>")
+                .append("<meta name=\"description\" content=\"").append(sentence(random, 20)).append("\">")
+                .append("<style>body{font-family:Arial,sans-serif;margin:0}.nav a{color:#333}</style>")
+                .append("<script>window.dataLayer=window.dataLayer||[];function gtag(){dataLayer.push(arguments);}")
+                .append("gtag('js',new Date());if(a<b&&c>d){track('the web');}</script>")
+                .append("</head><body><div class=\"nav\"><ul>");
+        for (int i = 0; i < 10; i++) {
+            html.append("<li><a href=\"/").append(WORDS[random.nextInt(WORDS.length)]).append("\">")
+                    .append(WORDS[random.nextInt(WORDS.length)]).append("</a></li>");
+        }
+        html.append("</ul></div>\n<!-- main content -->\n<div id=\"main\">");
+
+        while (html.length() < size) {
+            html.append("<h2>").append(sentence(random, 5)).append("</h2><p>");
+            int sentences = 3 + random.nextInt(6);
+            for (int i = 0; i < sentences; i++) {
+                html.append(sentence(random, 8 + random.nextInt(16)));
+                switch (random.nextInt(8)) {
+                    case 0:
+                        html.append(" <a href=\"https://example.com/").append(random.nextInt(10000))
+                                .append("\">").append(sentence(random, 3)).append("</a>");
+                        break;
+                    case 1:
+                        html.append(" &amp; <b>").append(sentence(random, 2)).append("</b> &nbsp;&copy;");
+                        break;
+                    default:
+                        break;
+                }
+                html.append(". ");
+            }
+            html.append("</p>\n");
+        }
+        return html.append("</div><footer>&copy; 2019 ").append(sentence(random, 4))
+                .append("</footer></body></html>").toString();
+    }
+
+    private static String sentence(Random random, int wordCount) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            String word = random.nextInt(20000) == 0 ? RARE_WORD : WORDS[random.nextInt(WORDS.length)];
+            sentence.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+        }
+        return sentence.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package com.websearcher.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ResultCollector;
+import com.websearcher.ResultWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResultCollectorImpl.setResult from as many threads as the search stage,
+ * the writer discards the results so the hand off is what is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ResultCollectorBenchmark {
+
+    private static final Map<String, MatchOffsets> MATCHES = ImmutableMap.of(
+            "the", MatchOffsets.of(3, 120, 431, 2090, 4000),
+            "web", MatchOffsets.of(77));
+
+    private ResultCollector resultCollector;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        resultCollector = new ResultCollectorImpl(new ResultWriter() {
+
+            @Override
+            public void writeResult(String url, Map<String, MatchOffsets> searchIndexMap) {
+            }
+
+            @Override
+            public void writeError(String url, String error) {
+            }
+
+            @Override
+            public void writeSummary(ResultCollector resultCollector) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        }, new NoProgressJournal());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        resultCollector.close();
+    }
+
+    @Benchmark
+    public void setResult() {
+        resultCollector.setResult("example.com/page", MATCHES);
+    }
+}
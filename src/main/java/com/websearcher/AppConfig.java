@@ -0,0 +1,455 @@
+package com.websearcher;
+
+/**
+ * Run time settings picked from the command line.
+ * Defaults keep the original behaviour.
+ */
+public final class AppConfig {
+
+    /**
+     * Where raw and text documents are kept
+     */
+    public enum StorageLayout {
+        FLAT,       //One file per url under raw/ and text/
+        SHARDED,    //One file per url in hashed sub folders, file names url encoded
+        PACK        //Compressed documents appended to pack files under packs/
+    }
+
+    /**
+     * How the results are written
+     */
+    public enum ResultFormat {
+        TEXT("txt"),        //A line per url as it reads best
+        JSONL("jsonl"),     //A JSON object per line
+        BINARY("bin");      //Length prefixed records, offsets as varint deltas
+
+        private final String fileExtension;
+
+        ResultFormat(String fileExtension) {
+            this.fileExtension = fileExtension;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+    }
+
+    private boolean inMemory = false;   //Fetch, extract and search without disk round trips
+    private boolean saveFiles = false;  //In memory mode : save raw and text files in the background
+    private boolean jsoupExtractor = false; //Extract text through the jsoup DOM instead of streaming
+    private int fetchThreadCount = Constants.THREAD_COUNT;
+    private int extractThreadCount = Constants.EXTRACT_THREAD_COUNT;
+    private int searchThreadCount = Constants.SEARCH_THREAD_COUNT;
+    private boolean asyncFetch = false; //Non blocking fetches, no thread per request in flight
+    private boolean http2 = false;      //Async fetches over HTTP/2 where the server speaks it
+    private boolean compression = true; //Ask for gzip / deflate responses
+    private int maxInFlight = Constants.ASYNC_MAX_IN_FLIGHT;
+    private int maxRequestsPerHost = Constants.MAX_REQUESTS_PER_HOST;
+    private int hostRequestInterval = Constants.HOST_REQUEST_INTERVAL;
+    private boolean bloomDedup = false; //Dedup urls with a Bloom filter instead of an exact set
+    private double dedupFalsePositiveRate = Constants.DEDUP_FALSE_POSITIVE_RATE;
+    private int expectedUrlCount = Constants.EXPECTED_URL_COUNT;
+    private boolean resume = true;      //Replay the journal of an interrupted run
+    private boolean httpCache = false;  //Keep responses across runs, revalidate with conditional GETs
+    private int cacheMaxAge = Constants.HTTP_CACHE_MAX_AGE;
+    private int cacheMaxSize = Constants.HTTP_CACHE_MAX_SIZE;
+    private boolean buildIndex = false; //Index the extracted text for later searches
+    private boolean searchIndex = false;    //Search the index instead of crawling
+    private boolean rescanText = false;     //Search the text files of an earlier run instead of crawling
+    private StorageLayout storageLayout = StorageLayout.FLAT;
+    private ResultFormat resultFormat = ResultFormat.TEXT;
+    private String seedUrl = Constants.INPUT_FILE_URL;  //CSV of the urls to crawl
+    private boolean adaptiveConcurrency = true;    //Adjust the fetches in flight to latency and errors
+    private int minConcurrency = Constants.MIN_CONCURRENCY;
+    private int connectionTimeout = Constants.CONNECTION_TIMEOUT;    //Seconds
+    private int stageQueueSize = Constants.STAGE_QUEUE_SIZE;
+    private int schedulerQueueSize = Constants.SCHEDULER_QUEUE_SIZE;
+    private int seedBatchSize = Constants.SEED_BATCH_SIZE;
+    private int crawlDepth = Constants.CRAWL_DEPTH;     //Links followed from a seed url, 0 to crawl the seed urls only
+    private int maxPagesPerHost = Constants.MAX_PAGES_PER_HOST;
+    private int frontierMemorySize = Constants.FRONTIER_MEMORY_SIZE;
+    private int frontierSegmentSize = Constants.FRONTIER_SEGMENT_SIZE;
+    private int maxConnectionsPerRoute = Constants.MAX_CONNECTIONS_PER_ROUTE;
+    private int keepAliveTimeout = Constants.KEEP_ALIVE_TIMEOUT;    //Seconds
+    private int idleConnectionTimeout = Constants.IDLE_CONNECTION_TIMEOUT;    //Seconds
+    private int downloadBufferSize = Constants.DOWNLOAD_BUFFER_SIZE;
+    private int sideOutputThreadCount = Constants.SIDE_OUTPUT_THREAD_COUNT;
+    private int sideOutputQueueSize = Constants.SIDE_OUTPUT_QUEUE_SIZE;
+    private int journalSyncBatch = Constants.JOURNAL_SYNC_BATCH;
+    private int indexSegmentSize = Constants.INDEX_SEGMENT_SIZE;    //Bytes
+    private int metricsLogInterval = Constants.METRICS_LOG_INTERVAL;    //Seconds
+    private long packFileSize = Constants.PACK_FILE_SIZE;    //Bytes
+    private int packCompressionLevel = Constants.PACK_COMPRESSION_LEVEL;
+
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    public void setInMemory(boolean inMemory) {
+        this.inMemory = inMemory;
+    }
+
+    public boolean isSaveFiles() {
+        return saveFiles;
+    }
+
+    public void setSaveFiles(boolean saveFiles) {
+        this.saveFiles = saveFiles;
+    }
+
+    public boolean isJsoupExtractor() {
+        return jsoupExtractor;
+    }
+
+    public void setJsoupExtractor(boolean jsoupExtractor) {
+        this.jsoupExtractor = jsoupExtractor;
+    }
+
+    public int getFetchThreadCount() {
+        return fetchThreadCount;
+    }
+
+    public void setFetchThreadCount(int fetchThreadCount) {
+        this.fetchThreadCount = fetchThreadCount;
+    }
+
+    public int getExtractThreadCount() {
+        return extractThreadCount;
+    }
+
+    public void setExtractThreadCount(int extractThreadCount) {
+        this.extractThreadCount = extractThreadCount;
+    }
+
+    public int getSearchThreadCount() {
+        return searchThreadCount;
+    }
+
+    public void setSearchThreadCount(int searchThreadCount) {
+        this.searchThreadCount = searchThreadCount;
+    }
+
+    public boolean isAsyncFetch() {
+        return asyncFetch;
+    }
+
+    public void setAsyncFetch(boolean asyncFetch) {
+        this.asyncFetch = asyncFetch;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    public int getHostRequestInterval() {
+        return hostRequestInterval;
+    }
+
+    public void setHostRequestInterval(int hostRequestInterval) {
+        this.hostRequestInterval = hostRequestInterval;
+    }
+
+    public boolean isBloomDedup() {
+        return bloomDedup;
+    }
+
+    public void setBloomDedup(boolean bloomDedup) {
+        this.bloomDedup = bloomDedup;
+    }
+
+    public double getDedupFalsePositiveRate() {
+        return dedupFalsePositiveRate;
+    }
+
+    public void setDedupFalsePositiveRate(double dedupFalsePositiveRate) {
+        this.dedupFalsePositiveRate = dedupFalsePositiveRate;
+    }
+
+    public int getExpectedUrlCount() {
+        return expectedUrlCount;
+    }
+
+    public void setExpectedUrlCount(int expectedUrlCount) {
+        this.expectedUrlCount = expectedUrlCount;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public boolean isHttpCache() {
+        return httpCache;
+    }
+
+    public void setHttpCache(boolean httpCache) {
+        this.httpCache = httpCache;
+    }
+
+    public int getCacheMaxAge() {
+        return cacheMaxAge;
+    }
+
+    public void setCacheMaxAge(int cacheMaxAge) {
+        this.cacheMaxAge = cacheMaxAge;
+    }
+
+    public int getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(int cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+    public boolean isBuildIndex() {
+        return buildIndex;
+    }
+
+    public void setBuildIndex(boolean buildIndex) {
+        this.buildIndex = buildIndex;
+    }
+
+    public boolean isSearchIndex() {
+        return searchIndex;
+    }
+
+    public void setSearchIndex(boolean searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    public boolean isRescanText() {
+        return rescanText;
+    }
+
+    public void setRescanText(boolean rescanText) {
+        this.rescanText = rescanText;
+    }
+
+    public StorageLayout getStorageLayout() {
+        return storageLayout;
+    }
+
+    public void setStorageLayout(StorageLayout storageLayout) {
+        this.storageLayout = storageLayout;
+    }
+
+    public ResultFormat getResultFormat() {
+        return resultFormat;
+    }
+
+    public void setResultFormat(ResultFormat resultFormat) {
+        this.resultFormat = resultFormat;
+    }
+
+    public String getSeedUrl() {
+        return seedUrl;
+    }
+
+    public void setSeedUrl(String seedUrl) {
+        this.seedUrl = seedUrl;
+    }
+
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public void setMinConcurrency(int minConcurrency) {
+        this.minConcurrency = minConcurrency;
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public int getStageQueueSize() {
+        return stageQueueSize;
+    }
+
+    public void setStageQueueSize(int stageQueueSize) {
+        this.stageQueueSize = stageQueueSize;
+    }
+
+    public int getSchedulerQueueSize() {
+        return schedulerQueueSize;
+    }
+
+    public void setSchedulerQueueSize(int schedulerQueueSize) {
+        this.schedulerQueueSize = schedulerQueueSize;
+    }
+
+    public int getSeedBatchSize() {
+        return seedBatchSize;
+    }
+
+    public void setSeedBatchSize(int seedBatchSize) {
+        this.seedBatchSize = seedBatchSize;
+    }
+
+    public int getCrawlDepth() {
+        return crawlDepth;
+    }
+
+    public void setCrawlDepth(int crawlDepth) {
+        this.crawlDepth = crawlDepth;
+    }
+
+    public boolean isCrawl() {
+        return crawlDepth > 0;
+    }
+
+    public int getMaxPagesPerHost() {
+        return maxPagesPerHost;
+    }
+
+    public void setMaxPagesPerHost(int maxPagesPerHost) {
+        this.maxPagesPerHost = maxPagesPerHost;
+    }
+
+    public int getFrontierMemorySize() {
+        return frontierMemorySize;
+    }
+
+    public void setFrontierMemorySize(int frontierMemorySize) {
+        this.frontierMemorySize = frontierMemorySize;
+    }
+
+    public int getFrontierSegmentSize() {
+        return frontierSegmentSize;
+    }
+
+    public void setFrontierSegmentSize(int frontierSegmentSize) {
+        this.frontierSegmentSize = frontierSegmentSize;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(int keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    public int getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(int idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public int getDownloadBufferSize() {
+        return downloadBufferSize;
+    }
+
+    public void setDownloadBufferSize(int downloadBufferSize) {
+        this.downloadBufferSize = downloadBufferSize;
+    }
+
+    public int getSideOutputThreadCount() {
+        return sideOutputThreadCount;
+    }
+
+    public void setSideOutputThreadCount(int sideOutputThreadCount) {
+        this.sideOutputThreadCount = sideOutputThreadCount;
+    }
+
+    public int getSideOutputQueueSize() {
+        return sideOutputQueueSize;
+    }
+
+    public void setSideOutputQueueSize(int sideOutputQueueSize) {
+        this.sideOutputQueueSize = sideOutputQueueSize;
+    }
+
+    public int getJournalSyncBatch() {
+        return journalSyncBatch;
+    }
+
+    public void setJournalSyncBatch(int journalSyncBatch) {
+        this.journalSyncBatch = journalSyncBatch;
+    }
+
+    public int getIndexSegmentSize() {
+        return indexSegmentSize;
+    }
+
+    public void setIndexSegmentSize(int indexSegmentSize) {
+        this.indexSegmentSize = indexSegmentSize;
+    }
+
+    public int getMetricsLogInterval() {
+        return metricsLogInterval;
+    }
+
+    public void setMetricsLogInterval(int metricsLogInterval) {
+        this.metricsLogInterval = metricsLogInterval;
+    }
+
+    public long getPackFileSize() {
+        return packFileSize;
+    }
+
+    public void setPackFileSize(long packFileSize) {
+        this.packFileSize = packFileSize;
+    }
+
+    public int getPackCompressionLevel() {
+        return packCompressionLevel;
+    }
+
+    public void setPackCompressionLevel(int packCompressionLevel) {
+        this.packCompressionLevel = packCompressionLevel;
+    }
+}
@@ -1,13 +1,27 @@
 package com.websearcher;
 
+import com.google.common.hash.Hashing;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,13 +32,21 @@ import java.util.regex.Pattern;
  */
 public final class AppUtils {
 
+    private static final Pattern SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*://");  //Leading scheme of a url
+
     private final Path rootFolderPath;  //Root path
     private final Path rawFileRoot;     //Raw files are HTML files downloaded
     private final Path textFileRoot;    //text files are text files extracted from the html files
-    private final Pattern pattern;      //Regex pattern to match
+    private final Path cacheFolderPath; //HTTP responses kept between runs
+    private final Path indexFolderPath; //Inverted index of the extracted text
+    private final Path packFolderPath;  //Packed documents
+    private final Path frontierFolderPath;  //Crawl frontier spilled to disk
+    private final boolean shardedFolders;   //Raw and text files in hashed sub folders
+    private final KeywordMatcher keywordMatcher;    //Matches all the keywords in one pass
+    private final ByteKeywordMatcher byteKeywordMatcher;    //Matches UTF-8 text without decoding it
 
     /**
-     * Constructor initializes directories
+     * Constructor for a single keyword
      *
      * @param keyword
      * @param outputFolder
@@ -33,14 +55,52 @@ public final class AppUtils {
     public AppUtils(
             String keyword,
             String outputFolder) throws IOException {
+        this(Collections.singletonList(keyword), outputFolder);
+    }
+
+    /**
+     * Constructor for the flat folder layout
+     *
+     * @param keywords : lower cased, blanks and duplicates are dropped
+     * @param outputFolder
+     * @throws IOException
+     */
+    public AppUtils(
+            List<String> keywords,
+            String outputFolder) throws IOException {
+        this(keywords, outputFolder, false);
+    }
+
+    /**
+     * Constructor initializes directories
+     *
+     * @param keywords : lower cased, blanks and duplicates are dropped
+     * @param outputFolder
+     * @param shardedFolders : raw and text files go to hashed sub folders
+     * @throws IOException
+     */
+    public AppUtils(
+            List<String> keywords,
+            String outputFolder,
+            boolean shardedFolders) throws IOException {
 
+        this.shardedFolders = shardedFolders;
         rootFolderPath = Paths.get(outputFolder);
         rawFileRoot = Paths.get(rootFolderPath.toString(), Constants.RAW_FOLDER);
         textFileRoot = Paths.get(rootFolderPath.toString(), Constants.TEXT_FOLDER);
+        cacheFolderPath = Paths.get(rootFolderPath.toString(), Constants.CACHE_FOLDER);
+        indexFolderPath = Paths.get(rootFolderPath.toString(), Constants.INDEX_FOLDER);
+        packFolderPath = Paths.get(rootFolderPath.toString(), Constants.PACK_FOLDER);
+        frontierFolderPath = Paths.get(rootFolderPath.toString(), Constants.FRONTIER_FOLDER);
 
-        String regexString = MessageFormat.format(
-                "\\b{0}\\b", keyword.toLowerCase());
-        pattern = Pattern.compile(regexString);
+        Set<String> uniqueKeywords = new LinkedHashSet<>();
+        for (String keyword : keywords) {
+            if (!StringUtils.isBlank(keyword)) {
+                uniqueKeywords.add(keyword.trim().toLowerCase());
+            }
+        }
+        keywordMatcher = new KeywordMatcher(new ArrayList<>(uniqueKeywords));
+        byteKeywordMatcher = new ByteKeywordMatcher(new ArrayList<>(uniqueKeywords));
     }
 
     public Path getRootFolderPath() {
@@ -55,6 +115,30 @@ public final class AppUtils {
         return textFileRoot;
     }
 
+    public Path getCacheFolderPath() {
+        return cacheFolderPath;
+    }
+
+    public Path getIndexFolderPath() {
+        return indexFolderPath;
+    }
+
+    public Path getPackFolderPath() {
+        return packFolderPath;
+    }
+
+    public Path getFrontierFolderPath() {
+        return frontierFolderPath;
+    }
+
+    /**
+     * Keywords searched for, lower cased
+     * @return
+     */
+    public List<String> getKeywords() {
+        return keywordMatcher.getKeywords();
+    }
+
     /**
      * Given a fragment like walmart.com, create the url
      * like http://walmart.com
@@ -63,7 +147,34 @@ public final class AppUtils {
      * @return
      */
     public String getUrl(String urlFragment) {
-        return (urlFragment.startsWith("http://")? "" : "http://")+urlFragment;
+        return (getSchemeEnd(urlFragment) < 0 ? "http://" : "")+urlFragment;
+    }
+
+    /**
+     * Host part of the url fragment, lower cased
+     * @param urlFragment
+     * @return
+     */
+    public String getHost(String urlFragment) {
+        int start = getSchemeEnd(urlFragment);
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < urlFragment.length() && "/?#:".indexOf(urlFragment.charAt(end)) < 0) {
+            end++;
+        }
+        return urlFragment.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Only a scheme at the start counts, a url in the query
+     * like a.com/r?u=http://b.com is not one
+     *
+     * @param url
+     * @return index of the :// after the scheme, -1 if there is no scheme
+     */
+    private static int getSchemeEnd(String url) {
+        Matcher matcher = SCHEME.matcher(url);
+        return matcher.lookingAt() ? matcher.end() - 3 : -1;
     }
 
     /**
@@ -74,6 +185,14 @@ public final class AppUtils {
         return Paths.get(rootFolderPath.toString(), "urls.txt");
     }
 
+    /**
+     * Path of the progress journal, only present while a run is incomplete
+     * @return
+     */
+    public Path getJournalFilePath() {
+        return Paths.get(rootFolderPath.toString(), "journal.bin");
+    }
+
     /**
      * Path to where the HTML file pointed to by the fragemnt must be stored
      * locally.
@@ -81,7 +200,7 @@ public final class AppUtils {
      * @return
      */
     public Path getLocalRawFilePath(String urlFragment) {
-        return Paths.get(rawFileRoot.toString(), urlFragment+".html");
+        return getDocumentPath(rawFileRoot, urlFragment, ".html");
     }
 
     /**
@@ -90,20 +209,80 @@ public final class AppUtils {
      * @return
      */
     public Path getLocalTextFilePath(String urlFragment) {
-        return Paths.get(textFileRoot.toString(), urlFragment+".txt");
+        return getDocumentPath(textFileRoot, urlFragment, ".txt");
+    }
+
+    /**
+     * Url fragment a text file was saved for, reverse of getLocalTextFilePath.
+     * The // of a scheme was folded by the path and is put back.
+     *
+     * @param textFilePath : under the text file root
+     * @return
+     */
+    public String getTextFileFragment(Path textFilePath) {
+        if (shardedFolders) {
+            String fileName = textFilePath.getFileName().toString();
+            return URLDecoder.decode(
+                    fileName.endsWith(".txt") ? fileName.substring(0, fileName.length() - 4) : fileName,
+                    StandardCharsets.UTF_8);
+        }
+        String fragment = textFileRoot.relativize(textFilePath).toString()
+                .replace(File.separatorChar, '/');
+        if (fragment.endsWith(".txt")) {
+            fragment = fragment.substring(0, fragment.length() - 4);
+        }
+        int schemeEnd = fragment.indexOf(":/");
+        if (schemeEnd > 0 && StringUtils.isAlpha(fragment.substring(0, schemeEnd)) &&
+                !fragment.startsWith("://", schemeEnd)) {
+            fragment = fragment.substring(0, schemeEnd) + "://" + fragment.substring(schemeEnd + 2);
+        }
+        return fragment;
+    }
+
+    /**
+     * Flat : the fragment is the path under the root, / make sub folders.
+     * Sharded : two levels of sub folders picked by the hash of the fragment
+     * keep folders small, the url encoded fragment is the file name.
+     *
+     * @param root
+     * @param urlFragment
+     * @param suffix
+     * @return
+     * @throws IllegalArgumentException : the path of the fragment leaves the root, e.g. with ..
+     */
+    private Path getDocumentPath(Path root, String urlFragment, String suffix) {
+        if (!shardedFolders) {
+            Path path = Paths.get(root.toString(), urlFragment + suffix);
+            if (!path.normalize().startsWith(root.normalize())) {
+                throw new IllegalArgumentException("Url leaves the document folder : " + urlFragment);
+            }
+            return path;
+        }
+        String hash = Hashing.murmur3_32().hashString(urlFragment, StandardCharsets.UTF_8).toString();
+        return Paths.get(root.toString(), hash.substring(0, 2), hash.substring(2, 4),
+                URLEncoder.encode(urlFragment, StandardCharsets.UTF_8) + suffix);
+    }
+
+    /**
+     * Metrics dumped at the end of the run
+     * @return
+     */
+    public Path getMetricsFilePath() {
+        return Paths.get(rootFolderPath.toString(), "metrics.txt");
     }
 
     /**
      * Final Results path
+     * @param resultFormat
      * @return
      */
-    public Path getResultsFilePath() {
-        return Paths.get(rootFolderPath.toString(), "results.txt");
+    public Path getResultsFilePath(AppConfig.ResultFormat resultFormat) {
+        return Paths.get(rootFolderPath.toString(), "results." + resultFormat.getFileExtension());
     }
 
     /**
-     * Called on the value in the CSV to remove the trailing / if
-     * it exists.
+     * Called on the value in the CSV to canonicalize it and remove
+     * the trailing / if it exists.
      *
      * @param urlFragment
      * @return
@@ -112,22 +291,139 @@ public final class AppUtils {
         if (StringUtils.isBlank(urlFragment)) {
             return null;
         }
+        urlFragment = canonicalize(urlFragment.trim());
         return urlFragment.endsWith("/") ?
                 urlFragment.substring(0, urlFragment.length()-1) : urlFragment;
     }
 
     /**
-     * Find matches for the keyword in the given text.
+     * Fragment of a link found on a page, resolved against the url of the page
+     * and normalized like the fragments of the CSV
      *
-     * @param text
+     * @param pageUrl : as getUrl gives it
+     * @param href : as written in the page
+     * @return null if the link is not http(s), cannot be parsed or climbs above
+     * the root of its host (crawled pages are not trusted, .. would leave the output folder)
+     */
+    public String resolveLink(String pageUrl, String href) {
+
+        if (StringUtils.isBlank(href)) {
+            return null;
+        }
+        try {
+            URI base = new URI(pageUrl);
+            if (StringUtils.isEmpty(base.getRawPath())) {
+                base = base.resolve("/");   //URI.resolve drops the / between host and a relative path
+            }
+            URI link = base.resolve(href.trim()).normalize();
+            String scheme = link.getScheme();
+            if (link.getHost() == null ||
+                    !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) ||
+                    link.getRawPath().equals("/..") || link.getRawPath().startsWith("/../")) {
+                return null;
+            }
+            return normalizeFragment(link.toString());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Same url, same fragment : http:// is dropped as it is the default,
+     * scheme and host are lower cased, the default port and the #fragment
+     * are dropped. The path is case sensitive and kept as is.
+     *
+     * @param url
      * @return
      */
-    public List<Integer> findAllMatches(String text) {
+    private static String canonicalize(String url) {
+
+        String scheme = "http";
+        int schemeEnd = getSchemeEnd(url);
+        if (schemeEnd > 0) {
+            scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+            url = url.substring(schemeEnd + 3);
+        }
+
+        int hostEnd = 0;
+        while (hostEnd < url.length() && "/?#".indexOf(url.charAt(hostEnd)) < 0) {
+            hostEnd++;
+        }
+        String host = url.substring(0, hostEnd).toLowerCase(Locale.ROOT);
+        String defaultPort = "http".equals(scheme) ? ":80" : "https".equals(scheme) ? ":443" : null;
+        if (defaultPort != null && host.endsWith(defaultPort)) {
+            host = host.substring(0, host.length() - defaultPort.length());
+        }
+
+        String path = url.substring(hostEnd);
+        int fragmentStart = path.indexOf('#');
+        if (fragmentStart >= 0) {
+            path = path.substring(0, fragmentStart);
+        }
+        return ("http".equals(scheme) ? "" : scheme + "://") + host + path;
+    }
+
+    /**
+     * Find matches for all the keywords in the given text.
+     *
+     * @param text
+     * @return indices per keyword, only keywords that matched are present
+     */
+    public Map<String, MatchOffsets> findAllMatches(CharSequence text) {
+
+        Map<String, MatchOffsets> searchResults = new LinkedHashMap<>();
+        List<String> keywords = keywordMatcher.getKeywords();
+        keywordMatcher.findAll(text, (keywordIndex, start) ->
+                searchResults.computeIfAbsent(
+                        keywords.get(keywordIndex), keyword -> new MatchOffsets()).add(start));
+        for (MatchOffsets matchOffsets : searchResults.values()) {
+            matchOffsets.compact();
+        }
+        return searchResults;
+    }
+
+    /**
+     * Same matches as findAllMatches on the decoded text.
+     * Up to BYTE_SEARCH_MAX_KEYWORDS keywords are matched on the bytes,
+     * more are decoded for the single pass matcher.
+     *
+     * @param utf8 : text between position and limit
+     * @return indices per keyword, only keywords that matched are present
+     */
+    public Map<String, MatchOffsets> findAllMatches(ByteBuffer utf8) {
+
+        List<String> keywords = byteKeywordMatcher.getKeywords();
+        if (keywords.size() > Constants.BYTE_SEARCH_MAX_KEYWORDS) {
+            return findAllMatches(StandardCharsets.UTF_8.decode(utf8.duplicate()));  //Malformed input replaced
+        }
+
+        MatchOffsets[] matches = new MatchOffsets[keywords.size()];
+        int[] firstEnds = new int[keywords.size()];
+        byteKeywordMatcher.findAll(utf8, (keywordIndex, start) -> {
+            if (matches[keywordIndex] == null) {
+                matches[keywordIndex] = new MatchOffsets();
+                firstEnds[keywordIndex] = start + keywords.get(keywordIndex).length();
+            }
+            matches[keywordIndex].add(start);
+        });
+
+        /**
+         * Keywords in the order the single pass matcher first reports them :
+         * by end of the first match, the longer keyword first on a tie
+         */
+        List<Integer> found = new ArrayList<>();
+        for (int keywordIndex = 0; keywordIndex < matches.length; keywordIndex++) {
+            if (matches[keywordIndex] != null) {
+                found.add(keywordIndex);
+            }
+        }
+        found.sort(Comparator.<Integer>comparingInt(keywordIndex -> firstEnds[keywordIndex])
+                .thenComparing(keywordIndex -> -keywords.get(keywordIndex).length()));
 
-        List<Integer> searchResults = new ArrayList<>();
-        Matcher matcher = pattern.matcher(text);
-        while(matcher.find()) {
-            searchResults.add(matcher.start());
+        Map<String, MatchOffsets> searchResults = new LinkedHashMap<>();
+        for (int keywordIndex : found) {
+            matches[keywordIndex].compact();
+            searchResults.put(keywords.get(keywordIndex), matches[keywordIndex]);
         }
         return searchResults;
     }
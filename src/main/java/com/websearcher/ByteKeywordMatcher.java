@@ -0,0 +1,164 @@
+package com.websearcher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyword matching straight on UTF-8 bytes, no decoding to chars.
+ *
+ * Each keyword is searched with a Boyer-Moore-Horspool skip loop, ASCII letters
+ * fold case on the fly. Matches follow the same \bkeyword\b semantics as
+ * KeywordMatcher and are reported at their char offset, so on valid UTF-8
+ * results are the same as KeywordMatcher on the decoded text.
+ * One pass per keyword, suited to a handful of keywords.
+ */
+public final class ByteKeywordMatcher {
+
+    private final List<String> keywords;
+    private final byte[][] patterns;    //UTF-8 of each keyword, ASCII lower cased
+    private final int[][] skips;        //Per keyword, shift per folded byte value
+
+    /**
+     * @param keywords : non blank keywords, matched as given apart from ASCII case
+     */
+    public ByteKeywordMatcher(List<String> keywords) {
+
+        if (keywords.isEmpty()) {
+            throw new IllegalArgumentException("At least one keyword is required");
+        }
+        this.keywords = Collections.unmodifiableList(new ArrayList<>(keywords));
+        patterns = new byte[keywords.size()][];
+        skips = new int[keywords.size()][];
+        for (int keywordIndex = 0; keywordIndex < keywords.size(); keywordIndex++) {
+            String keyword = keywords.get(keywordIndex);
+            if (keyword.isEmpty()) {
+                throw new IllegalArgumentException("Keywords cannot be empty");
+            }
+            byte[] pattern = keyword.getBytes(StandardCharsets.UTF_8);
+            int[] skip = new int[256];
+            for (int i = 0; i < pattern.length; i++) {
+                pattern[i] = fold(pattern[i]);
+            }
+            Arrays.fill(skip, pattern.length);
+            for (int i = 0; i < pattern.length - 1; i++) {
+                skip[pattern[i] & 0xFF] = pattern.length - 1 - i;
+            }
+            patterns[keywordIndex] = pattern;
+            skips[keywordIndex] = skip;
+        }
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * Find all the keyword matches, keyword by keyword.
+     * The buffer position and limit are left as they are.
+     *
+     * @param utf8 : text between position and limit
+     * @param listener : gets the matches of each keyword in order, start is a char offset
+     */
+    public void findAll(ByteBuffer utf8, KeywordMatcher.MatchListener listener) {
+        for (int keywordIndex = 0; keywordIndex < patterns.length; keywordIndex++) {
+            findAll(utf8, keywordIndex, listener);
+        }
+    }
+
+    private void findAll(ByteBuffer utf8, int keywordIndex, KeywordMatcher.MatchListener listener) {
+
+        byte[] pattern = patterns[keywordIndex];
+        int[] skip = skips[keywordIndex];
+        int base = utf8.position();
+        int end = utf8.limit();
+        int last = pattern.length - 1;
+
+        int counted = base;         //Bytes before counted are converted to chars
+        int chars = 0;
+
+        int pos = base;
+        while (pos + last < end) {
+            byte tail = fold(utf8.get(pos + last));
+            if (tail == pattern[last] && matchesAt(utf8, pos, pattern) &&
+                    isBoundary(utf8, base, end, pos) &&
+                    isBoundary(utf8, base, end, pos + pattern.length)) {
+                chars += countChars(utf8, counted, pos);
+                counted = pos;
+                listener.onMatch(keywordIndex, chars);
+                pos += pattern.length;      //Matches of a keyword do not overlap
+                continue;
+            }
+            pos += skip[tail & 0xFF];
+        }
+    }
+
+    private static boolean matchesAt(ByteBuffer utf8, int pos, byte[] pattern) {
+        for (int i = pattern.length - 2; i >= 0; i--) {
+            if (fold(utf8.get(pos + i)) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * UTF-16 chars of the bytes from start to end :
+     * one per lead byte, two for the 4 byte sequences
+     */
+    private static int countChars(ByteBuffer utf8, int start, int end) {
+        int chars = 0;
+        for (int i = start; i < end; i++) {
+            int b = utf8.get(i) & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                chars += b >= 0xF0 ? 2 : 1;
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * Same as \b : word character on exactly one side of the offset
+     */
+    private static boolean isBoundary(ByteBuffer utf8, int base, int end, int offset) {
+        boolean wordBefore = offset > base && isWordChar(codePointBefore(utf8, base, offset));
+        boolean wordAfter = offset < end && isWordChar(codePointAt(utf8, end, offset));
+        return wordBefore != wordAfter;
+    }
+
+    private static int codePointAt(ByteBuffer utf8, int end, int offset) {
+
+        int b = utf8.get(offset) & 0xFF;
+        if (b < 0x80) {
+            return b;
+        }
+        int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+        if (length == 1 || offset + length > end) {
+            return 0xFFFD;      //Malformed, decoded as the replacement character
+        }
+        int codePoint = b & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            codePoint = (codePoint << 6) | (utf8.get(offset + i) & 0x3F);
+        }
+        return codePoint;
+    }
+
+    private static int codePointBefore(ByteBuffer utf8, int base, int offset) {
+        int start = offset - 1;
+        while (start > base && start > offset - 4 && (utf8.get(start) & 0xC0) == 0x80) {
+            start--;
+        }
+        return codePointAt(utf8, offset, start);
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b;
+    }
+}
@@ -6,9 +6,100 @@ package com.websearcher;
 public interface Constants {
 
     int CONNECTION_TIMEOUT = 10;
-    int THREAD_COUNT = 20;
+
+    /**
+     * Pipeline stage sizes.
+     * Fetching is I/O bound, extracting and searching are CPU bound.
+     */
+    int THREAD_COUNT = 20;      //Fetch threads
+    int EXTRACT_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    int SEARCH_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    int STAGE_QUEUE_SIZE = 100; //Pages waiting for a stage before the previous one blocks
+
+    /**
+     * Politeness, urls are scheduled per host and hosts take turns.
+     */
+    int MAX_REQUESTS_PER_HOST = 2;          //Requests at once to the same host
+    int HOST_REQUEST_INTERVAL = 250;        //Milliseconds between two requests to the same host
+    int SCHEDULER_QUEUE_SIZE = 10000;       //Urls waiting for their host's turn before the seed reader blocks
+    int SEED_BATCH_SIZE = 64;               //Urls handed over at once, seed reader to scheduler to dispatcher
+
+    /**
+     * HTTP connection pool settings.
+     * The pool is shared by all fetchers so the total is sized to the fetch thread count.
+     */
+    int MAX_CONNECTIONS_PER_ROUTE = 10;
+    int KEEP_ALIVE_TIMEOUT = 30;         //Seconds, used when the server does not send Keep-Alive
+    int IDLE_CONNECTION_TIMEOUT = 60;    //Seconds before an idle pooled connection is evicted
+
+    /**
+     * Async fetch mode, requests outstanding at once.
+     * Slow hosts cost no thread while waiting so this can be far above THREAD_COUNT.
+     */
+    int ASYNC_MAX_IN_FLIGHT = 1000;
+
+    /**
+     * Adaptive fetch concurrency, AIMD between MIN_CONCURRENCY and the
+     * fetch threads (ASYNC_MAX_IN_FLIGHT in async mode).
+     */
+    int MIN_CONCURRENCY = 4;                    //Floor and starting point of the fetch limit
+    double LIMITER_BACKOFF = 0.9;               //Limit kept on overload
+    double LIMITER_LATENCY_TOLERANCE = 2.0;     //Recent over long run latency that counts as overload
+    double LIMITER_ERROR_RATE = 0.25;           //Recent error rate that counts as overload
+
+    int DOWNLOAD_BUFFER_SIZE = 64 * 1024;   //Bytes copied per read when saving a response body
+
+    int BYTE_SEARCH_MAX_KEYWORDS = 8;   //Text files are searched as UTF-8 bytes up to this many keywords, a pass each
+    int MAP_THRESHOLD = 256 * 1024;     //Bytes, text files above are memory mapped for the search, smaller ones read
+
+    /**
+     * In memory mode, background writers for the raw and text files.
+     */
+    int SIDE_OUTPUT_THREAD_COUNT = 2;
+    int SIDE_OUTPUT_QUEUE_SIZE = 100;
+
+    /**
+     * HTTP cache kept in the output folder between runs.
+     */
+    int HTTP_CACHE_MAX_AGE = 0;         //Seconds a response is reused without revalidating it
+    int HTTP_CACHE_MAX_SIZE = 1024;     //Megabytes of responses kept, least recently used go first
+
+    /**
+     * Url dedup, the exact set grows past the expected size,
+     * the Bloom filter loses accuracy past it.
+     */
+    int EXPECTED_URL_COUNT = 1000000;
+    double DEDUP_FALSE_POSITIVE_RATE = 0.001;   //Bloom dedup : new urls wrongly skipped
+
+    int RESULT_QUEUE_SIZE = 10000;      //Results waiting for the writer thread before the stages block
+
+    int JOURNAL_SYNC_BATCH = 1000;      //Progress journal records appended between two syncs to disk
+
+    int INDEX_SEGMENT_SIZE = 32 * 1024 * 1024;  //Bytes of postings buffered before an index segment is written
+
+    /**
+     * Crawl mode, same host links of the pages are followed up to CRAWL_DEPTH links from a seed url.
+     * Links waiting for their turn are kept in memory up to FRONTIER_MEMORY_SIZE, then
+     * appended to segment files of FRONTIER_SEGMENT_SIZE links on disk.
+     */
+    int CRAWL_DEPTH = 0;                    //Seed urls only
+    int MAX_PAGES_PER_HOST = 1000;          //Seed urls and links of a host crawled at most
+    int FRONTIER_MEMORY_SIZE = 100000;
+    int FRONTIER_SEGMENT_SIZE = 10000;
+
+    int METRICS_LOG_INTERVAL = 10;      //Seconds between two metrics summary lines
+
+    /**
+     * Packed document storage, compressed documents appended to large pack files.
+     */
+    long PACK_FILE_SIZE = 1024L * 1024 * 1024;  //Bytes written to a pack before the next one is started
+    int PACK_COMPRESSION_LEVEL = 1;             //Deflate level, 1 is fastest and html still shrinks several times
 
     String RAW_FOLDER = "raw";
     String TEXT_FOLDER = "text";
+    String CACHE_FOLDER = "cache";
+    String INDEX_FOLDER = "index";
+    String PACK_FOLDER = "packs";
+    String FRONTIER_FOLDER = "frontier";
     String INPUT_FILE_URL = "https://s3.amazonaws.com/fieldlens-public/urls.txt";
 }
@@ -0,0 +1,55 @@
+package com.websearcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Side output for fetched pages and extracted text.
+ * Used by the in memory pipeline, writes may complete after the call returns.
+ * Closing waits for the pending writes.
+ * Documents of earlier runs are read back by url fragment.
+ */
+public interface DocumentStore extends Closeable {
+
+    /**
+     * Store the html the fragment points to
+     * @param urlFragment
+     * @param html
+     */
+    void storeRaw(
+            String urlFragment,
+            String html);
+
+    /**
+     * Store the text extracted from the html
+     * @param urlFragment
+     * @param text
+     */
+    void storeText(
+            String urlFragment,
+            String text);
+
+    /**
+     * Html stored for the fragment, thread safe
+     * @param urlFragment
+     * @return null if none was stored
+     * @throws IOException
+     */
+    String readRaw(String urlFragment) throws IOException;
+
+    /**
+     * Text stored for the fragment, thread safe
+     * @param urlFragment
+     * @return null if none was stored
+     * @throws IOException
+     */
+    String readText(String urlFragment) throws IOException;
+
+    /**
+     * Fragments with text stored
+     * @return
+     * @throws IOException
+     */
+    List<String> getTextFragments() throws IOException;
+}
@@ -1,13 +1,17 @@
 package com.websearcher;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * I/O Operations.
- * Interface mocked during tests
+ * Interface mocked during tests.
+ * Closing releases the pooled HTTP connections.
  */
-public interface IOUtils {
+public interface IOUtils extends Closeable {
 
     /**
      * init Folders
@@ -15,7 +19,7 @@ public interface IOUtils {
     void initFolders() throws IOException;
 
     /**
-     * Read text file and return as String
+     * Read UTF-8 text file and return as String
      * @param path
      * @return
      * @throws IOException
@@ -23,7 +27,26 @@ public interface IOUtils {
     String readTextFile(File path) throws IOException;
 
     /**
-     * Write text file
+     * Read a file saved by getHttpFile, decoded with the charset of
+     * the byte order mark, Content-Type, meta tag or UTF-8 in that order
+     * @param path
+     * @param contentType : as returned by getHttpFile, may be null
+     * @return
+     * @throws IOException
+     */
+    String readHtmlFile(File path, String contentType) throws IOException;
+
+    /**
+     * Bytes of a file, to search them without decoding.
+     * Large files are mapped read only, small ones read into the heap
+     * @param path
+     * @return the whole file
+     * @throws IOException
+     */
+    ByteBuffer readFileBytes(File path) throws IOException;
+
+    /**
+     * Write text file in UTF-8
      * @param path
      * @param text
      * @throws IOException
@@ -35,10 +58,51 @@ public interface IOUtils {
      *
      * @param url : url
      * @param filePath : Local path where file needs to be copied to
+     * @return Content-Type of the response, null if not sent
      * @throws IOException
      */
-    void getHttpFile(
+    String getHttpFile(
             String url,
             String filePath,
             int timeOut) throws IOException;
+
+    /**
+     * Gets the contents of what the URL points to as a String,
+     * without touching the disk.
+     * Decoded using the charset of the byte order mark, Content-Type,
+     * meta tag or UTF-8 in that order.
+     *
+     * @param url : url
+     * @param timeOut
+     * @return body, empty if the response had none
+     * @throws IOException
+     */
+    String getHttpContent(
+            String url,
+            int timeOut) throws IOException;
+
+    /**
+     * Non blocking version of getHttpFile, no thread is held
+     * while the request is in flight.
+     *
+     * @param url : url
+     * @param filePath : Local path where file needs to be copied to
+     * @param timeOut
+     * @return completes with the Content-Type, null if not sent, once the file is written
+     */
+    CompletableFuture<String> getHttpFileAsync(
+            String url,
+            String filePath,
+            int timeOut);
+
+    /**
+     * Non blocking version of getHttpContent
+     *
+     * @param url : url
+     * @param timeOut
+     * @return completes with the body, empty if the response had none
+     */
+    CompletableFuture<String> getHttpContentAsync(
+            String url,
+            int timeOut);
 }
@@ -0,0 +1,210 @@
+package com.websearcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton matching any number of keywords
+ * in a single pass over the text.
+ *
+ * Matches follow the \bkeyword\b regex semantics of the single keyword
+ * search : a word boundary on both sides and, for each keyword, matches
+ * that do not overlap a previous match of the same keyword.
+ * Word characters are letters, digits and _ as for java.util.regex \b.
+ */
+public final class KeywordMatcher {
+
+    /**
+     * Receives the matches in order of their end offset
+     */
+    public interface MatchListener {
+
+        /**
+         * @param keywordIndex : index into getKeywords()
+         * @param start : offset of the first character of the match
+         */
+        void onMatch(int keywordIndex, int start);
+    }
+
+    private static final int ROOT = 0;
+
+    private final List<String> keywords;
+    private final int[] keywordLengths;
+
+    /**
+     * Per node : sorted transition characters and the matching target nodes,
+     * failure link and the keywords recognised at the node.
+     */
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    private final int[] failure;
+    private final int[][] outputs;
+
+    /**
+     * Builds the automaton.
+     *
+     * @param keywords : non blank keywords, matched as given (callers lower case them)
+     */
+    public KeywordMatcher(List<String> keywords) {
+
+        if (keywords.isEmpty()) {
+            throw new IllegalArgumentException("At least one keyword is required");
+        }
+        this.keywords = Collections.unmodifiableList(new ArrayList<>(keywords));
+        this.keywordLengths = new int[keywords.size()];
+
+        /**
+         * Build the trie
+         */
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        nodeOutputs.add(new ArrayList<>());
+        for (int keywordIndex = 0; keywordIndex < keywords.size(); keywordIndex++) {
+            String keyword = keywords.get(keywordIndex);
+            if (keyword.isEmpty()) {
+                throw new IllegalArgumentException("Keywords cannot be empty");
+            }
+            keywordLengths[keywordIndex] = keyword.length();
+            int node = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                Integer next = trie.get(node).get(keyword.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(node).put(keyword.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                node = next;
+            }
+            nodeOutputs.get(node).add(keywordIndex);
+        }
+
+        int nodeCount = trie.size();
+        transitionChars = new char[nodeCount][];
+        transitionTargets = new int[nodeCount][];
+        for (int node = 0; node < nodeCount; node++) {
+            Map<Character, Integer> transitions = trie.get(node);
+            transitionChars[node] = new char[transitions.size()];
+            transitionTargets[node] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                transitionChars[node][i] = transition.getKey();
+                transitionTargets[node][i] = transition.getValue();
+                i++;
+            }
+        }
+
+        /**
+         * Failure links breadth first, outputs of the failure node
+         * are merged in so matching never walks the failure chain for output.
+         */
+        failure = new int[nodeCount];
+        outputs = new int[nodeCount][];
+        outputs[ROOT] = toArray(nodeOutputs.get(ROOT));
+        int[] queue = new int[nodeCount];
+        int head = 0, tail = 0;
+        for (int child : transitionTargets[ROOT]) {
+            failure[child] = ROOT;
+            outputs[child] = toArray(nodeOutputs.get(child));
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int i = 0; i < transitionChars[node].length; i++) {
+                char c = transitionChars[node][i];
+                int child = transitionTargets[node][i];
+                int fallback = failure[node];
+                while (fallback != ROOT && next(fallback, c) < 0) {
+                    fallback = failure[fallback];
+                }
+                int target = next(fallback, c);
+                failure[child] = target >= 0 ? target : ROOT;
+
+                List<Integer> childOutputs = new ArrayList<>(nodeOutputs.get(child));
+                for (int keywordIndex : outputs[failure[child]]) {
+                    childOutputs.add(keywordIndex);
+                }
+                outputs[child] = toArray(childOutputs);
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * Find all the keyword matches in one pass.
+     *
+     * @param text
+     * @param listener
+     */
+    public void findAll(CharSequence text, MatchListener listener) {
+
+        int[] nextAllowedStart = new int[keywords.size()];
+        int length = text.length();
+        int node = ROOT;
+
+        for (int pos = 0; pos < length; pos++) {
+            char c = text.charAt(pos);
+            int target;
+            while ((target = next(node, c)) < 0 && node != ROOT) {
+                node = failure[node];
+            }
+            node = target >= 0 ? target : ROOT;
+
+            for (int keywordIndex : outputs[node]) {
+                int start = pos + 1 - keywordLengths[keywordIndex];
+                if (start >= nextAllowedStart[keywordIndex] &&
+                        isBoundary(text, start) &&
+                        isBoundary(text, pos + 1)) {
+                    nextAllowedStart[keywordIndex] = pos + 1;
+                    listener.onMatch(keywordIndex, start);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param node
+     * @param c
+     * @return target node, -1 if there is no transition
+     */
+    private int next(int node, char c) {
+        int i = Arrays.binarySearch(transitionChars[node], c);
+        return i >= 0 ? transitionTargets[node][i] : -1;
+    }
+
+    /**
+     * Same as \b : word character on exactly one side of the offset
+     *
+     * @param text
+     * @param offset
+     * @return
+     */
+    private static boolean isBoundary(CharSequence text, int offset) {
+        boolean wordBefore = offset > 0 &&
+                isWordChar(Character.codePointBefore(text, offset));
+        boolean wordAfter = offset < text.length() &&
+                isWordChar(Character.codePointAt(text, offset));
+        return wordBefore != wordAfter;
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
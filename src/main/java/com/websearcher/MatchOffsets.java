@@ -0,0 +1,195 @@
+package com.websearcher;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compact, append only list of increasing match offsets.
+ *
+ * Offsets are stored as varint encoded deltas from the previous offset,
+ * so a dense page where matches are a few dozen characters apart costs
+ * about a byte per match instead of a boxed Integer plus list slot.
+ * Filled by a single thread, read only once handed to the collector.
+ */
+public final class MatchOffsets {
+
+    private byte[] data;        //Varint encoded deltas
+    private int byteLength = 0;
+    private int size = 0;
+    private int last = 0;       //Last offset added
+
+    public MatchOffsets() {
+        data = new byte[8];
+    }
+
+    /**
+     * @param offsets : increasing offsets
+     * @return
+     */
+    public static MatchOffsets of(int... offsets) {
+        MatchOffsets matchOffsets = new MatchOffsets();
+        for (int offset : offsets) {
+            matchOffsets.add(offset);
+        }
+        return matchOffsets.compact();
+    }
+
+    /**
+     * Append an offset, must not be less than the previous one.
+     *
+     * @param offset
+     */
+    public void add(int offset) {
+
+        if (offset < last) {
+            throw new IllegalArgumentException(
+                    "Offsets must be increasing: " + offset + " after " + last);
+        }
+        int delta = offset - last;
+        if (byteLength + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, byteLength + 5));
+        }
+        while ((delta & ~0x7F) != 0) {
+            data[byteLength++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[byteLength++] = (byte) delta;
+        last = offset;
+        size++;
+    }
+
+    /**
+     * Release the unused part of the buffer once all offsets are added.
+     *
+     * @return this
+     */
+    public MatchOffsets compact() {
+        if (data.length != byteLength) {
+            data = Arrays.copyOf(data, byteLength);
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Size of the encoded offsets in bytes
+     * @return
+     */
+    public int getByteLength() {
+        return byteLength;
+    }
+
+    /**
+     * Visit the offsets in order
+     * @param consumer
+     */
+    public void forEach(IntConsumer consumer) {
+        int offset = 0;
+        int pos = 0;
+        while (pos < byteLength) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            offset += delta;
+            consumer.accept(offset);
+        }
+    }
+
+    /**
+     * Write the encoded offsets as is, read back with readFrom
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(last);
+        out.writeInt(byteLength);
+        out.write(data, 0, byteLength);
+    }
+
+    /**
+     * @param in
+     * @return offsets written by writeTo
+     * @throws IOException
+     */
+    public static MatchOffsets readFrom(DataInput in) throws IOException {
+        MatchOffsets matchOffsets = new MatchOffsets();
+        matchOffsets.size = in.readInt();
+        matchOffsets.last = in.readInt();
+        matchOffsets.byteLength = in.readInt();
+        if (matchOffsets.size < 0 || matchOffsets.byteLength < 0) {
+            throw new IOException("Corrupt offsets");
+        }
+        matchOffsets.data = new byte[matchOffsets.byteLength];
+        in.readFully(matchOffsets.data);
+        return matchOffsets;
+    }
+
+    public int[] toArray() {
+        int[] offsets = new int[size];
+        int[] index = {0};
+        forEach(offset -> offsets[index[0]++] = offset);
+        return offsets;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MatchOffsets)) {
+            return false;
+        }
+        MatchOffsets other = (MatchOffsets) o;
+        if (size != other.size || byteLength != other.byteLength) {
+            return false;
+        }
+        for (int i = 0; i < byteLength; i++) {
+            if (data[i] != other.data[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+        for (int i = 0; i < byteLength; i++) {
+            hash = 31 * hash + data[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Same format as List.toString so results read as before
+     * @return
+     */
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder("[");
+        forEach(offset -> {
+            if (stringBuilder.length() > 1) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(offset);
+        });
+        return stringBuilder.append(']').toString();
+    }
+}
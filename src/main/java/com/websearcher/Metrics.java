@@ -0,0 +1,80 @@
+package com.websearcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.IntSupplier;
+
+/**
+ * Run time figures of the pipeline : latency histograms per step,
+ * bytes downloaded, urls per second, errors by type and queue depths.
+ * Recording is cheap and thread safe. Once started the figures are
+ * exposed over JMX and logged periodically, closing dumps them to
+ * the output folder.
+ */
+public interface Metrics extends Closeable {
+
+    /**
+     * Timed steps
+     */
+    enum Timer {
+        DNS,        //Host name lookup
+        CONNECT,    //TCP connect and TLS handshake
+        RESPONSE,   //Request sent to response headers received, includes DNS and CONNECT of a new connection
+        DOWNLOAD,   //Response body read
+        FETCH,      //Whole fetch stage of a url
+        EXTRACT,    //Text extraction stage
+        SEARCH,     //Keyword search stage
+        URL         //Dispatch of a url to its result or error
+    }
+
+    /**
+     * @param timer
+     * @param nanos : time taken
+     */
+    void record(
+            Timer timer,
+            long nanos);
+
+    /**
+     * A url was handed to the fetchers, the first one starts the clock of the rates
+     */
+    void recordDispatch();
+
+    /**
+     * @param bytes : response body bytes downloaded, as sent when compressed
+     */
+    void addBytes(long bytes);
+
+    /**
+     * Count an error by its type
+     * @param error
+     */
+    void recordError(Throwable error);
+
+    /**
+     * Report the depth of a queue, replaces a queue of the same name
+     * @param name
+     * @param depth
+     */
+    void registerQueue(
+            String name,
+            IntSupplier depth);
+
+    /**
+     * Register over JMX and start the periodic summary log
+     */
+    void start();
+
+    /**
+     * One line summary, as logged periodically
+     * @return
+     */
+    String getSummary();
+
+    /**
+     * Stop logging, unregister and dump the figures to the output folder
+     * @throws IOException
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,41 @@
+package com.websearcher;
+
+import java.util.Map;
+
+/**
+ * Metrics exposed over JMX as com.websearcher:type=Metrics
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return urls processed by this run, not the ones restored from the journal
+     */
+    long getUrlCount();
+
+    long getErrorCount();
+
+    long getBytes();
+
+    /**
+     * @return since the first url was dispatched
+     */
+    double getUrlsPerSecond();
+
+    double getBytesPerSecond();
+
+    /**
+     * @return errors per exception type
+     */
+    Map<String, Long> getErrorsByType();
+
+    /**
+     * @return tasks waiting per queue
+     */
+    Map<String, Integer> getQueueDepths();
+
+    /**
+     * @return count, mean, p50, p90, p99 and max per timer as
+     *         fetch.p99 ..., times in milliseconds
+     */
+    Map<String, Double> getLatencies();
+}
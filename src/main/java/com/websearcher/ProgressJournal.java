@@ -0,0 +1,58 @@
+package com.websearcher;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Append only record of the urls completed so far.
+ * A run that dies part way leaves its journal behind, the next run
+ * replays it and only processes the urls that are left.
+ * Errors are not journaled, the next run retries their urls.
+ * Appends are made from a single thread.
+ */
+public interface ProgressJournal extends Closeable, Flushable {
+
+    /**
+     * Receives the urls completed by the interrupted run
+     */
+    interface Listener {
+
+        void onResult(
+                String url,
+                Map<String, MatchOffsets> searchIndexMap);
+    }
+
+    /**
+     * Replay the journal left by an interrupted run, later appends go after it.
+     * Without a replay the journal starts over.
+     *
+     * @param listener
+     * @return number of urls replayed
+     * @throws IOException
+     */
+    long replay(Listener listener) throws IOException;
+
+    /**
+     * @param url
+     * @param searchIndexMap
+     * @throws IOException
+     */
+    void appendResult(
+            String url,
+            Map<String, MatchOffsets> searchIndexMap) throws IOException;
+
+    /**
+     * Write out and sync the appended records to disk
+     * @throws IOException
+     */
+    @Override
+    void flush() throws IOException;
+
+    /**
+     * The run finished, the journal is closed and deleted
+     * @throws IOException
+     */
+    void complete() throws IOException;
+}
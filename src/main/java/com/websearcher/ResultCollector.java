@@ -1,22 +1,25 @@
 package com.websearcher;
 
-import java.util.List;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Map;
 
 /**
- * Used to collect result after processing a URL
+ * Used to collect result after processing a URL.
+ * Results are streamed to the results output as they arrive,
+ * only the counts are kept in memory.
  */
-public interface ResultCollector {
+public interface ResultCollector extends Closeable {
 
     /**
      * Called after successful processing of result
      * @param url : url
-     * @param searchIndexArray : Array containing the indices where the
-     *                         keyword was located
+     * @param searchIndexMap : Per keyword, the indices where the
+     *                       keyword was located
      */
     void setResult(
             String url,
-            List<Integer> searchIndexArray);
+            Map<String, MatchOffsets> searchIndexMap);
 
     /**
      * Called when processing resulted in error.
@@ -28,14 +31,46 @@ public interface ResultCollector {
             String error);
 
     /**
-     * Get errors
+     * Result of a url completed by an interrupted run,
+     * counted and written out like any other result.
+     * @param url
+     * @param searchIndexMap
+     */
+    void restoreResult(
+            String url,
+            Map<String, MatchOffsets> searchIndexMap);
+
+    /**
+     * Number of urls processed successfully
+     * @return
+     */
+    int getResultCount();
+
+    /**
+     * Number of urls that errored out
+     * @return
+     */
+    int getErrorCount();
+
+    /**
+     * Total matches of the keyword across all urls
+     * @param keyword
      * @return
      */
-    Map<String, String> getErrorMap();
+    long getMatchCount(String keyword);
 
     /**
-     * Get results
+     * Number of urls the keyword was found in
+     * @param keyword
      * @return
      */
-    Map<String, List<Integer>> getSearchResultMap();
+    long getUrlCount(String keyword);
+
+    /**
+     * Waits for the pending results to be written,
+     * then writes the summary and closes the results output.
+     * @throws IOException
+     */
+    @Override
+    void close() throws IOException;
 }
@@ -0,0 +1,42 @@
+package com.websearcher;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes results to the results output as they arrive.
+ * Called from a single thread.
+ */
+public interface ResultWriter extends Closeable, Flushable {
+
+    /**
+     * Write the result of a successfully processed url
+     * @param url
+     * @param searchIndexMap : Per keyword, the indices where the
+     *                       keyword was located
+     * @throws IOException
+     */
+    void writeResult(
+            String url,
+            Map<String, MatchOffsets> searchIndexMap) throws IOException;
+
+    /**
+     * Write the error of a url
+     * @param url
+     * @param error
+     * @throws IOException
+     */
+    void writeError(
+            String url,
+            String error) throws IOException;
+
+    /**
+     * Write the totals once all results are written
+     * @param resultCollector
+     * @throws IOException
+     */
+    void writeSummary(
+            ResultCollector resultCollector) throws IOException;
+}
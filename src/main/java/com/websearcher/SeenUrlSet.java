@@ -0,0 +1,21 @@
+package com.websearcher;
+
+/**
+ * Url fragments seen so far, used to process each url once.
+ * Implementations are thread safe.
+ */
+public interface SeenUrlSet {
+
+    /**
+     * Record the fragment
+     * @param urlFragment : normalized fragment
+     * @return true if it was not seen before
+     */
+    boolean add(String urlFragment);
+
+    /**
+     * Number of fragments recorded, may be an estimate
+     * @return
+     */
+    long size();
+}
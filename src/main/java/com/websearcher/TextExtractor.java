@@ -0,0 +1,29 @@
+package com.websearcher;
+
+import java.util.function.Consumer;
+
+/**
+ * Extracts the visible text from html.
+ */
+public interface TextExtractor {
+
+    /**
+     * Text of the page with whitespace collapsed,
+     * same as jsoup's Document.text()
+     *
+     * @param html
+     * @return
+     */
+    default String extractText(String html) {
+        return extractText(html, null);
+    }
+
+    /**
+     * Same text, the links of the page are found in the same pass
+     *
+     * @param html
+     * @param links : gets the href of each link (a tag) as written, entities decoded, null to skip them
+     * @return
+     */
+    String extractText(String html, Consumer<String> links);
+}
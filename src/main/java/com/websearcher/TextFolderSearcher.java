@@ -0,0 +1,20 @@
+package com.websearcher;
+
+import java.io.IOException;
+
+/**
+ * Searches the text left by an earlier run in <root folder>/text/,
+ * or its packs in the pack layout, for the keywords.
+ * No page is fetched or parsed.
+ */
+public interface TextFolderSearcher {
+
+    /**
+     * Search every text file, results and errors per url go to the collector
+     *
+     * @param resultCollector
+     * @return number of files searched
+     * @throws IOException if the text folder can not be listed
+     */
+    long search(ResultCollector resultCollector) throws IOException;
+}
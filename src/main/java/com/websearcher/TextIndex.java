@@ -0,0 +1,53 @@
+package com.websearcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * On disk inverted index of the extracted text.
+ * Built while crawling, searched later for any keywords
+ * without fetching or parsing pages again.
+ */
+public interface TextIndex extends Closeable {
+
+    /**
+     * Drop the documents indexed by earlier runs
+     * @throws IOException
+     */
+    void clear() throws IOException;
+
+    /**
+     * Index the text of a url, thread safe
+     * @param url
+     * @param text : lower cased text
+     * @throws IOException
+     */
+    void addDocument(
+            String url,
+            String text) throws IOException;
+
+    /**
+     * Search every indexed document.
+     * Matches are the same as AppUtils.findAllMatches on the indexed text.
+     *
+     * @param keywords : lower cased
+     * @param listener : gets each url with the indices per keyword,
+     *                 only keywords that matched are present
+     * @return number of documents searched
+     * @throws IOException
+     * @throws IllegalArgumentException if a keyword can not be answered from the index
+     */
+    long search(
+            List<String> keywords,
+            BiConsumer<String, Map<String, MatchOffsets>> listener) throws IOException;
+
+    /**
+     * Write out the documents added so far
+     * @throws IOException
+     */
+    @Override
+    void close() throws IOException;
+}
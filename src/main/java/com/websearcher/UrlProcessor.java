@@ -10,9 +10,19 @@ import java.util.Iterator;
 public interface UrlProcessor {
 
     /**
-     * Process records pointed to by iterator
+     * Process records pointed to by iterator.
+     * Returns once every url has been processed, or once the run is abandoned.
      * @param iterableCSVRecord
+     * @return true if every url was processed, false if the run was abandoned
      */
-    void processUrl(
+    boolean processUrl(
             Iterator<CSVRecord> iterableCSVRecord);
+
+    /**
+     * Url completed by an interrupted run, it is skipped when found in the records.
+     * Called before processUrl.
+     * @param urlFragment
+     */
+    void markProcessed(
+            String urlFragment);
 }
@@ -9,6 +9,7 @@ import org.apache.commons.cli.*;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,9 +20,11 @@ import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 
 /**
  * Main App
@@ -30,17 +33,29 @@ public class WebSearcherApp {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WebSearcherApp.class);
 
+    private static final int MEGABYTE = 1024 * 1024;    //Size options are given in megabytes
+
     /**
      * Main does the following
      * - Processes CLI arguments
      * - Initializes guice
      * - Fetches CSV pointed to by the given URL
-     * - Spawns threads
-     * - Waits for thread completion and joins
-     * - Creates result output
+     * - Runs the url processing pipeline
+     * - Completes the result output
+     * or with --search / --rescan, searches the index / text files of an earlier run instead
      * @param args
      */
     public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Does the work of main, leaving the JVM up for in process callers
+     * such as the load test harness
+     * @param args : as received from user
+     * @return exit status
+     */
+    public static int run(String[] args) {
 
         try {
 
@@ -55,9 +70,11 @@ public class WebSearcherApp {
             /**
              * Initializes guice
              */
+            final AppConfig appConfig = createAppConfig(cmd);
             final AppUtils appUtils = new AppUtils(
-                    cmd.getOptionValue("keyword"),
-                    cmd.getOptionValue("output"));
+                    getKeywords(cmd),
+                    cmd.getOptionValue("output"),
+                    appConfig.getStorageLayout() == AppConfig.StorageLayout.SHARDED);
             Injector injector = Guice.createInjector(
                     new AbstractModule() {
 
@@ -66,6 +83,11 @@ public class WebSearcherApp {
                             return appUtils;
                         }
 
+                        @Provides
+                        public AppConfig getAppConfig() {
+                            return appConfig;
+                        }
+
                     },
                     new WebSearcherModule());
 
@@ -73,6 +95,53 @@ public class WebSearcherApp {
              * Initialize folders
              */
             injector.getInstance(IOUtils.class).initFolders();
+            if (appConfig.isSearchIndex()) {
+                return searchIndex(injector, appUtils);
+            }
+            if (appConfig.isRescanText()) {
+                return rescanText(injector, appUtils);
+            }
+
+            /**
+             * The crawl frontier is not journaled, resuming a crawl would
+             * drop the links of the pages the interrupted run finished.
+             */
+            if (appConfig.isCrawl() && appConfig.isResume() &&
+                    appUtils.getJournalFilePath().toFile().exists()) {
+                LOGGER.error("An interrupted crawl cannot be resumed, its frontier is not kept. "
+                        + "Run again with --restart to crawl from the seed urls");
+                return -1;
+            }
+
+            /**
+             * Resume an interrupted run : its completed urls are skipped
+             * and their results written out again, its errors are retried.
+             */
+            UrlProcessor urlProcessor = injector.getInstance(UrlProcessor.class);
+            ResultCollector resultCollector = injector.getInstance(ResultCollector.class);
+            ProgressJournal progressJournal = injector.getInstance(ProgressJournal.class);
+            long replayed = 0;
+            if (appConfig.isResume()) {
+                replayed = progressJournal.replay((url, searchIndexMap) -> {
+                    urlProcessor.markProcessed(url);
+                    resultCollector.restoreResult(url, searchIndexMap);
+                });
+                if (replayed > 0) {
+                    LOGGER.info(replayed + " Urls completed by the interrupted run, resuming");
+                }
+            }
+
+            /**
+             * A fresh run builds a fresh index,
+             * a resumed one adds to the segments already written.
+             */
+            TextIndex textIndex = injector.getInstance(TextIndex.class);
+            if (appConfig.isBuildIndex() && replayed == 0) {
+                textIndex.clear();
+            }
+
+            Metrics metrics = injector.getInstance(Metrics.class);
+            metrics.start();
 
             /**
              * Download csv
@@ -80,67 +149,258 @@ public class WebSearcherApp {
             Path urlsFilePath = appUtils.getLocalUrlSeedFilePath();
             LOGGER.info("Fetching urls seed file to " + urlsFilePath.toString());
             injector.getInstance(IOUtils.class).getHttpFile(
-                    Constants.INPUT_FILE_URL,
-                    urlsFilePath.toString(), Constants.CONNECTION_TIMEOUT);
+                    appConfig.getSeedUrl(),
+                    urlsFilePath.toString(), appConfig.getConnectionTimeout());
 
             /**
              * Process URLs
              */
+            boolean completed;
             try(Reader in = new FileReader(urlsFilePath.toString())) {
 
                 Iterator<CSVRecord> recordsIterator =
                         CSVFormat.EXCEL.withHeader().parse(in).iterator();
-                Thread threads[] = createThreads(
-                        injector.getInstance(UrlProcessor.class),
-                        recordsIterator);
-                joinThreads(threads);
+                completed = urlProcessor.processUrl(recordsIterator);
+            }
+            injector.getInstance(DocumentStore.class).close();
+            if (appConfig.isBuildIndex()) {
+                textIndex.close();
             }
 
             /**
-             * Create result output
+             * Results were streamed out while processing,
+             * finish them off with the totals.
              */
             LOGGER.info("Processing completed.");
-            String resultText = getResultsText(
-                    injector.getInstance(ResultCollector.class));
+            resultCollector.close();
+            if (completed) {
+                progressJournal.complete();
+            } else {
+                progressJournal.close();    //Kept for the next run
+            }
+
+            metrics.close();
 
-            LOGGER.info(resultText);
-            FileUtils.writeStringToFile(
-                    new File(appUtils.getResultsFilePath().toString()),
-                    resultText, Charset.defaultCharset());
+            LOGGER.info(MessageFormat.format(
+                    "{0} Urls Processed, {1} Urls Errored out.",
+                    resultCollector.getResultCount(), resultCollector.getErrorCount()));
             LOGGER.info("Processed Results at : " +
-                    appUtils.getResultsFilePath().toString());
-            System.exit(0);
+                    appUtils.getResultsFilePath(appConfig.getResultFormat()).toString());
+            LOGGER.info("Metrics at : " +
+                    appUtils.getMetricsFilePath().toString());
+            injector.getInstance(IOUtils.class).close();
+            return 0;
 
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
 
             LOGGER.error(e.getMessage(), e);
-            System.exit(-1);
+            return -1;
         }
     }
 
+    /**
+     * Search the index built by an earlier run for the keywords,
+     * results are written out as for a crawl
+     * @param injector
+     * @param appUtils
+     * @return exit status
+     * @throws IOException
+     */
+    private static int searchIndex(
+            Injector injector,
+            AppUtils appUtils) throws IOException {
+
+        ResultCollector resultCollector = injector.getInstance(ResultCollector.class);
+        long documentCount;
+        try {
+            documentCount = injector.getInstance(TextIndex.class).search(
+                    appUtils.getKeywords(), resultCollector::setResult);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return -1;
+        }
+        resultCollector.close();
+
+        LOGGER.info(documentCount + " Indexed urls searched.");
+        LOGGER.info("Processed Results at : " + appUtils.getResultsFilePath(
+                injector.getInstance(AppConfig.class).getResultFormat()).toString());
+        injector.getInstance(IOUtils.class).close();
+        return 0;
+    }
+
+    /**
+     * Search the text files left by an earlier run for the keywords,
+     * results are written out as for a crawl
+     * @param injector
+     * @param appUtils
+     * @return exit status
+     * @throws IOException
+     */
+    private static int rescanText(
+            Injector injector,
+            AppUtils appUtils) throws IOException {
+
+        ResultCollector resultCollector = injector.getInstance(ResultCollector.class);
+        long fileCount = injector.getInstance(TextFolderSearcher.class).search(resultCollector);
+        injector.getInstance(DocumentStore.class).close();
+        resultCollector.close();
+
+        LOGGER.info(MessageFormat.format(
+                "{0} Text files searched, {1} Errored out.",
+                fileCount, resultCollector.getErrorCount()));
+        LOGGER.info("Processed Results at : " + appUtils.getResultsFilePath(
+                injector.getInstance(AppConfig.class).getResultFormat()).toString());
+        injector.getInstance(IOUtils.class).close();
+        return 0;
+    }
+
     /**
      * Process command line args
      * @param args : as received from user
      * @return
+     * @throws IOException : the keyword file cannot be read
      */
-    private static CommandLine processCommandlineArgs(String[] args) {
+    private static CommandLine processCommandlineArgs(String[] args) throws IOException {
 
         Options options = new Options();
 
-        Option input = new Option("k", "keyword", true, "keyword text");
-        input.setRequired(true);
-        options.addOption(input);
+        options.addOption(new Option("k", "keyword", true,
+                "keyword text, repeat to search for several keywords"));
+        options.addOption(new Option("f", "keyword-file", true,
+                "file with one keyword per line"));
 
         Option output = new Option("o", "output", true, "output folder path");
         output.setRequired(true);
         options.addOption(output);
 
+        options.addOption(new Option("m", "in-memory", false,
+                "fetch, extract and search in memory without writing raw and text files"));
+        options.addOption(new Option("s", "save-files", false,
+                "in memory mode: save raw and text files in the background"));
+        options.addOption(new Option("j", "jsoup", false,
+                "extract text with the jsoup DOM parser instead of the streaming extractor"));
+        options.addOption(new Option("a", "async", false,
+                "fetch with non blocking requests instead of a thread per request"));
+        options.addOption(Option.builder().longOpt("http2")
+                .desc("fetch over HTTP/2 where the server speaks it, requests to a host share one connection, implies -a").build());
+        options.addOption(Option.builder().longOpt("no-compression")
+                .desc("do not ask for gzip / deflate compressed responses").build());
+        options.addOption(Option.builder().longOpt("max-in-flight").hasArg()
+                .desc("async mode: requests outstanding at once, default "
+                        + Constants.ASYNC_MAX_IN_FLIGHT).build());
+        options.addOption(Option.builder().longOpt("min-concurrency").hasArg()
+                .desc("floor of the adaptive fetches in flight, the ceiling is --fetch-threads or --max-in-flight, default "
+                        + Constants.MIN_CONCURRENCY).build());
+        options.addOption(Option.builder().longOpt("fixed-concurrency")
+                .desc("keep the fetches in flight at the ceiling instead of adapting to latency and errors").build());
+        options.addOption(Option.builder().longOpt("max-per-host").hasArg()
+                .desc("requests at once to the same host, default "
+                        + Constants.MAX_REQUESTS_PER_HOST).build());
+        options.addOption(Option.builder().longOpt("host-interval").hasArg()
+                .desc("milliseconds between two requests to the same host, 0 for none, default "
+                        + Constants.HOST_REQUEST_INTERVAL).build());
+        options.addOption(Option.builder().longOpt("bloom-dedup")
+                .desc("dedup urls with a Bloom filter, a few bits per url").build());
+        options.addOption(Option.builder().longOpt("dedup-fpp").hasArg()
+                .desc("bloom dedup: rate of new urls wrongly skipped, default "
+                        + Constants.DEDUP_FALSE_POSITIVE_RATE).build());
+        options.addOption(Option.builder().longOpt("expected-urls").hasArg()
+                .desc("urls the dedup set is sized for, default "
+                        + Constants.EXPECTED_URL_COUNT).build());
+        options.addOption(Option.builder().longOpt("restart")
+                .desc("ignore the progress of an interrupted run and start over").build());
+        options.addOption(new Option("c", "cache", false,
+                "keep responses in the output folder and revalidate them on the next run"));
+        options.addOption(Option.builder().longOpt("cache-max-age").hasArg()
+                .desc("seconds a cached response is reused without asking the server, default "
+                        + Constants.HTTP_CACHE_MAX_AGE).build());
+        options.addOption(Option.builder().longOpt("cache-max-size").hasArg()
+                .desc("megabytes of cached responses, default "
+                        + Constants.HTTP_CACHE_MAX_SIZE).build());
+        options.addOption(Option.builder().longOpt("index")
+                .desc("index the extracted text in the output folder for --search").build());
+        options.addOption(Option.builder().longOpt("search")
+                .desc("search the index of an earlier --index run instead of crawling").build());
+        options.addOption(Option.builder().longOpt("rescan")
+                .desc("search the text files of an earlier run on all search threads instead of crawling").build());
+        options.addOption(Option.builder().longOpt("storage").hasArg()
+                .desc("raw and text document layout: flat (default), sharded or pack").build());
+        options.addOption(Option.builder().longOpt("format").hasArg()
+                .desc("results format: text (default, results.txt), jsonl (results.jsonl) "
+                        + "or binary (results.bin)").build());
+        options.addOption(Option.builder().longOpt("seed-url").hasArg()
+                .desc("CSV of the urls to crawl, with a URL column, default "
+                        + Constants.INPUT_FILE_URL).build());
+        options.addOption(Option.builder().longOpt("crawl-depth").hasArg()
+                .desc("follow the same host links of the pages up to this many links from a seed url, default "
+                        + Constants.CRAWL_DEPTH + " (seed urls only)").build());
+        options.addOption(Option.builder().longOpt("max-pages-per-host").hasArg()
+                .desc("crawl: pages of a host crawled at most, seed urls included, default "
+                        + Constants.MAX_PAGES_PER_HOST).build());
+        options.addOption(Option.builder().longOpt("frontier-memory-size").hasArg()
+                .desc("crawl: links waiting in memory before they spill to disk, default "
+                        + Constants.FRONTIER_MEMORY_SIZE).build());
+        options.addOption(Option.builder().longOpt("frontier-segment-size").hasArg()
+                .desc("crawl: links per frontier segment file, default "
+                        + Constants.FRONTIER_SEGMENT_SIZE).build());
+        options.addOption(Option.builder().longOpt("fetch-threads").hasArg()
+                .desc("fetch threads, default " + Constants.THREAD_COUNT).build());
+        options.addOption(Option.builder().longOpt("extract-threads").hasArg()
+                .desc("text extraction threads, default " + Constants.EXTRACT_THREAD_COUNT).build());
+        options.addOption(Option.builder().longOpt("search-threads").hasArg()
+                .desc("keyword search threads, default " + Constants.SEARCH_THREAD_COUNT).build());
+        options.addOption(Option.builder().longOpt("connection-timeout").hasArg()
+                .desc("seconds to connect and between two reads, default " + Constants.CONNECTION_TIMEOUT).build());
+        options.addOption(Option.builder().longOpt("stage-queue-size").hasArg()
+                .desc("pages waiting for a stage before the previous one blocks, default "
+                        + Constants.STAGE_QUEUE_SIZE).build());
+        options.addOption(Option.builder().longOpt("scheduler-queue-size").hasArg()
+                .desc("urls waiting for their host's turn before the seed reader blocks, default "
+                        + Constants.SCHEDULER_QUEUE_SIZE).build());
+        options.addOption(Option.builder().longOpt("seed-batch-size").hasArg()
+                .desc("urls handed over at once from the seed reader to the scheduler and on to the fetchers, default "
+                        + Constants.SEED_BATCH_SIZE).build());
+        options.addOption(Option.builder().longOpt("max-connections-per-route").hasArg()
+                .desc("pooled connections to the same host, default " + Constants.MAX_CONNECTIONS_PER_ROUTE).build());
+        options.addOption(Option.builder().longOpt("keep-alive-timeout").hasArg()
+                .desc("seconds a connection is kept when the server does not say, default "
+                        + Constants.KEEP_ALIVE_TIMEOUT).build());
+        options.addOption(Option.builder().longOpt("idle-connection-timeout").hasArg()
+                .desc("seconds before an idle pooled connection is evicted, default "
+                        + Constants.IDLE_CONNECTION_TIMEOUT).build());
+        options.addOption(Option.builder().longOpt("download-buffer-size").hasArg()
+                .desc("bytes copied per read when saving a page, default " + Constants.DOWNLOAD_BUFFER_SIZE).build());
+        options.addOption(Option.builder().longOpt("side-output-threads").hasArg()
+                .desc("background raw and text file writers, default " + Constants.SIDE_OUTPUT_THREAD_COUNT).build());
+        options.addOption(Option.builder().longOpt("side-output-queue-size").hasArg()
+                .desc("files waiting for a background writer, default " + Constants.SIDE_OUTPUT_QUEUE_SIZE).build());
+        options.addOption(Option.builder().longOpt("journal-sync-batch").hasArg()
+                .desc("progress journal records between two syncs to disk, default "
+                        + Constants.JOURNAL_SYNC_BATCH).build());
+        options.addOption(Option.builder().longOpt("index-segment-size").hasArg()
+                .desc("megabytes of postings buffered before an index segment is written, default "
+                        + Constants.INDEX_SEGMENT_SIZE / MEGABYTE).build());
+        options.addOption(Option.builder().longOpt("metrics-interval").hasArg()
+                .desc("seconds between two metrics log lines, default " + Constants.METRICS_LOG_INTERVAL).build());
+        options.addOption(Option.builder().longOpt("pack-file-size").hasArg()
+                .desc("megabytes written to a pack before the next one, default "
+                        + Constants.PACK_FILE_SIZE / MEGABYTE).build());
+        options.addOption(Option.builder().longOpt("pack-compression-level").hasArg()
+                .desc("deflate level of the packs, 0 to 9, default " + Constants.PACK_COMPRESSION_LEVEL).build());
+
         CommandLineParser parser = new DefaultParser();
         HelpFormatter formatter = new HelpFormatter();
         CommandLine cmd;
 
         try {
-            return parser.parse(options, args);
+            cmd = parser.parse(options, args);
+            if (!cmd.hasOption("keyword") && !cmd.hasOption("keyword-file")) {
+                throw new ParseException("Missing keyword: k or f");
+            }
+            if (getKeywords(cmd).stream().allMatch(StringUtils::isBlank)) {
+                throw new ParseException("Missing keyword: k and f only hold blank keywords");
+            }
+            return cmd;
         } catch (ParseException e) {
             System.out.println(e.getMessage());
             formatter.printHelp("websearcher", options);
@@ -151,73 +411,214 @@ public class WebSearcherApp {
     }
 
     /**
-     * Spawning Threads to process each URL.
-     * The strategy is to let give the csv records iterator
-     * so each thread can process the next available url
-     *
-     * @param urlProcessor
-     * @param recordsIterator
+     * Keywords given with -k and read from the -f file
+     * @param cmd
      * @return
+     * @throws IOException
      */
-    private static Thread[] createThreads(
-            UrlProcessor urlProcessor,
-            Iterator<CSVRecord> recordsIterator) {
-
-        Thread[] threads = new Thread[Constants.THREAD_COUNT];
-        //Spawn threads and process
-        for (int threadIndex = 0;
-             threadIndex < Constants.THREAD_COUNT;
-             threadIndex++) {
-
-            threads[threadIndex] = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    urlProcessor.processUrl(recordsIterator);
-                }
-            });
-            threads[threadIndex].start();
+    private static List<String> getKeywords(CommandLine cmd) throws IOException {
+
+        List<String> keywords = new ArrayList<>();
+        if (cmd.hasOption("keyword")) {
+            keywords.addAll(Arrays.asList(cmd.getOptionValues("keyword")));
+        }
+        if (cmd.hasOption("keyword-file")) {
+            keywords.addAll(FileUtils.readLines(
+                    new File(cmd.getOptionValue("keyword-file")),
+                    Charset.defaultCharset()));
         }
-        return threads;
+        return keywords;
     }
 
     /**
-     * Wait and make sure all threads have finished processing
-     * @param threads
-     * @throws InterruptedException
+     * Settings from the optional command line args
+     * @param cmd
+     * @return
      */
-    private static void joinThreads(Thread[] threads) throws InterruptedException {
-        for (Thread thread : threads) {
-            thread.join();
+    private static AppConfig createAppConfig(CommandLine cmd) {
+
+        AppConfig appConfig = new AppConfig();
+        appConfig.setStorageLayout(getEnumOption(cmd, "storage", AppConfig.StorageLayout.FLAT));
+        appConfig.setResultFormat(getEnumOption(cmd, "format", AppConfig.ResultFormat.TEXT));
+        boolean packed = appConfig.getStorageLayout() == AppConfig.StorageLayout.PACK;
+        appConfig.setInMemory(packed || cmd.hasOption("in-memory"));    //Packs are written from memory
+        appConfig.setSaveFiles(packed || cmd.hasOption("save-files"));
+        appConfig.setJsoupExtractor(cmd.hasOption("jsoup"));
+        appConfig.setFetchThreadCount(
+                getPositiveIntOption(cmd, "fetch-threads", Constants.THREAD_COUNT));
+        appConfig.setExtractThreadCount(
+                getPositiveIntOption(cmd, "extract-threads", Constants.EXTRACT_THREAD_COUNT));
+        appConfig.setSearchThreadCount(
+                getPositiveIntOption(cmd, "search-threads", Constants.SEARCH_THREAD_COUNT));
+        appConfig.setHttp2(cmd.hasOption("http2"));
+        appConfig.setAsyncFetch(appConfig.isHttp2() || cmd.hasOption("async"));    //Only the async client speaks HTTP/2
+        appConfig.setCompression(!cmd.hasOption("no-compression"));
+        appConfig.setMaxInFlight(
+                getPositiveIntOption(cmd, "max-in-flight", Constants.ASYNC_MAX_IN_FLIGHT));
+        appConfig.setMaxRequestsPerHost(
+                getPositiveIntOption(cmd, "max-per-host", Constants.MAX_REQUESTS_PER_HOST));
+        appConfig.setHostRequestInterval(
+                getIntOption(cmd, "host-interval", Constants.HOST_REQUEST_INTERVAL, 0, Integer.MAX_VALUE));
+        appConfig.setBloomDedup(cmd.hasOption("bloom-dedup"));
+        appConfig.setDedupFalsePositiveRate(
+                getRateOption(cmd, "dedup-fpp", Constants.DEDUP_FALSE_POSITIVE_RATE));
+        appConfig.setExpectedUrlCount(
+                getPositiveIntOption(cmd, "expected-urls", Constants.EXPECTED_URL_COUNT));
+        appConfig.setResume(!cmd.hasOption("restart"));
+        appConfig.setHttpCache(cmd.hasOption("cache"));
+        appConfig.setCacheMaxAge(
+                getIntOption(cmd, "cache-max-age", Constants.HTTP_CACHE_MAX_AGE, 0, Integer.MAX_VALUE));
+        appConfig.setCacheMaxSize(
+                getPositiveIntOption(cmd, "cache-max-size", Constants.HTTP_CACHE_MAX_SIZE));
+        appConfig.setBuildIndex(cmd.hasOption("index"));
+        appConfig.setSearchIndex(cmd.hasOption("search"));
+        appConfig.setRescanText(cmd.hasOption("rescan"));
+        if (cmd.hasOption("seed-url")) {
+            appConfig.setSeedUrl(cmd.getOptionValue("seed-url"));
         }
+        appConfig.setCrawlDepth(
+                getIntOption(cmd, "crawl-depth", Constants.CRAWL_DEPTH, 0, Integer.MAX_VALUE));
+        appConfig.setMaxPagesPerHost(
+                getPositiveIntOption(cmd, "max-pages-per-host", Constants.MAX_PAGES_PER_HOST));
+        appConfig.setFrontierMemorySize(
+                getPositiveIntOption(cmd, "frontier-memory-size", Constants.FRONTIER_MEMORY_SIZE));
+        appConfig.setFrontierSegmentSize(
+                getPositiveIntOption(cmd, "frontier-segment-size", Constants.FRONTIER_SEGMENT_SIZE));
+        appConfig.setAdaptiveConcurrency(!cmd.hasOption("fixed-concurrency"));
+        appConfig.setMinConcurrency(
+                getPositiveIntOption(cmd, "min-concurrency", Constants.MIN_CONCURRENCY));
+        appConfig.setConnectionTimeout(
+                getPositiveIntOption(cmd, "connection-timeout", Constants.CONNECTION_TIMEOUT));
+        appConfig.setStageQueueSize(
+                getPositiveIntOption(cmd, "stage-queue-size", Constants.STAGE_QUEUE_SIZE));
+        appConfig.setSchedulerQueueSize(
+                getPositiveIntOption(cmd, "scheduler-queue-size", Constants.SCHEDULER_QUEUE_SIZE));
+        appConfig.setSeedBatchSize(
+                getPositiveIntOption(cmd, "seed-batch-size", Constants.SEED_BATCH_SIZE));
+        appConfig.setMaxConnectionsPerRoute(
+                getPositiveIntOption(cmd, "max-connections-per-route", Constants.MAX_CONNECTIONS_PER_ROUTE));
+        appConfig.setKeepAliveTimeout(
+                getPositiveIntOption(cmd, "keep-alive-timeout", Constants.KEEP_ALIVE_TIMEOUT));
+        appConfig.setIdleConnectionTimeout(
+                getPositiveIntOption(cmd, "idle-connection-timeout", Constants.IDLE_CONNECTION_TIMEOUT));
+        appConfig.setDownloadBufferSize(
+                getPositiveIntOption(cmd, "download-buffer-size", Constants.DOWNLOAD_BUFFER_SIZE));
+        appConfig.setSideOutputThreadCount(
+                getPositiveIntOption(cmd, "side-output-threads", Constants.SIDE_OUTPUT_THREAD_COUNT));
+        appConfig.setSideOutputQueueSize(
+                getPositiveIntOption(cmd, "side-output-queue-size", Constants.SIDE_OUTPUT_QUEUE_SIZE));
+        appConfig.setJournalSyncBatch(
+                getPositiveIntOption(cmd, "journal-sync-batch", Constants.JOURNAL_SYNC_BATCH));
+        appConfig.setIndexSegmentSize(MEGABYTE * getIntOption(cmd, "index-segment-size",
+                Constants.INDEX_SEGMENT_SIZE / MEGABYTE, 1, Integer.MAX_VALUE / MEGABYTE));
+        appConfig.setMetricsLogInterval(
+                getPositiveIntOption(cmd, "metrics-interval", Constants.METRICS_LOG_INTERVAL));
+        appConfig.setPackFileSize((long) MEGABYTE * getPositiveIntOption(cmd, "pack-file-size",
+                (int) (Constants.PACK_FILE_SIZE / MEGABYTE)));
+        appConfig.setPackCompressionLevel(
+                getIntOption(cmd, "pack-compression-level", Constants.PACK_COMPRESSION_LEVEL, 0, 9));
+        return appConfig;
     }
 
     /**
-     * Format and return the result.
-     * @param resultCollector
+     * Value of an option naming a constant of the enum, exits if it is not a known one
+     * @param cmd
+     * @param name
+     * @param defaultValue
      * @return
      */
-    private static String getResultsText(ResultCollector resultCollector) {
+    private static <E extends Enum<E>> E getEnumOption(
+            CommandLine cmd,
+            String name,
+            E defaultValue) {
+
+        if (!cmd.hasOption(name)) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(),
+                    cmd.getOptionValue(name).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.out.println(MessageFormat.format(
+                    "Invalid value for {0}: {1}", name, cmd.getOptionValue(name)));
+            System.exit(-1);
+            return defaultValue;
+        }
+    }
 
-        StringBuilder stringBuilder = new StringBuilder();
-        Map<String, String> errorMap = resultCollector.getErrorMap();
-        stringBuilder.append(MessageFormat.format(
-                "{0} Urls Errored out.\n", errorMap.size()));
-        for(String urlFragment : errorMap.keySet()) {
+    /**
+     * Value of a numeric option, exits if it is not a positive number
+     * @param cmd
+     * @param name
+     * @param defaultValue
+     * @return
+     */
+    private static int getPositiveIntOption(
+            CommandLine cmd,
+            String name,
+            int defaultValue) {
+        return getIntOption(cmd, name, defaultValue, 1, Integer.MAX_VALUE);
+    }
 
-            stringBuilder.append(MessageFormat.format(
-                    "{0} : {1}\n", urlFragment,
-                    errorMap.get(urlFragment)));
+    /**
+     * Value of a numeric option, exits if it is not within min and max
+     * @param cmd
+     * @param name
+     * @param defaultValue
+     * @param min
+     * @param max
+     * @return
+     */
+    private static int getIntOption(
+            CommandLine cmd,
+            String name,
+            int defaultValue,
+            int min,
+            int max) {
+
+        if (!cmd.hasOption(name)) {
+            return defaultValue;
         }
-        Map<String, List<Integer>> resultsMap = resultCollector.getSearchResultMap();
-        stringBuilder.append(MessageFormat.format(
-                "{0} Urls Processed.\n", resultsMap.size()));
-        for(String urlFragment : resultsMap.keySet()) {
-
-            stringBuilder.append(MessageFormat.format(
-                    "{0} : {1}\n", urlFragment,
-                    resultsMap.get(urlFragment.toString())));
+        try {
+            int value = Integer.parseInt(cmd.getOptionValue(name));
+            if (value >= min && value <= max) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            //Reported below
         }
+        System.out.println(MessageFormat.format(
+                "Invalid value for {0}: {1}", name, cmd.getOptionValue(name)));
+        System.exit(-1);
+        return defaultValue;
+    }
+
+    /**
+     * Value of a rate option, exits if it is not strictly between 0 and 1
+     * @param cmd
+     * @param name
+     * @param defaultValue
+     * @return
+     */
+    private static double getRateOption(
+            CommandLine cmd,
+            String name,
+            double defaultValue) {
 
-        return stringBuilder.toString();
+        if (!cmd.hasOption(name)) {
+            return defaultValue;
+        }
+        try {
+            double value = Double.parseDouble(cmd.getOptionValue(name));
+            if (value > 0 && value < 1) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            //Reported below
+        }
+        System.out.println(MessageFormat.format(
+                "Invalid value for {0}: {1}", name, cmd.getOptionValue(name)));
+        System.exit(-1);
+        return defaultValue;
     }
 }
@@ -0,0 +1,135 @@
+package com.websearcher.impl;
+
+import com.websearcher.Constants;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit on the fetches in flight, additive increase multiplicative decrease.
+ *
+ * Every completed fetch is a sample. While fetches succeed and their latency
+ * holds the limit grows, by one per success until the first cut (slow start)
+ * then by one per limit's worth of successes. It is cut by LIMITER_BACKOFF when
+ * the recent latency climbs LIMITER_LATENCY_TOLERANCE times above the long run
+ * latency or the recent error rate passes LIMITER_ERROR_RATE, which is how a
+ * saturated link or server shows. Fetches started before a cut do not cut again.
+ * The limit only grows while it is being used and stays between min and max.
+ */
+class AdaptiveLimiter {
+
+    private static final double SHORT_WEIGHT = 0.1;     //Moving averages, recent samples
+    private static final double LONG_WEIGHT = 0.01;     //Long run
+
+    private final int min;
+    private final int max;
+    private final LongSupplier clock;   //Nanos, same clock as the fetch start times
+    private double limit;
+    private int inFlight = 0;
+    private boolean slowStart = true;
+    private long lastCut;
+    private double shortLatency = 0;    //Nanos, of successful fetches
+    private double longLatency = 0;
+    private double errorRate = 0;
+
+    /**
+     * @param min : floor of the limit, also the initial limit
+     * @param max : ceiling of the limit, min = max keeps it fixed
+     */
+    AdaptiveLimiter(
+            int min,
+            int max) {
+        this(min, max, System::nanoTime);
+    }
+
+    /**
+     * @param min : floor of the limit, also the initial limit
+     * @param max : ceiling of the limit, min = max keeps it fixed
+     * @param clock : nano time
+     */
+    AdaptiveLimiter(
+            int min,
+            int max,
+            LongSupplier clock) {
+
+        this.min = Math.max(1, Math.min(min, max));
+        this.max = Math.max(1, max);
+        this.clock = clock;
+        this.limit = this.min;
+        this.lastCut = clock.getAsLong();
+    }
+
+    /**
+     * Wait for a slot under the limit
+     * @throws InterruptedException
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Hand back the slot with the outcome of the fetch
+     * @param start : nano time of the clock when the fetch started
+     * @param succeeded
+     */
+    synchronized void release(
+            long start,
+            boolean succeeded) {
+
+        long now = clock.getAsLong();
+        boolean saturated = inFlight * 2 >= (int) limit;
+        inFlight--;
+
+        errorRate += SHORT_WEIGHT * ((succeeded ? 0 : 1) - errorRate);
+        if (succeeded) {
+            long latency = now - start;
+            if (longLatency == 0) {
+                shortLatency = latency;
+                longLatency = latency;
+            } else {
+                shortLatency += SHORT_WEIGHT * (latency - shortLatency);
+                longLatency += LONG_WEIGHT * (latency - longLatency);
+            }
+        }
+
+        if (errorRate > Constants.LIMITER_ERROR_RATE ||
+                shortLatency > longLatency * Constants.LIMITER_LATENCY_TOLERANCE) {
+            if (start - lastCut > 0) {
+                limit = Math.max(min, limit * Constants.LIMITER_BACKOFF);
+                lastCut = now;
+                slowStart = false;
+            }
+        } else if (succeeded && saturated) {
+            limit = Math.min(max, limit + (slowStart ? 1 : 1 / limit));
+        }
+        notifyAll();
+    }
+
+    /**
+     * Wait for every fetch to be released
+     * @throws InterruptedException
+     */
+    synchronized void awaitIdle() throws InterruptedException {
+        while (inFlight > 0) {
+            wait();
+        }
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Slots acquire would hand out without waiting
+     * @return
+     */
+    synchronized int getAvailable() {
+        return Math.max(0, (int) limit - inFlight);
+    }
+}
@@ -0,0 +1,144 @@
+package com.websearcher.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.DocumentStore;
+import com.websearcher.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes raw and text files to the usual <root folder>/raw and
+ * <root folder>/text paths on a small pool of background threads.
+ * When the queue is full the caller writes the file itself, which keeps
+ * memory bounded if the disk cannot keep up.
+ */
+@Singleton
+class AsyncFileDocumentStore implements DocumentStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncFileDocumentStore.class);
+
+    private final AppUtils appUtils;
+    private final IOUtils ioUtils;
+    private final ExecutorService executor;
+
+    @Inject
+    AsyncFileDocumentStore(
+            AppUtils appUtils,
+            AppConfig appConfig,
+            IOUtils ioUtils) {
+
+        this.appUtils = appUtils;
+        this.ioUtils = ioUtils;
+        this.executor = new ThreadPoolExecutor(
+                appConfig.getSideOutputThreadCount(),
+                appConfig.getSideOutputThreadCount(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(appConfig.getSideOutputQueueSize()),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("document-store-%d")
+                        .setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeRaw(String urlFragment, String html) {
+        write(appUtils.getLocalRawFilePath(urlFragment), html);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeText(String urlFragment, String text) {
+        write(appUtils.getLocalTextFilePath(urlFragment), text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String readRaw(String urlFragment) throws IOException {
+        return read(appUtils.getLocalRawFilePath(urlFragment));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String readText(String urlFragment) throws IOException {
+        return read(appUtils.getLocalTextFilePath(urlFragment));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getTextFragments() throws IOException {
+        if (!Files.isDirectory(appUtils.getTextFileRoot())) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.walk(appUtils.getTextFileRoot())) {
+            return files.filter(Files::isRegularFile)
+                    .map(appUtils::getTextFileFragment)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.info("Waiting for pending document writes...");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for document writes", e);
+        }
+    }
+
+    private String read(Path path) throws IOException {
+        return Files.exists(path) ? ioUtils.readTextFile(new File(path.toString())) : null;
+    }
+
+    /**
+     * Queue the write, failures are logged as the page
+     * has already been searched.
+     *
+     * @param path
+     * @param content
+     */
+    private void write(Path path, String content) {
+        executor.execute(() -> {
+            try {
+                ioUtils.writeTextFile(new File(path.toString()), content);
+            } catch (IOException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        });
+    }
+}
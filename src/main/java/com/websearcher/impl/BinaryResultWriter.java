@@ -0,0 +1,144 @@
+package com.websearcher.impl;
+
+import com.google.inject.Inject;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ResultCollector;
+import com.websearcher.ResultWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes results.bin as results arrive, big endian as DataOutput writes it :
+ *
+ * header : "WSR1", keyword count (int), keywords (string)
+ * record : type (byte), payload length (int), payload
+ *   RESULT : url (string), entry count (int), per entry keyword index (int)
+ *            and offsets as MatchOffsets.writeTo (varint deltas, read back with readFrom)
+ *   ERROR : url (string), error (string)
+ *   SUMMARY : error count (int), url count (int), per keyword match count (long) and url count (long)
+ * string : UTF-8 byte length (int), UTF-8 bytes
+ *
+ * The length prefix lets a reader skip the records it does not need,
+ * the summary is the last record.
+ */
+class BinaryResultWriter implements ResultWriter {
+
+    static final byte[] MAGIC = {'W', 'S', 'R', '1'};
+    static final byte RESULT = 1;
+    static final byte ERROR = 2;
+    static final byte SUMMARY = 3;
+
+    private final AppUtils appUtils;
+    private final Map<String, Integer> keywordIndices = new HashMap<>();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();  //Payload, reused
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
+    private DataOutputStream output = null;     //Opened on first write
+
+    @Inject
+    BinaryResultWriter(AppUtils appUtils) {
+        this.appUtils = appUtils;
+        List<String> keywords = appUtils.getKeywords();
+        for (int i = 0; i < keywords.size(); i++) {
+            keywordIndices.put(keywords.get(i), i);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeResult(String url, Map<String, MatchOffsets> searchIndexMap) throws IOException {
+
+        record.reset();
+        writeString(recordOutput, url);
+        recordOutput.writeInt(searchIndexMap.size());
+        for (Map.Entry<String, MatchOffsets> entry : searchIndexMap.entrySet()) {
+            recordOutput.writeInt(keywordIndices.get(entry.getKey()));
+            entry.getValue().writeTo(recordOutput);
+        }
+        writeRecord(RESULT);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeError(String url, String error) throws IOException {
+
+        record.reset();
+        writeString(recordOutput, url);
+        writeString(recordOutput, error != null ? error : "");
+        writeRecord(ERROR);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeSummary(ResultCollector resultCollector) throws IOException {
+
+        record.reset();
+        recordOutput.writeInt(resultCollector.getErrorCount());
+        recordOutput.writeInt(resultCollector.getResultCount());
+        for (String keyword : appUtils.getKeywords()) {
+            recordOutput.writeLong(resultCollector.getMatchCount(keyword));
+            recordOutput.writeLong(resultCollector.getUrlCount(keyword));
+        }
+        writeRecord(SUMMARY);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        if (output != null) {
+            output.flush();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (output != null) {
+            output.close();
+            output = null;
+        }
+    }
+
+    private void writeRecord(byte type) throws IOException {
+
+        if (output == null) {
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                    appUtils.getResultsFilePath(AppConfig.ResultFormat.BINARY))));
+            output.write(MAGIC);
+            List<String> keywords = appUtils.getKeywords();
+            output.writeInt(keywords.size());
+            for (String keyword : keywords) {
+                writeString(output, keyword);
+            }
+        }
+        output.writeByte(type);
+        output.writeInt(record.size());
+        record.writeTo(output);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,49 @@
+package com.websearcher.impl;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.websearcher.SeenUrlSet;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Probabilistic set of url fragments, a fixed few bits per url.
+ *
+ * A url is never processed twice, but with the given false positive
+ * rate a new url is taken for one seen before and skipped.
+ * Sized for the expected number of urls, the rate goes up past it.
+ */
+class BloomUrlSet implements SeenUrlSet {
+
+    private final BloomFilter<CharSequence> filter;
+
+    /**
+     * @param expectedSize
+     * @param falsePositiveRate : between 0 and 1
+     */
+    BloomUrlSet(
+            int expectedSize,
+            double falsePositiveRate) {
+
+        filter = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8), expectedSize, falsePositiveRate);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Thread safe, the filter bits are updated lock free.
+     */
+    @Override
+    public boolean add(String urlFragment) {
+        return filter.put(urlFragment);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long size() {
+        return filter.approximateElementCount();
+    }
+}
@@ -0,0 +1,185 @@
+package com.websearcher.impl;
+
+import com.websearcher.SeenUrlSet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Exact set of url fragments with compact keys.
+ *
+ * Fragments are stored as UTF-8 bytes, length prefixed, back to back in
+ * one byte array per segment. An open addressing table of int offsets
+ * and hashes points into it, so a url costs its bytes plus about a dozen
+ * bytes instead of a String, its array and a HashMap node.
+ * Segments are locked independently so concurrent adds rarely contend.
+ * Only the tables are sized for the expected urls up front, the key
+ * bytes start small and grow by half as urls are added.
+ */
+class CompactUrlSet implements SeenUrlSet {
+
+    private static final int SEGMENT_COUNT = 64;   //Power of 2
+    private static final int INITIAL_KEYS_LENGTH = 1024;   //Bytes of keys per segment before it grows
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    /**
+     * @param expectedSize : urls the set is sized for up front, it grows past it
+     */
+    CompactUrlSet(int expectedSize) {
+        int segmentSize = Math.max(16, expectedSize / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(String urlFragment) {
+        byte[] key = urlFragment.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        return segments[hash & (SEGMENT_COUNT - 1)].add(key, hash);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Bytes held by the keys and tables
+     * @return
+     */
+    long getMemoryUsage() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getMemoryUsage();
+        }
+        return bytes;
+    }
+
+    /**
+     * Arrays.hashCode spread so the low bits pick the segment
+     * and the high bits the slot
+     */
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Segment {
+
+        private int[] offsets;      //Offset + 1 of the key in keys, 0 for an empty slot
+        private int[] hashes;
+        private byte[] keys;        //Varint length then the bytes of each key
+        private int keysLength = 0;
+        private int size = 0;
+
+        Segment(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 4 / 3)) << 1;
+            offsets = new int[capacity];
+            hashes = new int[capacity];
+            keys = new byte[INITIAL_KEYS_LENGTH];
+        }
+
+        synchronized boolean add(byte[] key, int hash) {
+
+            int mask = offsets.length - 1;
+            int slot = (hash >>> 6) & mask;
+            while (offsets[slot] != 0) {
+                if (hashes[slot] == hash && keyEquals(offsets[slot] - 1, key)) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            offsets[slot] = appendKey(key) + 1;
+            hashes[slot] = hash;
+            if (++size > offsets.length * 3 / 4) {
+                resize();
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long getMemoryUsage() {
+            return keys.length + 8L * offsets.length;
+        }
+
+        private boolean keyEquals(int offset, byte[] key) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = keys[offset++];
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (length != key.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (keys[offset + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param key
+         * @return offset of the stored key
+         */
+        private int appendKey(byte[] key) {
+
+            int needed = keysLength + key.length + 5;
+            if (needed > keys.length) {
+                if (needed < 0) {
+                    throw new IllegalStateException("Url set segment is full");
+                }
+                keys = Arrays.copyOf(keys, Math.max(needed, keys.length + (keys.length >> 1)));
+            }
+            int offset = keysLength;
+            int length = key.length;
+            while ((length & ~0x7F) != 0) {
+                keys[keysLength++] = (byte) ((length & 0x7F) | 0x80);
+                length >>>= 7;
+            }
+            keys[keysLength++] = (byte) length;
+            System.arraycopy(key, 0, keys, keysLength, key.length);
+            keysLength += key.length;
+            return offset;
+        }
+
+        private void resize() {
+
+            int[] oldOffsets = offsets;
+            int[] oldHashes = hashes;
+            offsets = new int[oldOffsets.length * 2];
+            hashes = new int[oldOffsets.length * 2];
+            int mask = offsets.length - 1;
+            for (int i = 0; i < oldOffsets.length; i++) {
+                if (oldOffsets[i] != 0) {
+                    int slot = (oldHashes[i] >>> 6) & mask;
+                    while (offsets[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    offsets[slot] = oldOffsets[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.websearcher.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-Encoding negotiation, gzip and deflate as the JDK can inflate them.
+ *
+ * "deflate" is meant to be zlib wrapped but some servers send raw deflate,
+ * both are accepted. Bodies are inflated as they arrive, blocking responses
+ * through a decoding stream, async responses chunk by chunk in the body subscriber.
+ */
+final class ContentEncodings {
+
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private ContentEncodings() {
+    }
+
+    /**
+     * @param body : body as sent
+     * @param contentEncoding : Content-Encoding header, null if not sent
+     * @return body decoded
+     * @throws IOException : unknown encoding or corrupt body
+     */
+    static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+
+        switch (normalize(contentEncoding)) {
+            case "":
+            case "identity":
+                return body;
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(body, CHUNK_SIZE);
+            case "deflate":
+                PushbackInputStream pushback = new PushbackInputStream(body, 2);
+                byte[] head = new byte[2];
+                int read = pushback.readNBytes(head, 0, 2);
+                pushback.unread(head, 0, read);
+                return new InflaterInputStream(pushback,
+                        new Inflater(read == 2 && !isZlibHeader(head[0], head[1])), CHUNK_SIZE);
+            default:
+                throw new IOException("Unsupported Content-Encoding : " + contentEncoding);
+        }
+    }
+
+    /**
+     * Handler that hands the decoded body to the given one
+     *
+     * @param handler : handler of the decoded body
+     * @param wireBytes : gets the size of each chunk as received
+     * @return
+     */
+    static <T> HttpResponse.BodyHandler<T> decoding(
+            HttpResponse.BodyHandler<T> handler,
+            LongConsumer wireBytes) {
+
+        return responseInfo -> new DecodingSubscriber<>(
+                handler.apply(responseInfo),
+                normalize(responseInfo.headers().firstValue("Content-Encoding").orElse(null)),
+                wireBytes);
+    }
+
+    private static String normalize(String contentEncoding) {
+        return contentEncoding == null ? "" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * zlib stream : deflate method and a header check that is a multiple of 31
+     */
+    private static boolean isZlibHeader(byte cmf, byte flg) {
+        return (cmf & 0x0F) == 8 && (((cmf & 0xFF) << 8) | (flg & 0xFF)) % 31 == 0;
+    }
+
+    /**
+     * Inflates each chunk as it arrives and passes the result on, one
+     * list of buffers out per list in so the demand of the downstream
+     * subscriber holds as is.
+     *
+     * Gzip members are parsed here : the header is skipped, the deflate
+     * data inflated raw and the trailer checked against the CRC and size.
+     */
+    private static final class DecodingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+        private enum State {
+            HEADER,     //Gzip or deflate header still to come
+            DATA,
+            TRAILER,    //Gzip trailer still to come
+            DONE
+        }
+
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final String contentEncoding;
+        private final LongConsumer wireBytes;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final CRC32 crc = new CRC32();
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream();    //Header or trailer bytes so far
+        private Inflater inflater = null;
+        private State state;
+        private Flow.Subscription subscription;
+        private boolean received = false;
+        private boolean failed = false;
+
+        DecodingSubscriber(
+                HttpResponse.BodySubscriber<T> downstream,
+                String contentEncoding,
+                LongConsumer wireBytes) {
+
+            this.downstream = downstream;
+            this.contentEncoding = contentEncoding;
+            this.wireBytes = wireBytes;
+            this.state = contentEncoding.isEmpty() || "identity".equals(contentEncoding) ?
+                    State.DONE : State.HEADER;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            downstream.onSubscribe(subscription);
+            if (!contentEncoding.isEmpty() && !"identity".equals(contentEncoding) &&
+                    !"gzip".equals(contentEncoding) && !"x-gzip".equals(contentEncoding) &&
+                    !"deflate".equals(contentEncoding)) {
+                fail(new IOException("Unsupported Content-Encoding : " + contentEncoding));
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+
+            if (failed) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                wireBytes.accept(buffer.remaining());
+            }
+            if (state == State.DONE && inflater == null) {
+                downstream.onNext(buffers);     //Identity
+                return;
+            }
+
+            List<ByteBuffer> decoded = new ArrayList<>();
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    received |= buffer.hasRemaining();
+                    decode(buffer, decoded);
+                }
+            } catch (IOException | DataFormatException e) {
+                fail(e);
+                return;
+            }
+            downstream.onNext(decoded);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            end();
+            if (!failed) {
+                downstream.onError(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (failed) {
+                return;
+            }
+            boolean complete = state == State.DONE || !received;   //No body at all, e.g. a 304
+            end();
+            if (complete) {
+                downstream.onComplete();
+            } else {
+                failed = true;
+                downstream.onError(new IOException("Truncated " + contentEncoding + " body"));
+            }
+        }
+
+        private void decode(ByteBuffer buffer, List<ByteBuffer> decoded) throws IOException, DataFormatException {
+
+            while (buffer.hasRemaining()) {
+                switch (state) {
+                    case HEADER:
+                        readHeader(buffer, decoded);
+                        break;
+                    case DATA:
+                        inflate(buffer, decoded);
+                        break;
+                    case TRAILER:
+                        readTrailer(buffer);
+                        break;
+                    default:
+                        buffer.position(buffer.limit());    //Anything after the body is ignored
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Inflate all of the input, or up to the end of the deflate data
+         */
+        private void inflate(ByteBuffer input, List<ByteBuffer> decoded) throws IOException, DataFormatException {
+
+            inflater.setInput(input);
+            int length;
+            while ((length = inflater.inflate(chunk)) > 0) {
+                crc.update(chunk, 0, length);
+                decoded.add(ByteBuffer.wrap(Arrays.copyOf(chunk, length)));
+            }
+            if (inflater.finished()) {
+                state = "deflate".equals(contentEncoding) ? State.DONE : State.TRAILER;
+            } else if (!inflater.needsInput()) {
+                throw new IOException("Deflate body needs a preset dictionary");
+            }
+        }
+
+        /**
+         * Buffer the header until it is complete, then start inflating.
+         * Deflate has no header of its own, its first two bytes tell zlib from raw.
+         */
+        private void readHeader(ByteBuffer buffer, List<ByteBuffer> decoded) throws IOException, DataFormatException {
+
+            pending.write(buffer.get());
+            byte[] header = pending.toByteArray();
+            if ("deflate".equals(contentEncoding)) {
+                if (header.length == 2) {
+                    inflater = new Inflater(!isZlibHeader(header[0], header[1]));
+                    state = State.DATA;
+                    inflate(ByteBuffer.wrap(header), decoded);
+                }
+            } else if (getGzipHeaderLength(header) > 0) {
+                inflater = new Inflater(true);
+                pending = new ByteArrayOutputStream();
+                state = State.DATA;
+            }
+        }
+
+        /**
+         * Check the CRC and size of the inflated data
+         */
+        private void readTrailer(ByteBuffer buffer) throws IOException {
+
+            pending.write(buffer.get());
+            if (pending.size() < 8) {
+                return;
+            }
+            ByteBuffer trailer = ByteBuffer.wrap(pending.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+            if ((trailer.getInt() & 0xFFFFFFFFL) != crc.getValue() ||
+                    trailer.getInt() != (int) inflater.getBytesWritten()) {
+                throw new IOException("Corrupt gzip body");
+            }
+            state = State.DONE;
+        }
+
+        private void fail(Exception e) {
+            failed = true;
+            end();
+            subscription.cancel();
+            downstream.onError(e);
+        }
+
+        private void end() {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+
+        /**
+         * @param header : bytes received so far
+         * @return length of the gzip header, 0 if more bytes are needed
+         * @throws IOException : not gzip
+         */
+        private static int getGzipHeaderLength(byte[] header) throws IOException {
+
+            if (header.length >= 2 && ((header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B)) {
+                throw new IOException("Not in gzip format");
+            }
+            if (header.length < 10) {
+                return 0;
+            }
+            int flags = header[3] & 0xFF;
+            int length = 10;
+            if ((flags & 4) != 0) {     //FEXTRA
+                if (header.length < length + 2) {
+                    return 0;
+                }
+                length += 2 + ((header[length] & 0xFF) | (header[length + 1] & 0xFF) << 8);
+            }
+            for (int flag : new int[]{8, 16}) {     //FNAME, FCOMMENT, zero terminated
+                if ((flags & flag) != 0) {
+                    while (length < header.length && header[length] != 0) {
+                        length++;
+                    }
+                    if (length++ >= header.length) {
+                        return 0;
+                    }
+                }
+            }
+            if ((flags & 2) != 0) {     //FHCRC
+                length += 2;
+            }
+            return header.length >= length ? length : 0;
+        }
+    }
+}
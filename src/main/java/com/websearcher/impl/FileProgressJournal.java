@@ -0,0 +1,244 @@
+package com.websearcher.impl;
+
+import com.google.common.io.CountingInputStream;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.Constants;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ProgressJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary journal in the output folder.
+ *
+ * Header : magic, keywords the run searched for.
+ * Records : type, url, then the offsets per keyword.
+ * Records are buffered and synced to disk every JOURNAL_SYNC_BATCH
+ * records and on flush, a record torn by a crash is dropped on replay.
+ * A journal written for other keywords is not replayed.
+ */
+@Singleton
+class FileProgressJournal implements ProgressJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileProgressJournal.class);
+
+    private static final int MAGIC = 0x57534A31;    //WSJ1
+    private static final int RESULT = 0;
+
+    private final Path journalPath;
+    private final List<String> keywords;
+    private final int syncBatch;        //Records appended between two syncs
+
+    private long validLength = -1;      //End of the last replayed record, -1 to start over
+    private FileChannel channel = null;
+    private DataOutputStream out = null;
+    private int unsynced = 0;           //Records appended since the last sync
+
+    @Inject
+    FileProgressJournal(
+            AppUtils appUtils,
+            AppConfig appConfig) {
+
+        this.journalPath = appUtils.getJournalFilePath();
+        this.keywords = appUtils.getKeywords();
+        this.syncBatch = appConfig.getJournalSyncBatch();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long replay(Listener listener) throws IOException {
+
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+
+        long count = 0;
+        try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(
+                Files.newInputStream(journalPath), Constants.DOWNLOAD_BUFFER_SIZE));
+             DataInputStream in = new DataInputStream(counting)) {
+
+            if (!readHeader(in)) {
+                LOGGER.warn("Journal " + journalPath + " is for other keywords, starting over");
+                return 0;
+            }
+            validLength = counting.getCount();
+
+            int type;
+            while ((type = in.read()) >= 0) {
+                try {
+                    if (type != RESULT) {
+                        throw new EOFException("Unknown record type " + type);
+                    }
+                    String url = readString(in);
+                    int keywordCount = in.readInt();
+                    Map<String, MatchOffsets> searchIndexMap = new LinkedHashMap<>();
+                    for (int i = 0; i < keywordCount; i++) {
+                        searchIndexMap.put(readString(in), MatchOffsets.readFrom(in));
+                    }
+                    listener.onResult(url, searchIndexMap);
+                } catch (EOFException e) {
+                    LOGGER.warn("Dropping the incomplete record at the end of " + journalPath);
+                    break;
+                }
+                validLength = counting.getCount();
+                count++;
+            }
+
+        } catch (EOFException e) {
+            LOGGER.warn("Journal " + journalPath + " has no header, starting over");
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void appendResult(
+            String url,
+            Map<String, MatchOffsets> searchIndexMap) throws IOException {
+
+        open();
+        out.writeByte(RESULT);
+        writeString(url);
+        out.writeInt(searchIndexMap.size());
+        for (Map.Entry<String, MatchOffsets> entry : searchIndexMap.entrySet()) {
+            writeString(entry.getKey());
+            entry.getValue().writeTo(out);
+        }
+        appended();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+            channel.force(false);
+            unsynced = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            try {
+                flush();
+            } finally {
+                out.close();
+                out = null;
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void complete() throws IOException {
+        close();
+        Files.deleteIfExists(journalPath);
+    }
+
+    /**
+     * Open for append on first use, after the replayed records or over any old journal
+     *
+     * @throws IOException
+     */
+    private void open() throws IOException {
+
+        if (out != null) {
+            return;
+        }
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(Math.max(validLength, 0));
+        channel.position(Math.max(validLength, 0));
+        out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel), Constants.DOWNLOAD_BUFFER_SIZE));
+        if (validLength < 0) {
+            writeHeader();
+        }
+    }
+
+    private void appended() throws IOException {
+        if (++unsynced >= syncBatch) {
+            flush();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(keywords.size());
+        for (String keyword : keywords) {
+            writeString(keyword);
+        }
+    }
+
+    /**
+     * @param in
+     * @return true if the journal was written for the same keywords
+     * @throws IOException
+     */
+    private boolean readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            return false;
+        }
+        int keywordCount = in.readInt();
+        List<String> journalKeywords = new ArrayList<>();
+        for (int i = 0; i < keywordCount; i++) {
+            journalKeywords.add(readString(in));
+        }
+        return keywords.equals(journalKeywords);
+    }
+
+    /**
+     * Length prefixed UTF-8, no 64K limit as with writeUTF
+     *
+     * @param value : may be null
+     * @throws IOException
+     */
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,149 @@
+package com.websearcher.impl;
+
+import com.google.inject.Inject;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.DocumentStore;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ResultCollector;
+import com.websearcher.TextFolderSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Splits the text files over a fork join pool of search threads.
+ * Files are memory mapped and the keywords matched on their UTF-8 bytes,
+ * the text is never decoded or copied.
+ * In the pack layout the documents are read from the document store.
+ */
+class ForkJoinTextFolderSearcher implements TextFolderSearcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForkJoinTextFolderSearcher.class);
+
+    private final AppUtils appUtils;
+    private final AppConfig appConfig;
+    private final DocumentStore documentStore;
+
+    @Inject
+    ForkJoinTextFolderSearcher(
+            AppUtils appUtils,
+            AppConfig appConfig,
+            DocumentStore documentStore) {
+
+        this.appUtils = appUtils;
+        this.appConfig = appConfig;
+        this.documentStore = documentStore;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long search(ResultCollector resultCollector) throws IOException {
+
+        if (appConfig.getStorageLayout() == AppConfig.StorageLayout.PACK) {
+            List<String> urlFragments = documentStore.getTextFragments();
+            LOGGER.info("Searching " + urlFragments.size() + " packed documents in " + appUtils.getPackFolderPath());
+            search(urlFragments, urlFragment -> search(
+                    urlFragment, () -> appUtils.findAllMatches(documentStore.readText(urlFragment)),
+                    resultCollector));
+            return urlFragments.size();
+        }
+
+        List<Path> textFiles;
+        try (Stream<Path> files = Files.walk(appUtils.getTextFileRoot())) {
+            textFiles = files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        LOGGER.info("Searching " + textFiles.size() + " text files in " + appUtils.getTextFileRoot());
+        search(textFiles, textFile -> search(
+                appUtils.getTextFileFragment(textFile), () -> appUtils.findAllMatches(IOUtilsImpl.readBytes(textFile)),
+                resultCollector));
+        return textFiles.size();
+    }
+
+    /**
+     * Run the action on every item on the search threads
+     *
+     * @param items
+     * @param action
+     */
+    private <T> void search(List<T> items, Consumer<T> action) {
+        ForkJoinPool pool = new ForkJoinPool(appConfig.getSearchThreadCount());
+        try {
+            pool.invoke(new SearchTask<>(items, 0, items.size(), action));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Search of a document, may fail
+     */
+    private interface DocumentSearch {
+        Map<String, MatchOffsets> run() throws IOException;
+    }
+
+    /**
+     * Matches in one document, errors are reported per url
+     *
+     * @param urlFragment
+     * @param documentSearch
+     * @param resultCollector
+     */
+    private void search(String urlFragment, DocumentSearch documentSearch, ResultCollector resultCollector) {
+        try {
+            resultCollector.setResult(urlFragment, documentSearch.run());
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            resultCollector.setError(urlFragment, e.getMessage());
+        }
+    }
+
+    /**
+     * Halves its range of items until one is left, idle threads steal the other halves
+     */
+    private static final class SearchTask<T> extends RecursiveAction {
+
+        private final List<T> items;
+        private final int from;
+        private final int to;
+        private final Consumer<T> action;
+
+        SearchTask(
+                List<T> items,
+                int from,
+                int to,
+                Consumer<T> action) {
+
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    action.accept(items.get(from));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new SearchTask<>(items, from, middle, action),
+                    new SearchTask<>(items, middle, to, action));
+        }
+    }
+}
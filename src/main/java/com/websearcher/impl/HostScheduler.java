@@ -0,0 +1,243 @@
+package com.websearcher.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Sits between the seed reader and the fetchers and decides which
+ * url goes next.
+ *
+ * Urls are queued per host. Hosts take turns, each one is limited to a
+ * number of requests at once and a minimum delay between the start of
+ * two requests, so a run of urls of the same host in the seed file does
+ * not end up hammering it while the other hosts wait. The urls of a host
+ * go out one after the other, which keeps its pooled connections busy.
+ * Tasks can be added and taken in batches, one lock round trip each.
+ *
+ * @param <T> : task queued for a host
+ */
+class HostScheduler<T> {
+
+    /**
+     * Urls of one host waiting for their turn
+     */
+    private static final class Host<T> {
+
+        private final Queue<T> pending = new ArrayDeque<>();
+        private int active = 0;             //Taken and not done yet
+        private long nextStart = 0;         //Nanos, earliest start of the next request
+        private boolean scheduled = false;  //In the ready or delayed queue
+    }
+
+    private final int maxPerHost;
+    private final long intervalNanos;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final Map<String, Host<T>> hosts = new HashMap<>();
+    private final Queue<Host<T>> ready = new ArrayDeque<>();    //Can start now, in turn
+    private final Queue<Host<T>> delayed = new PriorityQueue<>(
+            Comparator.comparingLong((Host<T> host) -> host.nextStart));
+    private int pendingCount = 0;
+    private boolean closed = false;
+
+    /**
+     * @param maxPerHost : requests at once per host
+     * @param intervalMillis : minimum delay between two requests to a host
+     * @param capacity : urls waiting before add blocks
+     */
+    HostScheduler(
+            int maxPerHost,
+            long intervalMillis,
+            int capacity) {
+
+        this.maxPerHost = maxPerHost;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queue a task for the host, blocks while the scheduler is full
+     *
+     * @param host
+     * @param task
+     * @throws InterruptedException
+     */
+    void add(String host, T task) throws InterruptedException {
+        addAll(Collections.singletonList(task), ignored -> host);
+    }
+
+    /**
+     * Queue a batch of tasks under one lock, blocks while the scheduler is full
+     *
+     * @param tasks
+     * @param hostOf : host of each task
+     * @throws InterruptedException
+     */
+    void addAll(List<T> tasks, Function<? super T, String> hostOf) throws InterruptedException {
+
+        lock.lockInterruptibly();
+        try {
+            long now = System.nanoTime();
+            for (T task : tasks) {
+                while (pendingCount >= capacity) {
+                    notFull.await();
+                    now = System.nanoTime();
+                }
+                Host<T> entry = hosts.computeIfAbsent(hostOf.apply(task), name -> new Host<>());
+                entry.pending.add(task);
+                pendingCount++;
+                schedule(entry, now);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Next task whose host is free to take it.
+     * Blocks until one is due, the caller reports done(host) once it is fetched.
+     *
+     * @return null once closed and drained
+     * @throws InterruptedException
+     */
+    T take() throws InterruptedException {
+        List<T> tasks = take(1);
+        return tasks.isEmpty() ? null : tasks.get(0);
+    }
+
+    /**
+     * Tasks due now, as many as take() would hand out one after the other.
+     * Blocks until at least one is due, the caller reports done(host) for each.
+     *
+     * @param max : tasks at most
+     * @return empty once closed and drained
+     * @throws InterruptedException
+     */
+    List<T> take(int max) throws InterruptedException {
+
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                while (!delayed.isEmpty() && delayed.peek().nextStart - now <= 0) {
+                    ready.add(delayed.poll());
+                }
+
+                List<T> tasks = new ArrayList<>(Math.min(max, ready.size()));
+                Host<T> host;
+                while (tasks.size() < max && (host = ready.poll()) != null) {
+                    host.scheduled = false;
+                    tasks.add(host.pending.poll());
+                    pendingCount--;
+                    host.active++;
+                    host.nextStart = now + intervalNanos;
+                    schedule(host, now);
+                }
+                if (!tasks.isEmpty()) {
+                    notFull.signalAll();
+                    return tasks;
+                }
+
+                if (closed && pendingCount == 0) {
+                    return tasks;
+                }
+                if (delayed.isEmpty()) {
+                    notEmpty.await();
+                } else {
+                    notEmpty.awaitNanos(delayed.peek().nextStart - now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A task of the host is finished, frees its slot
+     *
+     * @param host
+     */
+    void done(String host) {
+
+        lock.lock();
+        try {
+            Host<T> entry = hosts.get(host);
+            if (entry == null) {
+                return;
+            }
+            entry.active--;
+            long now = System.nanoTime();
+            if (entry.active == 0 && entry.pending.isEmpty() && entry.nextStart - now <= 0) {
+                hosts.remove(host);     //Idle and past its delay, nothing to remember
+                return;
+            }
+            schedule(entry, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * No more tasks will be added, take returns null once the rest is handed out
+     */
+    void close() {
+
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tasks not handed out yet
+     * @return
+     */
+    int getPendingCount() {
+
+        lock.lock();
+        try {
+            return pendingCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Put the host in line if it has work and a free slot.
+     * Called with the lock held.
+     *
+     * @param host
+     * @param now
+     */
+    private void schedule(Host<T> host, long now) {
+
+        if (host.scheduled || host.pending.isEmpty() || host.active >= maxPerHost) {
+            return;
+        }
+        host.scheduled = true;
+        if (host.nextStart - now <= 0) {
+            ready.add(host);
+        } else {
+            delayed.add(host);
+        }
+        notEmpty.signal();
+    }
+}
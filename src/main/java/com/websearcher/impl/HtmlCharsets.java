@@ -0,0 +1,122 @@
+package com.websearcher.impl;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Charset of an html body, looked up the way browsers do :
+ * byte order mark, charset of the Content-Type header, charset of a
+ * meta tag in the first 1024 bytes, UTF-8 when none is given.
+ * Labels browsers read as windows-1252 (latin1, us-ascii) are read so too.
+ */
+final class HtmlCharsets {
+
+    private static final Pattern HEADER_CHARSET =
+            Pattern.compile("charset\\s*=\\s*[\"']?([^\\s;\"']+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta\\s[^>]*?charset\\s*=\\s*[\"']?\\s*([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+    private static final int PRESCAN_LENGTH = 1024;
+
+    private HtmlCharsets() {
+    }
+
+    /**
+     * @param body
+     * @param contentType : Content-Type header, null if not sent
+     * @return body decoded, malformed input replaced
+     */
+    static String decode(byte[] body, String contentType) {
+
+        int bomLength = getBomLength(body);
+        Charset charset = detect(body, contentType);
+        return new String(body, bomLength, body.length - bomLength, charset);
+    }
+
+    /**
+     * @param body
+     * @param contentType : Content-Type header, null if not sent
+     * @return
+     */
+    static Charset detect(byte[] body, String contentType) {
+
+        if (startsWith(body, 0xEF, 0xBB, 0xBF)) {
+            return StandardCharsets.UTF_8;
+        }
+        if (startsWith(body, 0xFE, 0xFF)) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (startsWith(body, 0xFF, 0xFE)) {
+            return StandardCharsets.UTF_16LE;
+        }
+
+        Charset charset = contentType != null ? forLabel(find(HEADER_CHARSET, contentType)) : null;
+        if (charset == null) {
+            charset = forLabel(find(META_CHARSET, new String(body, 0,
+                    Math.min(body.length, PRESCAN_LENGTH), StandardCharsets.ISO_8859_1)));
+
+            /**
+             * A page that could be read to find its meta tag is not UTF-16
+             */
+            if (charset == StandardCharsets.UTF_16 || charset == StandardCharsets.UTF_16BE ||
+                    charset == StandardCharsets.UTF_16LE) {
+                charset = StandardCharsets.UTF_8;
+            }
+        }
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+    private static int getBomLength(byte[] body) {
+        if (startsWith(body, 0xEF, 0xBB, 0xBF)) {
+            return 3;
+        }
+        return startsWith(body, 0xFE, 0xFF) || startsWith(body, 0xFF, 0xFE) ? 2 : 0;
+    }
+
+    private static boolean startsWith(byte[] body, int... prefix) {
+        if (body.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((body[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String find(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * @param label
+     * @return null if missing or unknown
+     */
+    private static Charset forLabel(String label) {
+
+        if (label == null) {
+            return null;
+        }
+        switch (label.toLowerCase(Locale.ROOT)) {
+            case "iso-8859-1":
+            case "latin1":
+            case "us-ascii":
+            case "ascii":
+                label = "windows-1252";
+                break;
+            default:
+                break;
+        }
+        try {
+            return Charset.forName(label);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return null;
+        }
+    }
+}
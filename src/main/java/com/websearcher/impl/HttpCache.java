@@ -0,0 +1,330 @@
+package com.websearcher.impl;
+
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent HTTP cache kept in the output folder so later runs can
+ * revalidate pages instead of downloading them again.
+ *
+ * Each url has a body file and a properties file holding its ETag,
+ * Last-Modified and when it was stored. A response younger than max age
+ * is reused without a request. Once the bodies go over the size limit
+ * the least recently used entries are dropped.
+ */
+class HttpCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpCache.class);
+
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".properties";
+
+    /**
+     * Cached response of a url
+     */
+    static final class Entry {
+
+        private final String url;
+        private final String key;           //File name of the body and meta data
+        private final String etag;
+        private final String lastModified;
+        private final String contentType;
+        private final long size;
+        private volatile long storedAt;     //Millis, when the response was last fetched or revalidated
+        private volatile long lastUsed;
+
+        private Entry(
+                String url,
+                String key,
+                String etag,
+                String lastModified,
+                String contentType,
+                long size,
+                long storedAt) {
+
+            this.url = url;
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.size = size;
+            this.storedAt = storedAt;
+            this.lastUsed = storedAt;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+    }
+
+    private final Path folder;
+    private final long maxAgeMillis;
+    private final long maxSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalSize = new AtomicLong();
+
+    /**
+     * Loads the entries left by previous runs
+     *
+     * @param folder
+     * @param maxAgeSeconds : responses younger than this are reused without a request
+     * @param maxSize : bytes of bodies kept
+     * @throws IOException
+     */
+    HttpCache(
+            Path folder,
+            long maxAgeSeconds,
+            long maxSize) throws IOException {
+
+        this.folder = folder;
+        this.maxAgeMillis = TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+        this.maxSize = maxSize;
+
+        Files.createDirectories(folder);
+        try (DirectoryStream<Path> metaFiles = Files.newDirectoryStream(folder, "*" + META_SUFFIX)) {
+            for (Path metaFile : metaFiles) {
+                load(metaFile);
+            }
+        }
+        evict();
+    }
+
+    /**
+     * @param url
+     * @return cached response, null if there is none
+     */
+    Entry get(String url) {
+        Entry entry = entries.get(url);
+        if (entry != null) {
+            entry.lastUsed = System.currentTimeMillis();
+        }
+        return entry;
+    }
+
+    /**
+     * @param entry
+     * @return true if the response can be reused without asking the server
+     */
+    boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.storedAt < maxAgeMillis;
+    }
+
+    /**
+     * Server answered 304, the cached body is current again
+     *
+     * @param entry
+     * @throws IOException
+     */
+    void refresh(Entry entry) throws IOException {
+        entry.storedAt = System.currentTimeMillis();
+        writeMeta(entry);
+    }
+
+    /**
+     * Copy the cached body
+     *
+     * @param entry
+     * @param target
+     * @throws IOException
+     */
+    void copyBody(Entry entry, Path target) throws IOException {
+        Files.copy(bodyPath(entry.key), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    byte[] readBody(Entry entry) throws IOException {
+        return Files.readAllBytes(bodyPath(entry.key));
+    }
+
+    /**
+     * Store a response saved to a file
+     *
+     * @param url
+     * @param source : body
+     * @param etag : null if not sent
+     * @param lastModified : null if not sent
+     * @param contentType : null if not sent
+     * @throws IOException
+     */
+    void put(
+            String url,
+            Path source,
+            String etag,
+            String lastModified,
+            String contentType) throws IOException {
+
+        String key = toKey(url);
+        Path temp = Files.createTempFile(folder, key, ".tmp");
+        Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+        store(url, key, temp, etag, lastModified, contentType);
+    }
+
+    /**
+     * Store a response held in memory
+     *
+     * @param url
+     * @param body
+     * @param etag : null if not sent
+     * @param lastModified : null if not sent
+     * @param contentType : null if not sent
+     * @throws IOException
+     */
+    void put(
+            String url,
+            byte[] body,
+            String etag,
+            String lastModified,
+            String contentType) throws IOException {
+
+        String key = toKey(url);
+        Path temp = Files.createTempFile(folder, key, ".tmp");
+        Files.write(temp, body);
+        store(url, key, temp, etag, lastModified, contentType);
+    }
+
+    /**
+     * Bytes of bodies currently cached
+     * @return
+     */
+    long getSize() {
+        return totalSize.get();
+    }
+
+    /**
+     * Move the body in place, then write the meta data so a body is
+     * never listed before it is complete.
+     */
+    private void store(
+            String url,
+            String key,
+            Path temp,
+            String etag,
+            String lastModified,
+            String contentType) throws IOException {
+
+        long size = Files.size(temp);
+        Files.move(temp, bodyPath(key),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Entry entry = new Entry(url, key, etag, lastModified, contentType,
+                size, System.currentTimeMillis());
+        writeMeta(entry);
+
+        Entry previous = entries.put(url, entry);
+        totalSize.addAndGet(size - (previous != null ? previous.size : 0));
+        if (totalSize.get() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Drop the least recently used entries until the bodies fit
+     */
+    private synchronized void evict() {
+
+        if (totalSize.get() <= maxSize) {
+            return;
+        }
+        List<Entry> candidates = new ArrayList<>(entries.values());
+        candidates.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        for (Entry entry : candidates) {
+            if (totalSize.get() <= maxSize) {
+                break;
+            }
+            if (entries.remove(entry.url, entry)) {
+                totalSize.addAndGet(-entry.size);
+                try {
+                    Files.deleteIfExists(metaPath(entry.key));
+                    Files.deleteIfExists(bodyPath(entry.key));
+                } catch (IOException e) {
+                    LOGGER.warn("Could not evict " + entry.url, e);
+                }
+            }
+        }
+    }
+
+    private void load(Path metaFile) throws IOException {
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        String url = properties.getProperty("url");
+        String key = metaFile.getFileName().toString();
+        key = key.substring(0, key.length() - META_SUFFIX.length());
+        Path body = bodyPath(key);
+        if (url == null || !Files.exists(body)) {
+            Files.deleteIfExists(metaFile);
+            return;
+        }
+
+        Entry entry = new Entry(url, key,
+                properties.getProperty("etag"),
+                properties.getProperty("lastModified"),
+                properties.getProperty("contentType"),
+                Files.size(body),
+                Long.parseLong(properties.getProperty("storedAt", "0")));
+        entries.put(url, entry);
+        totalSize.addAndGet(entry.size);
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+
+        Properties properties = new Properties();
+        properties.setProperty("url", entry.url);
+        properties.setProperty("storedAt", Long.toString(entry.storedAt));
+        if (entry.etag != null) {
+            properties.setProperty("etag", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            properties.setProperty("lastModified", entry.lastModified);
+        }
+        if (entry.contentType != null) {
+            properties.setProperty("contentType", entry.contentType);
+        }
+        try (Writer writer = Files.newBufferedWriter(metaPath(entry.key), StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+    }
+
+    private Path bodyPath(String key) {
+        return folder.resolve(key + BODY_SUFFIX);
+    }
+
+    private Path metaPath(String key) {
+        return folder.resolve(key + META_SUFFIX);
+    }
+
+    /**
+     * File name for the url, urls can be longer than a file name and hold any character
+     * @param url
+     * @return
+     */
+    private static String toKey(String url) {
+        return Hashing.sha256().hashString(url, StandardCharsets.UTF_8).toString();
+    }
+}
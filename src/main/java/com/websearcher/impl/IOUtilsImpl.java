@@ -1,32 +1,122 @@
 package com.websearcher.impl;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.websearcher.AppConfig;
 import com.websearcher.AppUtils;
+import com.websearcher.Constants;
 import com.websearcher.IOUtils;
+import com.websearcher.Metrics;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.util.EntityUtils;
 
 import java.io.*;
-import java.nio.charset.Charset;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Stateless Thread safe HTTP File fetcher
+ * Thread safe HTTP File fetcher.
+ * Holds a single pooled HTTP client shared by all the workers so
+ * connections to the same host are kept alive and reused.
+ * Async fetches go through the JDK non blocking client, created on first use.
+ * With the HTTP cache on, pages fetched by an earlier run are revalidated
+ * with a conditional GET and reused when the server answers 304.
+ * DNS lookups, connects, time to the response headers and body downloads
+ * of the pooled client are timed, the async client only counts bytes.
  */
 @Singleton
 class IOUtilsImpl implements IOUtils {
 
     private final AppUtils appUtils;
+    private final AppConfig appConfig;
+    private final Metrics metrics;
+    private final CloseableHttpClient httpClient;
+    private final HttpCache httpCache;     //Null when the cache is off
+    private final Supplier<HttpClient> asyncHttpClient =
+            Suppliers.memoize(this::createAsyncHttpClient);
 
     @Inject
-    IOUtilsImpl(AppUtils appUtils) throws IOException {
+    IOUtilsImpl(
+            AppUtils appUtils,
+            AppConfig appConfig,
+            Metrics metrics) throws IOException {
         this.appUtils = appUtils;
+        this.appConfig = appConfig;
+        this.metrics = metrics;
+
+        /**
+         * One pool for the lifetime of the app.
+         * Idle connections are evicted in the background so a
+         * connection closed by the server is not handed out again.
+         */
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(
+                        RegistryBuilder.<ConnectionSocketFactory>create()
+                                .register("http", new TimedConnectionSocketFactory(
+                                        PlainConnectionSocketFactory.getSocketFactory(), metrics))
+                                .register("https", new TimedConnectionSocketFactory(
+                                        SSLConnectionSocketFactory.getSocketFactory(), metrics))
+                                .build(),
+                        host -> {
+                            long start = System.nanoTime();
+                            try {
+                                return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+                            } finally {
+                                metrics.record(Metrics.Timer.DNS, System.nanoTime() - start);
+                            }
+                        });
+        connectionManager.setMaxTotal(appConfig.getFetchThreadCount());
+        connectionManager.setDefaultMaxPerRoute(Math.min(
+                appConfig.getMaxConnectionsPerRoute(), appConfig.getFetchThreadCount()));
+
+        /**
+         * Compressed responses are decoded here rather than by the client
+         * so the bytes on the wire can be counted
+         */
+        httpClient = HttpClientBuilder.create()
+                .disableContentCompression()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(createRequestConfig(appConfig.getConnectionTimeout()))
+                .setKeepAliveStrategy(createKeepAliveStrategy(appConfig.getKeepAliveTimeout()))
+                .evictExpiredConnections()
+                .evictIdleConnections(appConfig.getIdleConnectionTimeout(), TimeUnit.SECONDS)
+                .build();
+
+        httpCache = appConfig.isHttpCache() ?
+                new HttpCache(appUtils.getCacheFolderPath(),
+                        appConfig.getCacheMaxAge(),
+                        appConfig.getCacheMaxSize() * 1024L * 1024L) : null;
     }
 
     @Override
@@ -40,38 +130,411 @@ class IOUtilsImpl implements IOUtils {
     @Override
     public String readTextFile(File file) throws IOException {
         return FileUtils.readFileToString(
-                file, Charset.defaultCharset());
+                file, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String readHtmlFile(File file, String contentType) throws IOException {
+        return HtmlCharsets.decode(Files.readAllBytes(file.toPath()), contentType);
+    }
+
+    @Override
+    public ByteBuffer readFileBytes(File file) throws IOException {
+        return readBytes(file.toPath());
+    }
+
+    /**
+     * Files above MAP_THRESHOLD are mapped. A mapping costs more than a read
+     * at page sizes and is only released once the buffer is collected, many
+     * at once can run into the process map count limit.
+     *
+     * @param path
+     * @return the whole file
+     * @throws IOException
+     */
+    static ByteBuffer readBytes(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map : " + path);
+            }
+            if (size > Constants.MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes) < 0) {
+                    break;      //Truncated since its size was read
+                }
+            }
+            return bytes.flip();
+        }
     }
 
     @Override
     public void writeTextFile(File file, String text) throws IOException {
         FileUtils.writeStringToFile(
-                file, text, Charset.defaultCharset());
+                file, text, StandardCharsets.UTF_8);
     }
 
-    public void getHttpFile(String url, String filePath, int timeout) throws IOException {
+    @Override
+    public String getHttpFile(String url, String filePath, int timeout) throws IOException {
 
-        HttpGet httpget = new HttpGet(url);
-        RequestConfig config = RequestConfig.custom()
-                .setConnectTimeout(timeout * 1000)
-                .setConnectionRequestTimeout(timeout * 1000)
-                .setSocketTimeout(timeout * 1000).build();
-        try(CloseableHttpClient httpclient =
-                    HttpClientBuilder.create()
-                            .setDefaultRequestConfig(config).build()) {
+        createParentFolder(filePath);
+        HttpCache.Entry cached = httpCache != null ? httpCache.get(url) : null;
+        if (cached != null && httpCache.isFresh(cached)) {
+            httpCache.copyBody(cached, Paths.get(filePath));
+            return cached.getContentType();
+        }
+
+        /**
+         * Closing the response after the entity has been fully read
+         * hands the connection back to the pool.
+         */
+        try(CloseableHttpResponse response = execute(createGet(url, timeout, cached))) {
 
-            HttpResponse response = httpclient.execute(httpget);
             HttpEntity entity = response.getEntity();
+            int status = response.getStatusLine().getStatusCode();
+
+            if (cached != null && status == HttpStatus.SC_NOT_MODIFIED) {
+                EntityUtils.consume(entity);
+                httpCache.refresh(cached);
+                httpCache.copyBody(cached, Paths.get(filePath));
+                return cached.getContentType();
+            }
 
+            String contentType = getHeader(response, "Content-Type");
             if (entity != null) {
-                try(BufferedInputStream bis = new BufferedInputStream(entity.getContent());
-                    BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(new File(filePath)))) {
-                    int inByte;
-                    while ((inByte = bis.read()) != -1) {
-                        bos.write(inByte);
-                    }
+                long start = System.nanoTime();
+                try(CountingInputStream wire = new CountingInputStream(entity.getContent());
+                    InputStream is = ContentEncodings.decode(wire, getHeader(response, "Content-Encoding"));
+                    OutputStream os = new FileOutputStream(new File(filePath))) {
+                    copy(is, os, appConfig.getDownloadBufferSize());
+                    metrics.addBytes(wire.getByteCount());
+                } finally {
+                    metrics.record(Metrics.Timer.DOWNLOAD, System.nanoTime() - start);
+                }
+                if (httpCache != null && status == HttpStatus.SC_OK) {
+                    httpCache.put(url, Paths.get(filePath),
+                            getHeader(response, "ETag"),
+                            getHeader(response, "Last-Modified"),
+                            contentType);
                 }
             }
+            return contentType;
         }
     }
+
+    @Override
+    public String getHttpContent(String url, int timeout) throws IOException {
+
+        HttpCache.Entry cached = httpCache != null ? httpCache.get(url) : null;
+        if (cached != null && httpCache.isFresh(cached)) {
+            return HtmlCharsets.decode(httpCache.readBody(cached), cached.getContentType());
+        }
+
+        try(CloseableHttpResponse response = execute(createGet(url, timeout, cached))) {
+
+            HttpEntity entity = response.getEntity();
+            int status = response.getStatusLine().getStatusCode();
+
+            if (cached != null && status == HttpStatus.SC_NOT_MODIFIED) {
+                EntityUtils.consume(entity);
+                httpCache.refresh(cached);
+                return HtmlCharsets.decode(httpCache.readBody(cached), cached.getContentType());
+            }
+            if (entity == null) {
+                return "";
+            }
+
+            long start = System.nanoTime();
+            byte[] body;
+            try(CountingInputStream wire = new CountingInputStream(entity.getContent());
+                InputStream is = ContentEncodings.decode(wire, getHeader(response, "Content-Encoding"))) {
+                body = is.readAllBytes();
+                metrics.addBytes(wire.getByteCount());
+            } finally {
+                metrics.record(Metrics.Timer.DOWNLOAD, System.nanoTime() - start);
+            }
+            String contentType = getHeader(response, "Content-Type");
+            if (httpCache == null || status != HttpStatus.SC_OK) {
+                return HtmlCharsets.decode(body, contentType);
+            }
+
+            httpCache.put(url, body,
+                    getHeader(response, "ETag"),
+                    getHeader(response, "Last-Modified"),
+                    contentType);
+            return HtmlCharsets.decode(body, contentType);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> getHttpFileAsync(String url, String filePath, int timeout) {
+
+        HttpRequest request;
+        Path path;
+        try {
+            createParentFolder(filePath);
+            path = Paths.get(filePath);
+            request = httpCache == null ? createAsyncGet(url, timeout, null) : null;
+        } catch (IOException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);   //Malformed url or file path fail the future, not the caller
+        }
+        if (request != null) {
+            return asyncHttpClient.get()
+                    .sendAsync(request, ContentEncodings.decoding(
+                            HttpResponse.BodyHandlers.ofFile(path), metrics::addBytes))
+                    .thenApply(response -> response.headers().firstValue("Content-Type").orElse(null));
+        }
+
+        return getHttpBodyAsync(url, timeout).thenApply(body -> {
+            try {
+                Files.write(path, body.bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return body.contentType;
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> getHttpContentAsync(String url, int timeout) {
+
+        return getHttpBodyAsync(url, timeout)
+                .thenApply(body -> HtmlCharsets.decode(body.bytes, body.contentType));
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * Url paths and sharding make sub folders under the raw file root
+     * @param filePath
+     * @throws IOException
+     */
+    private static void createParentFolder(String filePath) throws IOException {
+        Path parent = Paths.get(filePath).getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    /**
+     * Response body with its content type
+     */
+    private static final class Body {
+
+        private final byte[] bytes;
+        private final String contentType;   //Null if not sent
+
+        Body(byte[] bytes, String contentType) {
+            this.bytes = bytes;
+            this.contentType = contentType;
+        }
+    }
+
+    /**
+     * Async fetch of the body, through the cache when it is on
+     *
+     * @param url
+     * @param timeout : seconds
+     * @return
+     */
+    private CompletableFuture<Body> getHttpBodyAsync(String url, int timeout) {
+
+        HttpCache.Entry cached = httpCache != null ? httpCache.get(url) : null;
+        if (cached != null && httpCache.isFresh(cached)) {
+            return CompletableFuture.completedFuture(cached).thenApply(this::readCached);
+        }
+
+        HttpRequest request;
+        try {
+            request = createAsyncGet(url, timeout, cached);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);   //Not a valid URI
+        }
+        return asyncHttpClient.get()
+                .sendAsync(request, ContentEncodings.decoding(
+                        HttpResponse.BodyHandlers.ofByteArray(), metrics::addBytes))
+                .thenApply(response -> {
+                    String contentType = response.headers().firstValue("Content-Type").orElse(null);
+                    if (cached != null && response.statusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                        try {
+                            httpCache.refresh(cached);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return readCached(cached);
+                    }
+                    if (httpCache != null && response.statusCode() == HttpStatus.SC_OK) {
+                        try {
+                            httpCache.put(url, response.body(),
+                                    response.headers().firstValue("ETag").orElse(null),
+                                    response.headers().firstValue("Last-Modified").orElse(null),
+                                    contentType);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                    return new Body(response.body(), contentType);
+                });
+    }
+
+    /**
+     * Execute on the pooled client, timed up to the response headers
+     *
+     * @param get
+     * @return
+     * @throws IOException
+     */
+    private CloseableHttpResponse execute(HttpGet get) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return httpClient.execute(get);
+        } finally {
+            metrics.record(Metrics.Timer.RESPONSE, System.nanoTime() - start);
+        }
+    }
+
+    private Body readCached(HttpCache.Entry cached) {
+        try {
+            return new Body(httpCache.readBody(cached), cached.getContentType());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * GET request, the client default config covers the connection timeout setting.
+     * A cached response is revalidated with its ETag and Last-Modified.
+     * Compressed responses are asked for unless turned off.
+     *
+     * @param url
+     * @param timeout : seconds
+     * @param cached : null if not cached
+     * @return
+     */
+    private HttpGet createGet(String url, int timeout, HttpCache.Entry cached) {
+        HttpGet httpget = new HttpGet(url);
+        if (timeout != appConfig.getConnectionTimeout()) {
+            httpget.setConfig(createRequestConfig(timeout));
+        }
+        if (appConfig.isCompression()) {
+            httpget.setHeader("Accept-Encoding", ContentEncodings.ACCEPT_ENCODING);
+        }
+        if (cached != null && cached.getEtag() != null) {
+            httpget.setHeader("If-None-Match", cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            httpget.setHeader("If-Modified-Since", cached.getLastModified());
+        }
+        return httpget;
+    }
+
+    /**
+     * @param response
+     * @param name
+     * @return value of the header, null if not sent
+     */
+    private static String getHeader(CloseableHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * Non blocking client, redirects are followed like the blocking client does.
+     * With HTTP/2 the requests to a host are multiplexed over one connection,
+     * negotiated with ALPN over https and upgraded from HTTP/1.1 over http.
+     * Servers that do not speak it are fetched over HTTP/1.1.
+     *
+     * @return
+     */
+    private HttpClient createAsyncHttpClient() {
+        return HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(appConfig.getConnectionTimeout()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .version(appConfig.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    /**
+     * GET request for the async client
+     *
+     * @param url
+     * @param timeout : seconds
+     * @param cached : null if not cached
+     * @return
+     */
+    private HttpRequest createAsyncGet(String url, int timeout, HttpCache.Entry cached) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(timeout))
+                .GET();
+        if (appConfig.isCompression()) {
+            builder.header("Accept-Encoding", ContentEncodings.ACCEPT_ENCODING);
+        }
+        if (cached != null && cached.getEtag() != null) {
+            builder.header("If-None-Match", cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            builder.header("If-Modified-Since", cached.getLastModified());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Copy the stream in chunks of bufferSize bytes.
+     * The buffer is handed straight to the output stream, so there is no
+     * need for buffered streams on either side.
+     *
+     * @param is
+     * @param os
+     * @param bufferSize
+     * @return number of bytes copied
+     * @throws IOException
+     */
+    static long copy(
+            InputStream is,
+            OutputStream os,
+            int bufferSize) throws IOException {
+
+        byte[] buffer = new byte[bufferSize];
+        long total = 0;
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            os.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Timeouts for connect, pool lease and socket reads
+     *
+     * @param timeout : seconds
+     * @return
+     */
+    private static RequestConfig createRequestConfig(int timeout) {
+        return RequestConfig.custom()
+                .setConnectTimeout(timeout * 1000)
+                .setConnectionRequestTimeout(timeout * 1000)
+                .setSocketTimeout(timeout * 1000).build();
+    }
+
+    /**
+     * Honour the Keep-Alive header sent by the server, fall back to
+     * KEEP_ALIVE_TIMEOUT so connections are never kept forever.
+     *
+     * @return
+     */
+    private static ConnectionKeepAliveStrategy createKeepAliveStrategy(int keepAliveTimeout) {
+        long maxKeepAlive = TimeUnit.SECONDS.toMillis(keepAliveTimeout);
+        return (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                    .getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? Math.min(keepAlive, maxKeepAlive) : maxKeepAlive;
+        };
+    }
 }
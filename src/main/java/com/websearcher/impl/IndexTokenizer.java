@@ -0,0 +1,118 @@
+package com.websearcher.impl;
+
+import com.websearcher.MatchOffsets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits text into the terms of the inverted index.
+ *
+ * Terms are runs of word characters (letters, digits and _ as for the
+ * keyword boundaries) and every other character on its own, plain spaces
+ * excepted. Terms tile the text apart from the spaces, so a keyword is
+ * found by looking its terms up at the right offsets and checking the
+ * gaps hold spaces : NON_WORD_TERM lists the offset of every non word term.
+ */
+final class IndexTokenizer {
+
+    /**
+     * Offsets of all the non word terms, cannot clash with a real term
+     */
+    static final String NON_WORD_TERM = "";
+
+    private IndexTokenizer() {
+    }
+
+    /**
+     * Offsets per term, NON_WORD_TERM included
+     *
+     * @param text
+     * @return
+     */
+    static Map<String, MatchOffsets> tokenize(String text) {
+
+        Map<String, MatchOffsets> terms = new HashMap<>();
+        MatchOffsets nonWord = new MatchOffsets();
+        int length = text.length();
+        int pos = 0;
+        while (pos < length) {
+            int c = text.codePointAt(pos);
+            int end = pos + Character.charCount(c);
+            if (isWordChar(c)) {
+                while (end < length && isWordChar(text.codePointAt(end))) {
+                    end += Character.charCount(text.codePointAt(end));
+                }
+            } else if (c == ' ') {
+                pos = end;
+                continue;
+            } else {
+                nonWord.add(pos);
+            }
+            terms.computeIfAbsent(text.substring(pos, end), term -> new MatchOffsets()).add(pos);
+            pos = end;
+        }
+        if (!nonWord.isEmpty()) {
+            terms.put(NON_WORD_TERM, nonWord);
+        }
+        for (MatchOffsets offsets : terms.values()) {
+            offsets.compact();
+        }
+        return terms;
+    }
+
+    /**
+     * Terms of a keyword in order, with their offset in the keyword.
+     * The offsets not covered by a term are the spaces.
+     *
+     * @param keyword
+     * @param terms : filled with the terms
+     * @return offsets of the terms
+     * @throws IllegalArgumentException unless the keyword starts and ends with a word
+     *                                  character and each space sits between two of them
+     */
+    static int[] tokenizeKeyword(String keyword, List<String> terms) {
+
+        int length = keyword.length();
+        if (length == 0 ||
+                !isWordChar(keyword.codePointAt(0)) ||
+                !isWordChar(keyword.codePointBefore(length))) {
+            throw new IllegalArgumentException(
+                    "Keyword must start and end with a letter or digit to be searched in the index: " + keyword);
+        }
+
+        List<Integer> offsets = new ArrayList<>();
+        int pos = 0;
+        while (pos < length) {
+            int c = keyword.codePointAt(pos);
+            int end = pos + Character.charCount(c);
+            if (isWordChar(c)) {
+                while (end < length && isWordChar(keyword.codePointAt(end))) {
+                    end += Character.charCount(keyword.codePointAt(end));
+                }
+            } else if (c == ' ') {
+                if (!isWordChar(keyword.codePointBefore(pos)) || !isWordChar(keyword.codePointAt(end))) {
+                    throw new IllegalArgumentException(
+                            "Keyword spaces must be between words to be searched in the index: " + keyword);
+                }
+                pos = end;
+                continue;
+            }
+            terms.add(keyword.substring(pos, end));
+            offsets.add(pos);
+            pos = end;
+        }
+
+        int[] termOffsets = new int[offsets.size()];
+        for (int i = 0; i < termOffsets.length; i++) {
+            termOffsets[i] = offsets.get(i);
+        }
+        return termOffsets;
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+}
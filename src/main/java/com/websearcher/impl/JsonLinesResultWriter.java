@@ -0,0 +1,177 @@
+package com.websearcher.impl;
+
+import com.google.inject.Inject;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ResultCollector;
+import com.websearcher.ResultWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes results.jsonl, a UTF-8 JSON object per line as results arrive :
+ *
+ * {"url":"example.com","matches":{"keyword":[1,20]}}
+ * {"url":"bad.com","error":"Read timed out"}
+ * {"summary":{"errors":1,"urls":1,"keywords":{"keyword":{"matches":2,"urls":1}}}}
+ *
+ * Only the keywords that matched are listed, the summary is the last line.
+ */
+class JsonLinesResultWriter implements ResultWriter {
+
+    private final AppUtils appUtils;
+    private final StringBuilder line = new StringBuilder();    //Reused for every line
+    private BufferedWriter writer = null;   //Opened on first write
+
+    @Inject
+    JsonLinesResultWriter(AppUtils appUtils) {
+        this.appUtils = appUtils;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeResult(String url, Map<String, MatchOffsets> searchIndexMap) throws IOException {
+
+        line.setLength(0);
+        line.append("{\"url\":");
+        appendString(url);
+        line.append(",\"matches\":{");
+        boolean first = true;
+        for (Map.Entry<String, MatchOffsets> entry : searchIndexMap.entrySet()) {
+            if (!first) {
+                line.append(',');
+            }
+            first = false;
+            appendString(entry.getKey());
+            line.append(":[");
+            int start = line.length();
+            entry.getValue().forEach(offset -> {
+                if (line.length() > start) {
+                    line.append(',');
+                }
+                line.append(offset);
+            });
+            line.append(']');
+        }
+        line.append("}}");
+        writeLine();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeError(String url, String error) throws IOException {
+
+        line.setLength(0);
+        line.append("{\"url\":");
+        appendString(url);
+        line.append(",\"error\":");
+        appendString(error);
+        line.append('}');
+        writeLine();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeSummary(ResultCollector resultCollector) throws IOException {
+
+        line.setLength(0);
+        line.append("{\"summary\":{\"errors\":").append(resultCollector.getErrorCount())
+                .append(",\"urls\":").append(resultCollector.getResultCount())
+                .append(",\"keywords\":{");
+        List<String> keywords = appUtils.getKeywords();
+        for (int i = 0; i < keywords.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendString(keywords.get(i));
+            line.append(":{\"matches\":").append(resultCollector.getMatchCount(keywords.get(i)))
+                    .append(",\"urls\":").append(resultCollector.getUrlCount(keywords.get(i)))
+                    .append('}');
+        }
+        line.append("}}}");
+        writeLine();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Append a JSON string, null as null
+     *
+     * @param value
+     */
+    private void appendString(String value) {
+
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+    private void writeLine() throws IOException {
+        if (writer == null) {
+            writer = Files.newBufferedWriter(
+                    appUtils.getResultsFilePath(AppConfig.ResultFormat.JSONL), StandardCharsets.UTF_8);
+        }
+        writer.append(line);
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,33 @@
+package com.websearcher.impl;
+
+import com.google.inject.Singleton;
+import com.websearcher.TextExtractor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.function.Consumer;
+
+/**
+ * Builds the full jsoup DOM and returns its text.
+ * Slower than the streaming extractor, kept as the reference
+ * implementation and fallback.
+ */
+@Singleton
+class JsoupTextExtractor implements TextExtractor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String extractText(String html, Consumer<String> links) {
+
+        Document document = Jsoup.parse(html);
+        if (links != null) {
+            for (Element link : document.select("a[href]")) {
+                links.accept(link.attr("href"));
+            }
+        }
+        return document.text();
+    }
+}
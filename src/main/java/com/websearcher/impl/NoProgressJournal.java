@@ -0,0 +1,36 @@
+package com.websearcher.impl;
+
+import com.websearcher.MatchOffsets;
+import com.websearcher.ProgressJournal;
+
+import java.util.Map;
+
+/**
+ * Journal that records nothing, for runs that must leave
+ * the journal of an interrupted crawl alone
+ */
+class NoProgressJournal implements ProgressJournal {
+
+    @Override
+    public long replay(Listener listener) {
+        return 0;
+    }
+
+    @Override
+    public void appendResult(
+            String url,
+            Map<String, MatchOffsets> searchIndexMap) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void complete() {
+    }
+}
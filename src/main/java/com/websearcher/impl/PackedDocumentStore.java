@@ -0,0 +1,444 @@
+package com.websearcher.impl;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.Constants;
+import com.websearcher.DocumentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Append only document store, documents are compressed and packed into
+ * large files in <root folder>/packs/ instead of one file per url.
+ *
+ * raw-NNNNN.pack / text-NNNNN.pack : records of fragment, text length,
+ * compressed length and the deflated UTF-8 text.
+ * raw-NNNNN.idx / text-NNNNN.idx : fragment and offset of each record,
+ * loaded on open. Records a crash left out of the index are recovered
+ * from the pack, a record torn by the crash is cut off.
+ * A new pack is started once PACK_FILE_SIZE bytes are written to one.
+ * A fragment stored again shadows its earlier copy.
+ */
+@Singleton
+class PackedDocumentStore implements DocumentStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PackedDocumentStore.class);
+
+    private final Pack raw;
+    private final Pack text;
+
+    @Inject
+    PackedDocumentStore(
+            AppUtils appUtils,
+            AppConfig appConfig) {
+
+        this.raw = new Pack(appUtils.getPackFolderPath(), "raw", appConfig);
+        this.text = new Pack(appUtils.getPackFolderPath(), "text", appConfig);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Compressed on the calling thread, failures are logged
+     * as the page has already been searched.
+     */
+    @Override
+    public void storeRaw(String urlFragment, String html) {
+        store(raw, urlFragment, html);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeText(String urlFragment, String text) {
+        store(this.text, urlFragment, text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String readRaw(String urlFragment) throws IOException {
+        return raw.read(urlFragment);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String readText(String urlFragment) throws IOException {
+        return text.read(urlFragment);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getTextFragments() throws IOException {
+        return text.getFragments();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            raw.close();
+        } finally {
+            text.close();
+        }
+    }
+
+    private static void store(Pack pack, String urlFragment, String content) {
+        try {
+            pack.append(urlFragment, content);
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Pack files of one kind of document
+     */
+    private static final class Pack {
+
+        private final Path folder;
+        private final String kind;
+        private final long fileSize;            //Bytes written before the next pack is started
+        private final int compressionLevel;
+        private final Map<String, Long> locations = new HashMap<>(); //Pack number << 40 | offset
+        private final List<FileChannel> channels = new ArrayList<>(); //Per pack number, the last one is appended to
+        private DataOutputStream indexOut = null;
+        private long writePosition = 0;
+        private long indexLength = 0;       //Bytes of complete entries in the last loaded index
+        private boolean open = false;
+
+        Pack(Path folder, String kind, AppConfig appConfig) {
+            this.folder = folder;
+            this.kind = kind;
+            this.fileSize = appConfig.getPackFileSize();
+            this.compressionLevel = appConfig.getPackCompressionLevel();
+        }
+
+        /**
+         * @param urlFragment
+         * @param content
+         * @throws IOException
+         */
+        void append(String urlFragment, String content) throws IOException {
+
+            byte[] fragment = urlFragment.getBytes(StandardCharsets.UTF_8);
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            Deflater deflater = new Deflater(compressionLevel);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+                out.write(bytes);
+            } finally {
+                deflater.end();
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(12 + fragment.length + compressed.size());
+            record.putInt(fragment.length).put(fragment)
+                    .putInt(bytes.length).putInt(compressed.size())
+                    .put(compressed.toByteArray())
+                    .flip();
+
+            synchronized (this) {
+                open();
+                if (writePosition >= fileSize) {
+                    startPack();
+                }
+                FileChannel channel = channels.get(channels.size() - 1);
+                long offset = writePosition;
+                while (record.hasRemaining()) {
+                    writePosition += channel.write(record, writePosition);
+                }
+                writeIndexEntry(urlFragment, offset);
+                locations.put(urlFragment, location(channels.size() - 1, offset));
+            }
+        }
+
+        /**
+         * @param urlFragment
+         * @return null if not stored
+         * @throws IOException
+         */
+        String read(String urlFragment) throws IOException {
+
+            FileChannel channel;
+            long offset;
+            synchronized (this) {
+                open();
+                Long location = locations.get(urlFragment);
+                if (location == null) {
+                    return null;
+                }
+                channel = channels.get((int) (location >>> 40));
+                offset = location & ((1L << 40) - 1);
+            }
+
+            ByteBuffer header = readFully(channel, offset, 4);
+            int fragmentLength = header.getInt();
+            header = readFully(channel, offset + 4 + fragmentLength, 8);
+            byte[] bytes = new byte[header.getInt()];
+            ByteBuffer compressed = readFully(channel, offset + 12 + fragmentLength, header.getInt());
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed.array());
+                int length = 0;
+                while (length < bytes.length && !inflater.finished()) {
+                    int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += inflated;
+                }
+                if (length != bytes.length) {
+                    throw new IOException("Corrupt " + kind + " document in pack : " + urlFragment);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt " + kind + " document in pack : " + urlFragment, e);
+            } finally {
+                inflater.end();
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        synchronized List<String> getFragments() throws IOException {
+            open();
+            return new ArrayList<>(locations.keySet());
+        }
+
+        synchronized void close() throws IOException {
+            if (!open) {
+                return;
+            }
+            try {
+                indexOut.close();
+            } finally {
+                for (FileChannel channel : channels) {
+                    channel.close();
+                }
+                channels.clear();
+                locations.clear();
+                indexOut = null;
+                open = false;
+            }
+        }
+
+        /**
+         * Load the packs written so far on first use
+         *
+         * @throws IOException
+         */
+        private void open() throws IOException {
+
+            if (open) {
+                return;
+            }
+            Files.createDirectories(folder);
+            List<Path> packs = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, kind + "-*.pack")) {
+                for (Path file : files) {
+                    packs.add(file);
+                }
+            }
+            packs.sort(null);
+
+            for (int number = 0; number < packs.size(); number++) {
+                if (!packs.get(number).equals(getPackPath(number))) {
+                    throw new IOException("Missing pack before " + packs.get(number));
+                }
+                boolean last = number == packs.size() - 1;
+                FileChannel channel = last ?
+                        FileChannel.open(packs.get(number), StandardOpenOption.READ, StandardOpenOption.WRITE) :
+                        FileChannel.open(packs.get(number), StandardOpenOption.READ);
+                channels.add(channel);
+                long end = load(number, channel);
+                if (last) {
+                    try (FileChannel index = FileChannel.open(getIndexPath(number),
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                        index.truncate(indexLength);
+                    }
+                    openIndex(number);
+                    recover(number, channel, end);
+                }
+            }
+            if (channels.isEmpty()) {
+                startPack();
+            }
+            open = true;
+        }
+
+        /**
+         * Read the index of a pack
+         *
+         * @param number
+         * @param channel
+         * @return end of the last indexed record
+         * @throws IOException
+         */
+        private long load(int number, FileChannel channel) throws IOException {
+
+            Path indexPath = getIndexPath(number);
+            indexLength = 0;
+            if (!Files.exists(indexPath)) {
+                return 0;
+            }
+            long end = 0;
+            long size = channel.size();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(indexPath), Constants.DOWNLOAD_BUFFER_SIZE))) {
+                while (true) {
+                    byte[] fragment;
+                    long offset;
+                    try {
+                        fragment = new byte[in.readInt()];
+                        in.readFully(fragment);
+                        offset = in.readLong();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    long recordEnd = getRecordEnd(channel, offset, size);
+                    if (recordEnd < 0) {
+                        break;
+                    }
+                    locations.put(new String(fragment, StandardCharsets.UTF_8), location(number, offset));
+                    end = Math.max(end, recordEnd);
+                    indexLength += 12 + fragment.length;
+                }
+            }
+            return end;
+        }
+
+        /**
+         * Index the complete records past the indexed ones, cut off a torn one
+         *
+         * @param number
+         * @param channel
+         * @param position : end of the indexed records
+         * @throws IOException
+         */
+        private void recover(int number, FileChannel channel, long position) throws IOException {
+
+            long size = channel.size();
+            int recovered = 0;
+            long recordEnd;
+            while ((recordEnd = getRecordEnd(channel, position, size)) >= 0) {
+                ByteBuffer header = readFully(channel, position, 4);
+                byte[] fragment = new byte[header.getInt()];
+                readFully(channel, position + 4, fragment.length).get(fragment);
+                String urlFragment = new String(fragment, StandardCharsets.UTF_8);
+                writeIndexEntry(urlFragment, position);
+                locations.put(urlFragment, location(number, position));
+                position = recordEnd;
+                recovered++;
+            }
+            if (position < size) {
+                LOGGER.warn("Dropping the incomplete document at the end of " + getPackPath(number));
+                channel.truncate(position);
+            }
+            if (recovered > 0) {
+                LOGGER.info(recovered + " Documents recovered from " + getPackPath(number));
+            }
+            writePosition = position;
+        }
+
+        /**
+         * @param channel
+         * @param offset
+         * @param size : of the pack
+         * @return end of the record at the offset, -1 if it does not fit in the pack
+         * @throws IOException
+         */
+        private static long getRecordEnd(FileChannel channel, long offset, long size) throws IOException {
+            if (offset + 4 > size) {
+                return -1;
+            }
+            int fragmentLength = readFully(channel, offset, 4).getInt();
+            long lengthsOffset = offset + 4 + fragmentLength;
+            if (fragmentLength < 0 || lengthsOffset + 8 > size) {
+                return -1;
+            }
+            int compressedLength = readFully(channel, lengthsOffset + 4, 4).getInt();
+            long end = lengthsOffset + 8 + compressedLength;
+            return compressedLength >= 0 && end <= size ? end : -1;
+        }
+
+        private void startPack() throws IOException {
+            if (indexOut != null) {
+                indexOut.close();
+            }
+            int number = channels.size();
+            channels.add(FileChannel.open(getPackPath(number),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            Files.deleteIfExists(getIndexPath(number));
+            openIndex(number);
+            writePosition = 0;
+        }
+
+        private void openIndex(int number) throws IOException {
+            indexOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                    getIndexPath(number), StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                    Constants.DOWNLOAD_BUFFER_SIZE));
+        }
+
+        private void writeIndexEntry(String urlFragment, long offset) throws IOException {
+            byte[] fragment = urlFragment.getBytes(StandardCharsets.UTF_8);
+            indexOut.writeInt(fragment.length);
+            indexOut.write(fragment);
+            indexOut.writeLong(offset);
+        }
+
+        private Path getPackPath(int number) {
+            return folder.resolve(String.format("%s-%05d.pack", kind, number));
+        }
+
+        private Path getIndexPath(int number) {
+            return folder.resolve(String.format("%s-%05d.idx", kind, number));
+        }
+
+        private static long location(int number, long offset) {
+            return ((long) number << 40) | offset;
+        }
+
+        private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Truncated pack");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.websearcher.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.Metrics;
+import com.websearcher.MetricsMXBean;
+import com.websearcher.ResultCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics of a run, urls are counted by the url timer and errors by the
+ * result collector. Rates run from the first url dispatched, the startup
+ * and the results restored from the journal do not count.
+ * Logged every metrics log interval seconds and dumped to
+ * <root folder>/metrics.txt on close.
+ */
+@Singleton
+class PipelineMetrics implements Metrics, MetricsMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineMetrics.class);
+
+    private static final String OBJECT_NAME = "com.websearcher:type=Metrics";
+    private static final double[] PERCENTILES = {50, 90, 99};
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final AppUtils appUtils;
+    private final int logInterval;      //Seconds
+    private final Provider<ResultCollector> resultCollector;
+    private final Map<Timer, LatencyHistogram> histograms = new EnumMap<>(Timer.class);
+    private final LongAdder bytes = new LongAdder();
+    private final Map<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+    private final Map<String, IntSupplier> queues = new ConcurrentHashMap<>();
+    private final AtomicLong startTime = new AtomicLong(NOT_STARTED);  //First dispatch
+    private ScheduledExecutorService logger = null;
+
+    @Inject
+    PipelineMetrics(
+            AppUtils appUtils,
+            AppConfig appConfig,
+            Provider<ResultCollector> resultCollector) {
+
+        this.appUtils = appUtils;
+        this.logInterval = appConfig.getMetricsLogInterval();
+        this.resultCollector = resultCollector;
+        for (Timer timer : Timer.values()) {
+            histograms.put(timer, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void record(Timer timer, long nanos) {
+        histograms.get(timer).record(nanos / 1000);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordDispatch() {
+        if (startTime.get() == NOT_STARTED) {
+            startTime.compareAndSet(NOT_STARTED, System.nanoTime());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addBytes(long bytes) {
+        this.bytes.add(bytes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordError(Throwable error) {
+        errorsByType.computeIfAbsent(error.getClass().getSimpleName(), type -> new LongAdder()).increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void registerQueue(String name, IntSupplier depth) {
+        queues.put(name, depth);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void start() {
+
+        if (logger != null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.warn("Metrics not exposed over JMX : " + e.getMessage());
+        }
+
+        logger = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("metrics-log").setDaemon(true).build());
+        logger.scheduleAtFixedRate(() -> LOGGER.info(getSummary()),
+                logInterval, logInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSummary() {
+
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                "Urls %d (%.1f/s), errors %d, %.1f MB (%.2f MB/s)",
+                getUrlCount(), getUrlsPerSecond(), getErrorCount(),
+                getBytes() / 1048576.0, getBytesPerSecond() / 1048576.0));
+        for (Timer timer : new Timer[]{Timer.URL, Timer.FETCH, Timer.EXTRACT, Timer.SEARCH}) {
+            LatencyHistogram histogram = histograms.get(timer);
+            summary.append(String.format(Locale.ROOT, " | %s p50 %.1f p99 %.1f ms",
+                    getName(timer), histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0));
+        }
+        summary.append(" | queues");
+        for (Map.Entry<String, Integer> queue : getQueueDepths().entrySet()) {
+            summary.append(' ').append(queue.getKey()).append('=').append(queue.getValue());
+        }
+        return summary.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() throws IOException {
+
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                LOGGER.warn("Metrics not unregistered from JMX : " + e.getMessage());
+            }
+        }
+        LOGGER.info(getSummary());
+        Files.write(appUtils.getMetricsFilePath(), getReport().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public long getUrlCount() {
+        return histograms.get(Timer.URL).getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return resultCollector.get().getErrorCount();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getUrlsPerSecond() {
+        return getPerSecond(getUrlCount());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getPerSecond(getBytes());
+    }
+
+    @Override
+    public Map<String, Long> getErrorsByType() {
+        Map<String, Long> errors = new TreeMap<>();
+        errorsByType.forEach((type, count) -> errors.put(type, count.sum()));
+        return errors;
+    }
+
+    @Override
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        queues.forEach((name, depth) -> depths.put(name, depth.getAsInt()));
+        return depths;
+    }
+
+    @Override
+    public Map<String, Double> getLatencies() {
+        Map<String, Double> latencies = new TreeMap<>();
+        for (Map.Entry<Timer, LatencyHistogram> entry : histograms.entrySet()) {
+            String name = getName(entry.getKey());
+            LatencyHistogram histogram = entry.getValue();
+            latencies.put(name + ".count", (double) histogram.getCount());
+            latencies.put(name + ".mean", histogram.getMean() / 1000);
+            for (double percentile : PERCENTILES) {
+                latencies.put(name + ".p" + (int) percentile, histogram.getPercentile(percentile) / 1000.0);
+            }
+            latencies.put(name + ".max", histogram.getMax() / 1000.0);
+        }
+        return latencies;
+    }
+
+    /**
+     * Full figures, written to the metrics file
+     * @return
+     */
+    String getReport() {
+
+        StringBuilder report = new StringBuilder(getSummary()).append(System.lineSeparator())
+                .append(System.lineSeparator())
+                .append(String.format(Locale.ROOT, "%-10s %10s %10s %10s %10s %10s %10s",
+                        "ms", "count", "mean", "p50", "p90", "p99", "max"))
+                .append(System.lineSeparator());
+        for (Map.Entry<Timer, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            report.append(String.format(Locale.ROOT, "%-10s %10d %10.1f %10.1f %10.1f %10.1f %10.1f",
+                    getName(entry.getKey()), histogram.getCount(), histogram.getMean() / 1000,
+                    histogram.getPercentile(50) / 1000.0, histogram.getPercentile(90) / 1000.0,
+                    histogram.getPercentile(99) / 1000.0, histogram.getMax() / 1000.0))
+                    .append(System.lineSeparator());
+        }
+        report.append(System.lineSeparator()).append("Errors by type").append(System.lineSeparator());
+        for (Map.Entry<String, Long> error : getErrorsByType().entrySet()) {
+            report.append(error.getKey()).append(' ').append(error.getValue()).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    /**
+     * @param count
+     * @return count per second since the first dispatch, 0 before it
+     */
+    private double getPerSecond(long count) {
+        long start = startTime.get();
+        if (start == NOT_STARTED) {
+            return 0;
+        }
+        return count / (Math.max(System.nanoTime() - start, 1) / 1e9);
+    }
+
+    private static String getName(Timer timer) {
+        return timer.name().toLowerCase(Locale.ROOT);
+    }
+}
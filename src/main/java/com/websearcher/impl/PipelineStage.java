@@ -0,0 +1,88 @@
+package com.websearcher.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One stage of the url processing pipeline.
+ *
+ * A fixed pool of worker threads fed through a bounded queue.
+ * Submitting blocks while the queue is full, which holds back the
+ * upstream stage whenever this one falls behind.
+ */
+class PipelineStage {
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param name : used for the thread names
+     * @param threadCount
+     * @param queueSize : tasks waiting for a worker before submit blocks
+     */
+    PipelineStage(
+            String name,
+            int threadCount,
+            int queueSize) {
+
+        this.name = name;
+        this.executor = new ThreadPoolExecutor(
+                threadCount, threadCount,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").build(),
+                (task, pool) -> {
+                    try {
+                        pool.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(
+                                "Interrupted while queueing to " + name, e);
+                    }
+                });
+    }
+
+    /**
+     * Queue the task, blocks while the queue is full
+     * @param task
+     */
+    void submit(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Tasks waiting for a worker
+     * @return
+     */
+    int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Wait for every queued task to complete.
+     * Only called once the upstream stages are finished
+     * so no more tasks can arrive.
+     *
+     * @throws InterruptedException
+     */
+    void finish() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drop queued tasks and interrupt the workers
+     */
+    void abort() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,38 +1,91 @@
 package com.websearcher.impl;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.websearcher.Constants;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ProgressJournal;
 import com.websearcher.ResultCollector;
+import com.websearcher.ResultWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Singleton to store results of processing
+ * Singleton to store results of processing.
+ *
+ * Workers only bump lock free counters and queue the result.
+ * A single writer thread drains the queue into the ResultWriter and
+ * flushes whenever it catches up. The queue is bounded, workers wait
+ * while the writer is RESULT_QUEUE_SIZE results behind, so memory stays
+ * flat however many urls are processed and the results written so far
+ * survive a crash.
+ * New results are also appended to the progress journal so an
+ * interrupted run can be resumed, errors are not so it retries them.
  */
 @Singleton
 class ResultCollectorImpl implements ResultCollector {
 
-    private final Map<String, String> errorMap = new HashMap<>();
-    private final Map<String, List<Integer>> searchResultsMap = new HashMap<>();
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultCollectorImpl.class);
+
+    /**
+     * Queued result, there is no index map when processing failed
+     */
+    private static final class Result {
+
+        private final String url;
+        private final Map<String, MatchOffsets> searchIndexMap;
+        private final String error;
+        private final boolean restored;     //Already in the journal
+
+        Result(String url, Map<String, MatchOffsets> searchIndexMap, String error, boolean restored) {
+            this.url = url;
+            this.searchIndexMap = searchIndexMap;
+            this.error = error;
+            this.restored = restored;
+        }
+    }
+
+    private static final Result END = new Result(null, null, null, false); //Stops the writer thread
+
+    private final ResultWriter resultWriter;
+    private final ProgressJournal progressJournal;
+    private final BlockingQueue<Result> queue = new ArrayBlockingQueue<>(Constants.RESULT_QUEUE_SIZE);
+    private final Thread writerThread;
+
+    private final AtomicInteger resultCount = new AtomicInteger();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private final ConcurrentMap<String, LongAdder> matchCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> urlCounts = new ConcurrentHashMap<>();
+    private volatile IOException writeException = null;    //First failed write
+
+    @Inject
+    ResultCollectorImpl(
+            ResultWriter resultWriter,
+            ProgressJournal progressJournal) {
+
+        this.resultWriter = resultWriter;
+        this.progressJournal = progressJournal;
+        this.writerThread = new Thread(this::writeResults, "result-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void setResult(String url, List<Integer> searchIndexArray) {
-
-        /**
-         * Copy array to an immutable collection.
-         * Synchronize on the map to only allow one thread
-         * at a time to insert into map
-         */
-        List<Integer> finalResultList = ImmutableList.copyOf(searchIndexArray);
-        synchronized (searchResultsMap) {
-            searchResultsMap.put(url, finalResultList);
-        }
+    public void setResult(String url, Map<String, MatchOffsets> searchIndexMap) {
+        addResult(url, searchIndexMap, false);
     }
 
     /**
@@ -40,29 +93,142 @@ class ResultCollectorImpl implements ResultCollector {
      */
     @Override
     public void setError(String url, String error) {
+        errorCount.incrementAndGet();
+        enqueue(new Result(url, null, error, false));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restoreResult(String url, Map<String, MatchOffsets> searchIndexMap) {
+        addResult(url, searchIndexMap, true);
+    }
 
-        /**
-         * Synchronize on the map to only allow one thread
-         * at a time to insert into map
-         */
-        synchronized (errorMap) {
-            errorMap.put(url, error);
+    private void addResult(String url, Map<String, MatchOffsets> searchIndexMap, boolean restored) {
+
+        resultCount.incrementAndGet();
+        for (Map.Entry<String, MatchOffsets> entry : searchIndexMap.entrySet()) {
+            matchCounts.computeIfAbsent(entry.getKey(), keyword -> new LongAdder())
+                    .add(entry.getValue().size());
+            urlCounts.computeIfAbsent(entry.getKey(), keyword -> new LongAdder())
+                    .increment();
         }
+        enqueue(new Result(url, searchIndexMap, null, restored));
+    }
+
+    /**
+     * Waits while the queue is full. A result is never dropped,
+     * an interrupt is kept for the caller once it is queued.
+     *
+     * @param result
+     */
+    private void enqueue(Result result) {
+        Uninterruptibles.putUninterruptibly(queue, result);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Map<String, String> getErrorMap() {
-        return Collections.unmodifiableMap(errorMap);
+    public int getResultCount() {
+        return resultCount.get();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Map<String, List<Integer>> getSearchResultMap() {
-        return Collections.unmodifiableMap(searchResultsMap);
+    public int getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMatchCount(String keyword) {
+        LongAdder count = matchCounts.get(keyword);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getUrlCount(String keyword) {
+        LongAdder count = urlCounts.get(keyword);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing results", e);
+        }
+        if (writeException != null) {
+            resultWriter.close();
+            throw writeException;
+        }
+        try {
+            resultWriter.writeSummary(this);
+        } finally {
+            resultWriter.close();
+        }
+    }
+
+    /**
+     * Writer thread loop.
+     * After a failed write the queue is still drained so workers are
+     * never held up, the failure is reported on close.
+     */
+    private void writeResults() {
+
+        try {
+            while (true) {
+                Result result = queue.take();
+                if (writeException != null) {
+                    if (result == END) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    if (result == END) {
+                        progressJournal.flush();
+                        return;
+                    }
+                    if (result.searchIndexMap == null) {
+                        resultWriter.writeError(result.url, result.error);
+                    } else {
+                        resultWriter.writeResult(result.url, result.searchIndexMap);
+                        if (!result.restored) {
+                            progressJournal.appendResult(result.url, result.searchIndexMap);
+                        }
+                    }
+
+                    /**
+                     * Results first, a url in the journal is never missing from the results
+                     */
+                    if (queue.isEmpty()) {
+                        resultWriter.flush();
+                        progressJournal.flush();
+                    }
+                } catch (IOException e) {
+                    LOGGER.error(e.getMessage(), e);
+                    writeException = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
@@ -0,0 +1,473 @@
+package com.websearcher.impl;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.Constants;
+import com.websearcher.MatchOffsets;
+import com.websearcher.TextIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Inverted index written as immutable segment files in <root folder>/index/
+ *
+ * Documents are buffered in memory and written out as a segment once
+ * INDEX_SEGMENT_SIZE bytes of postings have built up, and on close.
+ * A full buffer is swapped for an empty one under the lock and written
+ * by the thread that filled it, the other threads keep adding meanwhile.
+ * A segment holds :
+ * - the urls, the document id is the position in the list
+ * - the postings of each term : document id deltas, then the
+ *   number of offsets and the offset deltas, all varints
+ * - the term dictionary, sorted terms with the start of their postings
+ * - the position of the dictionary
+ */
+@Singleton
+class SegmentTextIndex implements TextIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentTextIndex.class);
+
+    private static final int MAGIC = 0x57534931;    //WSI1
+    private static final String SEGMENT_SUFFIX = ".idx";
+
+    private final Path indexFolder;
+    private final int segmentSize;      //Bytes of postings buffered before a segment is written
+
+    private Buffer buffer = new Buffer();
+    private int segmentCount = -1;      //Segments on disk or being written, -1 until listed
+
+    @Inject
+    SegmentTextIndex(
+            AppUtils appUtils,
+            AppConfig appConfig) {
+
+        this.indexFolder = appUtils.getIndexFolderPath();
+        this.segmentSize = appConfig.getIndexSegmentSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void clear() throws IOException {
+        for (Path segment : listSegments()) {
+            Files.delete(segment);
+        }
+        segmentCount = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The text is tokenized before taking the lock,
+     * a full segment is written after letting it go.
+     */
+    @Override
+    public void addDocument(String url, String text) throws IOException {
+
+        Map<String, MatchOffsets> terms = IndexTokenizer.tokenize(text);
+        Buffer full = null;
+        int segmentNumber = 0;
+        synchronized (this) {
+            buffer.add(url, terms);
+            if (buffer.bytes >= segmentSize) {
+                full = buffer;
+                segmentNumber = nextSegmentNumber();
+                buffer = new Buffer();
+            }
+        }
+        if (full != null) {
+            writeSegment(full, segmentNumber);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long search(
+            List<String> keywords,
+            BiConsumer<String, Map<String, MatchOffsets>> listener) throws IOException {
+
+        List<List<String>> keywordTerms = new ArrayList<>();
+        List<int[]> keywordOffsets = new ArrayList<>();
+        for (String keyword : keywords) {
+            List<String> terms = new ArrayList<>();
+            keywordOffsets.add(IndexTokenizer.tokenizeKeyword(keyword, terms));
+            keywordTerms.add(terms);
+        }
+
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            throw new IOException("No index found in " + indexFolder);
+        }
+
+        long documentCount = 0;
+        for (Path segmentPath : segments) {
+            try (Segment segment = new Segment(segmentPath)) {
+
+                /**
+                 * Matches per document, keywords in the given order
+                 */
+                List<Map<String, MatchOffsets>> matches = new ArrayList<>();
+                for (int doc = 0; doc < segment.urls.length; doc++) {
+                    matches.add(new LinkedHashMap<>());
+                }
+                for (int k = 0; k < keywords.size(); k++) {
+                    String keyword = keywords.get(k);
+                    segment.find(keywordTerms.get(k), keywordOffsets.get(k), keyword.length(),
+                            (doc, offsets) -> matches.get(doc).put(keyword, offsets));
+                }
+
+                for (int doc = 0; doc < segment.urls.length; doc++) {
+                    listener.accept(segment.urls[doc], matches.get(doc));
+                }
+                documentCount += segment.urls.length;
+            }
+        }
+        return documentCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!buffer.urls.isEmpty()) {
+            writeSegment(buffer, nextSegmentNumber());
+            buffer = new Buffer();
+        }
+    }
+
+    /**
+     * Number of the next segment, called under the lock so
+     * segments are numbered in the order they were filled
+     *
+     * @return
+     * @throws IOException
+     */
+    private int nextSegmentNumber() throws IOException {
+        if (segmentCount < 0) {
+            segmentCount = listSegments().size();
+        }
+        return segmentCount++;
+    }
+
+    /**
+     * Write the buffered documents as the given segment.
+     * Written to a temporary file first so a crash never leaves half a segment.
+     *
+     * @param segment : no longer added to
+     * @param segmentNumber
+     * @throws IOException
+     */
+    private void writeSegment(Buffer segment, int segmentNumber) throws IOException {
+
+        Files.createDirectories(indexFolder);
+        Path segmentPath = indexFolder.resolve(String.format("segment-%05d%s", segmentNumber, SEGMENT_SUFFIX));
+        Path temp = indexFolder.resolve(segmentPath.getFileName() + ".tmp");
+        Map<String, Postings> sortedPostings = new TreeMap<>(segment.postings);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temp), Constants.DOWNLOAD_BUFFER_SIZE))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(segment.urls.size());
+            for (String url : segment.urls) {
+                writeString(out, url);
+            }
+
+            Map<String, Integer> postingsOffsets = new LinkedHashMap<>();
+            for (Map.Entry<String, Postings> term : sortedPostings.entrySet()) {
+                postingsOffsets.put(term.getKey(), out.size());
+                out.write(term.getValue().data, 0, term.getValue().length);
+            }
+
+            int dictionaryOffset = out.size();
+            out.writeInt(postingsOffsets.size());
+            for (Map.Entry<String, Integer> term : postingsOffsets.entrySet()) {
+                writeString(out, term.getKey());
+                out.writeInt(term.getValue());
+            }
+            out.writeInt(dictionaryOffset);
+        }
+        Files.move(temp, segmentPath, StandardCopyOption.ATOMIC_MOVE);
+
+        LOGGER.info("Index segment " + segmentPath + " written, " + segment.urls.size() + " documents");
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (Files.isDirectory(indexFolder)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(indexFolder, "segment-*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    segments.add(file);
+                }
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Documents of the segment being filled
+     */
+    private static final class Buffer {
+
+        private final List<String> urls = new ArrayList<>();    //The document id is the position
+        private final Map<String, Postings> postings = new HashMap<>();
+        private long bytes = 0;                                 //Estimated
+
+        void add(String url, Map<String, MatchOffsets> terms) {
+            int docId = urls.size();
+            urls.add(url);
+            bytes += url.length() + 16;
+            for (Map.Entry<String, MatchOffsets> term : terms.entrySet()) {
+                Postings termPostings = postings.get(term.getKey());
+                if (termPostings == null) {
+                    termPostings = new Postings();
+                    postings.put(term.getKey(), termPostings);
+                    bytes += term.getKey().length() + 64;
+                }
+                int before = termPostings.length;
+                termPostings.add(docId, term.getValue());
+                bytes += termPostings.length - before;
+            }
+        }
+    }
+
+    /**
+     * Postings of a term in the buffered segment
+     */
+    private static final class Postings {
+
+        private byte[] data = new byte[16];
+        private int length = 0;
+        private int lastDoc = 0;
+
+        /**
+         * Documents are added in id order
+         *
+         * @param docId
+         * @param offsets
+         */
+        void add(int docId, MatchOffsets offsets) {
+            writeVarint(docId - lastDoc);
+            writeVarint(offsets.size());
+            int[] last = {0};
+            offsets.forEach(offset -> {
+                writeVarint(offset - last[0]);
+                last[0] = offset;
+            });
+            lastDoc = docId;
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Listener for the matches of a keyword in a document
+     */
+    private interface DocumentMatches {
+        void accept(int doc, MatchOffsets offsets);
+    }
+
+    /**
+     * Segment opened for search, the file is memory mapped.
+     * Urls and dictionary are read up front, postings are
+     * decoded when a term is looked up.
+     */
+    private static final class Segment implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer file;
+        private final String[] urls;
+        private final String[] terms;       //Sorted
+        private final int[] postingsStart;  //Per term, the dictionary offset for the last one
+        private final Map<String, Map<Integer, int[]>> decoded = new HashMap<>();
+
+        Segment(Path path) throws IOException {
+
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer header = file.duplicate();
+            if (channel.size() < 12 || header.getInt() != MAGIC) {
+                channel.close();
+                throw new IOException("Not an index segment : " + path);
+            }
+            urls = new String[header.getInt()];
+            for (int i = 0; i < urls.length; i++) {
+                urls[i] = readString(header);
+            }
+
+            int dictionaryOffset = header.getInt(header.limit() - 4);
+            header.position(dictionaryOffset);
+            terms = new String[header.getInt()];
+            postingsStart = new int[terms.length + 1];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = readString(header);
+                postingsStart[i] = header.getInt();
+            }
+            postingsStart[terms.length] = dictionaryOffset;
+        }
+
+        /**
+         * Keyword matches per document : the terms at the keyword offsets,
+         * spaces in between and no overlap with the previous match
+         *
+         * @param keywordTerms
+         * @param termOffsets : offset of each term in the keyword
+         * @param keywordLength
+         * @param listener
+         */
+        void find(
+                List<String> keywordTerms,
+                int[] termOffsets,
+                int keywordLength,
+                DocumentMatches listener) {
+
+            List<Map<Integer, int[]>> termPostings = new ArrayList<>();
+            for (String term : keywordTerms) {
+                Map<Integer, int[]> docs = lookup(term);
+                if (docs.isEmpty()) {
+                    return;
+                }
+                termPostings.add(docs);
+            }
+            List<Integer> gaps = new ArrayList<>();
+            for (int i = 1; i < termOffsets.length; i++) {
+                int previousEnd = termOffsets[i - 1] + keywordTerms.get(i - 1).length();
+                for (int gap = previousEnd; gap < termOffsets[i]; gap++) {
+                    gaps.add(gap);
+                }
+            }
+            Map<Integer, int[]> nonWord = gaps.isEmpty() ?
+                    new HashMap<>() : lookup(IndexTokenizer.NON_WORD_TERM);
+
+            for (Map.Entry<Integer, int[]> first : termPostings.get(0).entrySet()) {
+                int doc = first.getKey();
+                int[] nonWordOffsets = nonWord.getOrDefault(doc, new int[0]);
+                MatchOffsets matches = new MatchOffsets();
+                int nextAllowedStart = 0;
+
+                candidates:
+                for (int offset : first.getValue()) {
+                    int start = offset - termOffsets[0];
+                    if (start < nextAllowedStart) {
+                        continue;
+                    }
+                    for (int i = 1; i < termOffsets.length; i++) {
+                        int[] offsets = termPostings.get(i).get(doc);
+                        if (offsets == null) {
+                            break candidates;
+                        }
+                        if (Arrays.binarySearch(offsets, start + termOffsets[i]) < 0) {
+                            continue candidates;
+                        }
+                    }
+                    for (int gap : gaps) {
+                        if (Arrays.binarySearch(nonWordOffsets, start + gap) >= 0) {
+                            continue candidates;
+                        }
+                    }
+                    matches.add(start);
+                    nextAllowedStart = start + keywordLength;
+                }
+                if (!matches.isEmpty()) {
+                    listener.accept(doc, matches.compact());
+                }
+            }
+        }
+
+        /**
+         * @param term
+         * @return offsets per document, empty if the term is not in the segment
+         */
+        private Map<Integer, int[]> lookup(String term) {
+
+            Map<Integer, int[]> docs = decoded.get(term);
+            if (docs != null) {
+                return docs;
+            }
+            docs = new LinkedHashMap<>();
+            int index = Arrays.binarySearch(terms, term);
+            if (index >= 0) {
+                ByteBuffer buffer = file.duplicate();
+                buffer.position(postingsStart[index]).limit(postingsStart[index + 1]);
+                int doc = 0;
+                while (buffer.hasRemaining()) {
+                    doc += readVarint(buffer);
+                    int[] offsets = new int[readVarint(buffer)];
+                    int offset = 0;
+                    for (int i = 0; i < offsets.length; i++) {
+                        offset += readVarint(buffer);
+                        offsets[i] = offset;
+                    }
+                    docs.put(doc, offsets);
+                }
+            }
+            decoded.put(term, docs);
+            return docs;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.websearcher.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Singleton;
+import com.websearcher.TextExtractor;
+import org.jsoup.parser.Parser;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Extracts text in a single pass over the html without building a DOM.
+ *
+ * Tags are tokenized and dropped, script and style content is skipped,
+ * entities are decoded and each text chunk is appended to the output as
+ * soon as it is found. Spacing follows jsoup's Element.text() so both
+ * extractors produce the same text for well formed pages. The tree builder
+ * fix ups jsoup applies to broken markup (foster parenting, implied end
+ * tags, ...) are not reproduced.
+ * The href of each link is read from the start tag as it goes by.
+ */
+@Singleton
+class StreamingTextExtractor implements TextExtractor {
+
+    /**
+     * Same block tags as jsoup, text is separated by a space around them.
+     */
+    private static final Set<String> BLOCK_TAGS = ImmutableSet.of(
+            "html", "head", "body", "frameset", "script", "noscript", "style", "meta", "link", "title", "frame",
+            "noframes", "section", "nav", "aside", "hgroup", "header", "footer", "p", "h1", "h2", "h3", "h4", "h5",
+            "h6", "ul", "ol", "pre", "div", "blockquote", "hr", "address", "figure", "figcaption", "form", "fieldset",
+            "ins", "del", "dl", "dt", "dd", "li", "table", "caption", "thead", "tfoot", "tbody", "colgroup", "col",
+            "tr", "th", "td", "video", "audio", "canvas", "details", "menu", "plaintext", "template", "article",
+            "main", "svg", "math");
+
+    private static final Set<String> SKIPPED_TAGS = ImmutableSet.of(
+            "script", "style");                                 //Content is data, never part of the text
+    private static final Set<String> RAW_TEXT_TAGS = ImmutableSet.of(
+            "iframe", "noembed", "noframes", "xmp");            //Content is text, no tags or entities
+    private static final Set<String> RCDATA_TAGS = ImmutableSet.of(
+            "title", "textarea");                               //Content is text with entities, no tags
+    private static final String PLAINTEXT_TAG = "plaintext";    //Everything after it is text
+    private static final String PRE_TAG = "pre";                //Whitespace kept as is inside
+    private static final String LISTING_TAG = "listing";
+    private static final String LINK_TAG = "a";
+    private static final String HREF_ATTRIBUTE = "href";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String extractText(String html, Consumer<String> links) {
+
+        TextBuilder text = new TextBuilder(html.length() / 4);
+        int length = html.length();
+        int preDepth = 0;
+        int pos = 0;
+
+        while (pos < length) {
+
+            int tagStart = html.indexOf('<', pos);
+            int textEnd = tagStart < 0 ? length : tagStart;
+            if (textEnd > pos) {
+                text.append(decode(html.substring(pos, textEnd)), preDepth > 0);
+            }
+            if (tagStart < 0) {
+                break;
+            }
+
+            pos = tagStart + 1;
+            char next = charAt(html, pos);
+
+            if (isAsciiLetter(next)) {
+
+                /**
+                 * Start tag, a tag cut off by the end of the page is dropped.
+                 */
+                int nameEnd = scanTagName(html, pos);
+                String name = html.substring(pos, nameEnd).toLowerCase(Locale.ROOT);
+                pos = skipAttributes(html, nameEnd);
+                if (pos < 0) {
+                    break;
+                }
+                if (links != null && LINK_TAG.equals(name)) {
+                    String href = getAttribute(html, nameEnd, pos - 1, HREF_ATTRIBUTE);
+                    if (href != null) {
+                        links.accept(decode(href));
+                    }
+                }
+                text.startTag(name);
+
+                if (SKIPPED_TAGS.contains(name)) {
+                    pos = findEndTag(html, pos, name);
+                } else if (RAW_TEXT_TAGS.contains(name)) {
+                    int end = findEndTag(html, pos, name);
+                    text.append(html.substring(pos, end), preDepth > 0);
+                    pos = end;
+                } else if (RCDATA_TAGS.contains(name)) {
+                    int end = findEndTag(html, pos, name);
+                    text.append(decode(html.substring(pos, end)), true);
+                    pos = end;
+                } else if (PLAINTEXT_TAG.equals(name)) {
+                    text.append(html.substring(pos), true);
+                    pos = length;
+                } else if (PRE_TAG.equals(name) || LISTING_TAG.equals(name)) {
+                    preDepth += PRE_TAG.equals(name) ? 1 : 0;
+                    pos = charAt(html, pos) == '\n' ? pos + 1 : pos;     //Leading newline is dropped
+                }
+
+            } else if (next == '/') {
+
+                char afterSlash = charAt(html, pos + 1);
+                if (isAsciiLetter(afterSlash)) {
+                    int nameEnd = scanTagName(html, pos + 1);
+                    String name = html.substring(pos + 1, nameEnd).toLowerCase(Locale.ROOT);
+                    pos = skipAttributes(html, nameEnd);
+                    if (pos < 0) {
+                        break;
+                    }
+                    text.endTag(name);
+                    if (PRE_TAG.equals(name) && preDepth > 0) {
+                        preDepth--;
+                    }
+                } else if (afterSlash == '>') {
+                    pos += 2;
+                } else if (afterSlash == 0) {
+                    text.append("</", preDepth > 0);
+                    pos = length;
+                } else {
+                    pos = skipPast(html, pos, ">");
+                    text.otherToken();
+                }
+
+            } else if (next == '!') {
+
+                if (html.startsWith("!--", pos)) {
+                    pos = skipPast(html, pos + 1, "-->");
+                    text.otherToken();
+                } else if (html.startsWith("![CDATA[", pos)) {
+                    int end = html.indexOf("]]>", pos);
+                    end = end < 0 ? length : end;
+                    text.append(html.substring(pos + 8, end), preDepth > 0);
+                    pos = Math.min(end + 3, length);
+                } else {
+                    pos = skipPast(html, pos, ">");
+                    text.otherToken();
+                }
+
+            } else if (next == '?') {
+
+                pos = skipPast(html, pos, ">");
+                text.otherToken();
+
+            } else {
+
+                text.append("<", preDepth > 0);
+            }
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Decode entities, most chunks have none.
+     *
+     * @param raw
+     * @return
+     */
+    private static String decode(String raw) {
+        return raw.indexOf('&') < 0 ? raw : Parser.unescapeEntities(raw, false);
+    }
+
+    private static char charAt(String html, int pos) {
+        return pos < html.length() ? html.charAt(pos) : 0;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Tag name runs up to whitespace, / or >
+     *
+     * @param html
+     * @param pos : first character of the name
+     * @return index after the name
+     */
+    private static int scanTagName(String html, int pos) {
+        int length = html.length();
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (isWhitespace(c) || c == '/' || c == '>') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Skip the attributes of a tag. Quotes only count around
+     * attribute values so a stray quote does not swallow the page.
+     *
+     * @param html
+     * @param pos : index after the tag name
+     * @return index after the closing >, -1 if the page ends first
+     */
+    private static int skipAttributes(String html, int pos) {
+
+        final int names = 0, afterEquals = 1, unquotedValue = 2;
+        int state = names;
+        int length = html.length();
+
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (state == afterEquals && (c == '"' || c == '\'')) {
+                int close = html.indexOf(c, pos + 1);
+                if (close < 0) {
+                    return -1;
+                }
+                pos = close + 1;
+                state = names;
+                continue;
+            }
+            if (c == '>') {
+                return pos + 1;
+            }
+            if (state == names) {
+                if (c == '=') {
+                    state = afterEquals;
+                }
+            } else if (state == afterEquals) {
+                if (!isWhitespace(c)) {
+                    state = unquotedValue;
+                }
+            } else if (isWhitespace(c)) {
+                state = names;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    /**
+     * Value of an attribute, read with the same quoting rules as skipAttributes
+     *
+     * @param html
+     * @param pos : index after the tag name
+     * @param end : index of the closing >
+     * @param name : lower case attribute name
+     * @return value as written, null if the tag does not have the attribute
+     */
+    private static String getAttribute(String html, int pos, int end, String name) {
+
+        while (pos < end) {
+            char c = html.charAt(pos);
+            if (isWhitespace(c) || c == '/') {
+                pos++;
+                continue;
+            }
+
+            int nameStart = pos;
+            while (pos < end && "=/".indexOf(html.charAt(pos)) < 0 && !isWhitespace(html.charAt(pos))) {
+                pos++;
+            }
+            boolean found = pos - nameStart == name.length() &&
+                    html.regionMatches(true, nameStart, name, 0, name.length());
+            while (pos < end && isWhitespace(html.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= end || html.charAt(pos) != '=') {
+                if (found) {
+                    return "";
+                }
+                continue;
+            }
+
+            pos++;
+            while (pos < end && isWhitespace(html.charAt(pos))) {
+                pos++;
+            }
+            int valueStart = pos;
+            int valueEnd;
+            if (pos < end && (html.charAt(pos) == '"' || html.charAt(pos) == '\'')) {
+                valueStart = pos + 1;
+                valueEnd = html.indexOf(html.charAt(pos), valueStart);
+                pos = valueEnd + 1;
+            } else {
+                while (pos < end && !isWhitespace(html.charAt(pos))) {
+                    pos++;
+                }
+                valueEnd = pos;
+            }
+            if (found) {
+                return html.substring(valueStart, valueEnd);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the end tag closing script, style and the other text only elements.
+     *
+     * @param html
+     * @param pos
+     * @param name : lower case tag name
+     * @return index of the end tag, length of the page if there is none
+     */
+    private static int findEndTag(String html, int pos, String name) {
+
+        int length = html.length();
+        while (true) {
+            int candidate = html.indexOf("</", pos);
+            if (candidate < 0) {
+                return length;
+            }
+            int nameEnd = candidate + 2 + name.length();
+            if (html.regionMatches(true, candidate + 2, name, 0, name.length())) {
+                char c = charAt(html, nameEnd);
+                if (c == 0 || c == '/' || c == '>' || isWhitespace(c)) {
+                    return candidate;
+                }
+            }
+            pos = candidate + 2;
+        }
+    }
+
+    /**
+     * @param html
+     * @param pos
+     * @param terminator
+     * @return index after the terminator, length of the page if there is none
+     */
+    private static int skipPast(String html, int pos, String terminator) {
+        int end = html.indexOf(terminator, pos);
+        return end < 0 ? html.length() : end + terminator.length();
+    }
+
+    /**
+     * Accumulates text chunks with the same spacing rules as jsoup.
+     */
+    private static final class TextBuilder {
+
+        private final StringBuilder accum;
+        private boolean blockClosed = false;    //Last token closed a block element
+
+        TextBuilder(int capacity) {
+            accum = new StringBuilder(capacity);
+        }
+
+        /**
+         * Text found between tags.
+         * Whitespace is collapsed to single spaces unless preserved.
+         *
+         * @param chunk
+         * @param preserveWhitespace
+         */
+        void append(String chunk, boolean preserveWhitespace) {
+
+            if (chunk.isEmpty()) {
+                return;
+            }
+            if (blockClosed) {
+                separate();
+                blockClosed = false;
+            }
+            if (preserveWhitespace) {
+                accum.append(chunk);
+                return;
+            }
+
+            boolean stripLeading = endsWithSpace();
+            boolean lastWasWhite = false;
+            boolean reachedNonWhite = false;
+            int length = chunk.length();
+            int c;
+            for (int i = 0; i < length; i += Character.charCount(c)) {
+                c = chunk.codePointAt(i);
+                if (isActuallyWhitespace(c)) {
+                    if ((stripLeading && !reachedNonWhite) || lastWasWhite) {
+                        continue;
+                    }
+                    accum.append(' ');
+                    lastWasWhite = true;
+                } else if (!isInvisible(c)) {
+                    accum.appendCodePoint(c);
+                    lastWasWhite = false;
+                    reachedNonWhite = true;
+                }
+            }
+        }
+
+        void startTag(String name) {
+            blockClosed = false;
+            if (BLOCK_TAGS.contains(name) || "br".equals(name)) {
+                separate();
+            }
+        }
+
+        void endTag(String name) {
+            blockClosed = false;
+            if ("br".equals(name)) {
+                separate();
+            } else if (BLOCK_TAGS.contains(name)) {
+                blockClosed = true;
+            }
+        }
+
+        /**
+         * Comments, doctype and the like
+         */
+        void otherToken() {
+            blockClosed = false;
+        }
+
+        @Override
+        public String toString() {
+            return accum.toString().trim();
+        }
+
+        private void separate() {
+            if (accum.length() > 0 && !endsWithSpace()) {
+                accum.append(' ');
+            }
+        }
+
+        private boolean endsWithSpace() {
+            return accum.length() > 0 && accum.charAt(accum.length() - 1) == ' ';
+        }
+
+        private static boolean isActuallyWhitespace(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == 160;
+        }
+
+        /**
+         * Zero width space and joiners, soft hyphen.
+         * Null characters are dropped by the tree builder.
+         */
+        private static boolean isInvisible(int c) {
+            return c == 8203 || c == 8204 || c == 8205 || c == 173 || c == 0;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.websearcher.impl;
+
+import com.google.inject.Inject;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ResultCollector;
+import com.websearcher.ResultWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes results.txt one line per url as results arrive,
+ * followed by the totals at the end of the run.
+ *
+ * With a single keyword each url lists its indices, with several
+ * keywords the indices are listed per keyword.
+ */
+class TextResultWriter implements ResultWriter {
+
+    private final AppUtils appUtils;
+    private BufferedWriter writer = null;   //Opened on first write
+
+    @Inject
+    TextResultWriter(AppUtils appUtils) {
+        this.appUtils = appUtils;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeResult(String url, Map<String, MatchOffsets> searchIndexMap) throws IOException {
+
+        List<String> keywords = appUtils.getKeywords();
+        writeLine(MessageFormat.format(
+                "{0} : {1}", url,
+                keywords.size() == 1 ?
+                        searchIndexMap.getOrDefault(keywords.get(0), new MatchOffsets()) :
+                        searchIndexMap));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeError(String url, String error) throws IOException {
+        writeLine(MessageFormat.format("{0} : ERROR : {1}", url, error));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeSummary(ResultCollector resultCollector) throws IOException {
+
+        writeLine(MessageFormat.format(
+                "{0} Urls Errored out.", resultCollector.getErrorCount()));
+        writeLine(MessageFormat.format(
+                "{0} Urls Processed.", resultCollector.getResultCount()));
+
+        List<String> keywords = appUtils.getKeywords();
+        if (keywords.size() > 1) {
+            writeLine(MessageFormat.format(
+                    "{0} Keywords searched.", keywords.size()));
+            for (String keyword : keywords) {
+                writeLine(MessageFormat.format(
+                        "{0} : {1} matches in {2} Urls", keyword,
+                        resultCollector.getMatchCount(keyword),
+                        resultCollector.getUrlCount(keyword)));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void writeLine(String line) throws IOException {
+        if (writer == null) {
+            writer = Files.newBufferedWriter(
+                    appUtils.getResultsFilePath(AppConfig.ResultFormat.TEXT), Charset.defaultCharset());
+        }
+        writer.write(line);
+        writer.newLine();
+    }
+}
@@ -0,0 +1,67 @@
+package com.websearcher.impl;
+
+import com.websearcher.Metrics;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Times the connects of a socket factory, the TLS handshake
+ * included for https as it happens in connectSocket.
+ */
+class TimedConnectionSocketFactory implements LayeredConnectionSocketFactory {
+
+    private final ConnectionSocketFactory factory;
+    private final Metrics metrics;
+
+    TimedConnectionSocketFactory(
+            ConnectionSocketFactory factory,
+            Metrics metrics) {
+
+        this.factory = factory;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Socket createSocket(HttpContext context) throws IOException {
+        return factory.createSocket(context);
+    }
+
+    @Override
+    public Socket connectSocket(
+            int connectTimeout,
+            Socket socket,
+            HttpHost host,
+            InetSocketAddress remoteAddress,
+            InetSocketAddress localAddress,
+            HttpContext context) throws IOException {
+
+        long start = System.nanoTime();
+        try {
+            return factory.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        } finally {
+            metrics.record(Metrics.Timer.CONNECT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Tunnels through a proxy, only for a layered factory
+     */
+    @Override
+    public Socket createLayeredSocket(
+            Socket socket,
+            String target,
+            int port,
+            HttpContext context) throws IOException {
+
+        if (!(factory instanceof LayeredConnectionSocketFactory)) {
+            throw new IOException("Can not layer a socket over " + target);
+        }
+        return ((LayeredConnectionSocketFactory) factory).createLayeredSocket(socket, target, port, context);
+    }
+}
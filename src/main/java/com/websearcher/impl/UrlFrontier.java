@@ -0,0 +1,194 @@
+package com.websearcher.impl;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * Crawl frontier, the links waiting to be crawled in the order they were found.
+ *
+ * Up to memorySize links are kept in memory, past that new links are appended
+ * to segment files of segmentSize links in the frontier folder. Once the links
+ * in memory are taken the oldest segment is read back and deleted, the heap
+ * holds at most max(memorySize, segmentSize) links however many are waiting.
+ *
+ * Segment record : url fragment as a UTF-8 byte length (int) and bytes, depth (int).
+ * Not thread safe, the caller holds a lock.
+ */
+final class UrlFrontier implements Closeable {
+
+    private final Path folder;
+    private final int memorySize;
+    private final int segmentSize;
+    private final ArrayDeque<Link> memory = new ArrayDeque<>();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();   //Written segments, oldest first
+    private Segment writing = null;             //Segment being appended to, newest
+    private DataOutputStream writer = null;
+    private int segmentCount = 0;               //Segments started, names them
+    private volatile int size = 0;              //Links waiting, read by the metrics
+
+    /**
+     * @param folder : where segments go, created on the first spill
+     * @param memorySize : links kept in memory before spilling
+     * @param segmentSize : links per segment file
+     */
+    UrlFrontier(Path folder, int memorySize, int segmentSize) {
+        this.folder = folder;
+        this.memorySize = memorySize;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Link found while crawling, taken after every link added before it
+     *
+     * @param urlFragment
+     * @param depth : links followed from a seed url
+     * @throws IOException
+     */
+    void add(String urlFragment, int depth) throws IOException {
+
+        /**
+         * Once links are on disk the new ones go after them
+         */
+        if (writing == null && segments.isEmpty() && memory.size() < memorySize) {
+            memory.add(new Link(urlFragment, depth));
+        } else {
+            spill(urlFragment, depth);
+        }
+        size++;
+    }
+
+    /**
+     * @return oldest link, null if there is none
+     * @throws IOException
+     */
+    Link poll() throws IOException {
+
+        if (memory.isEmpty()) {
+            load();
+        }
+        Link link = memory.poll();
+        if (link != null) {
+            size--;
+        }
+        return link;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return links waiting, in memory and on disk
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return links waiting on disk
+     */
+    int getSpilledCount() {
+        return size - memory.size();
+    }
+
+    /**
+     * Drop the links left and delete the segments
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        writing = null;
+        segments.clear();
+        memory.clear();
+        size = 0;
+        FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    private void spill(String urlFragment, int depth) throws IOException {
+
+        if (writer == null) {
+            Files.createDirectories(folder);
+            writing = new Segment(folder.resolve(String.format("segment-%06d.bin", segmentCount++)));
+            writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(writing.path)));
+        }
+        byte[] bytes = urlFragment.getBytes(StandardCharsets.UTF_8);
+        writer.writeInt(bytes.length);
+        writer.write(bytes);
+        writer.writeInt(depth);
+        if (++writing.count >= segmentSize) {
+            closeSegment();
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        writer.close();
+        writer = null;
+        segments.add(writing);
+        writing = null;
+    }
+
+    /**
+     * Read the oldest segment back into memory, the one being
+     * written is closed first when it is the only one left
+     *
+     * @throws IOException
+     */
+    private void load() throws IOException {
+
+        if (segments.isEmpty() && writing != null) {
+            closeSegment();
+        }
+        Segment segment = segments.poll();
+        if (segment == null) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path)))) {
+            for (int i = 0; i < segment.count; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                memory.add(new Link(new String(bytes, StandardCharsets.UTF_8), in.readInt()));
+            }
+        }
+        Files.delete(segment.path);
+    }
+
+    /**
+     * Link waiting in the frontier
+     */
+    static final class Link {
+
+        final String urlFragment;
+        final int depth;
+
+        Link(String urlFragment, int depth) {
+            this.urlFragment = urlFragment;
+            this.depth = depth;
+        }
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private int count = 0;      //Links written
+
+        Segment(Path path) {
+            this.path = path;
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package com.websearcher.impl;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.websearcher.*;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang3.StringUtils;
-import org.jsoup.Jsoup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,14 +13,20 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.text.MessageFormat;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
- * Implements URL Processor
- * Process method is called from the run method of the Thread.
+ * Implements URL Processor as a staged pipeline :
+ * seed read -> fetch -> extract -> search -> collect.
+ * Each stage has its own thread pool so I/O bound fetchers and
+ * CPU bound parsers can be sized independently.
  * Defined as guice singleton.
  */
 @Singleton
@@ -32,143 +37,735 @@ class UrlProcessorImpl implements UrlProcessor {
     private final IOUtils ioUtils;
     private final ResultCollector resultCollector;
     private final AppUtils appUtils;
-    private final Set<String> processedUrlSet = new HashSet<>();
+    private final AppConfig appConfig;
+    private final DocumentStore documentStore;
+    private final TextExtractor textExtractor;
+    private final SeenUrlSet processedUrlSet;
+    private final TextIndex textIndex;
+    private final Metrics metrics;
 
     @Inject
     UrlProcessorImpl(
             AppUtils appUtils,
+            AppConfig appConfig,
             IOUtils IOUtils,
-            ResultCollector resultCollector) {
+            ResultCollector resultCollector,
+            DocumentStore documentStore,
+            TextExtractor textExtractor,
+            SeenUrlSet processedUrlSet,
+            TextIndex textIndex,
+            Metrics metrics) {
 
         this.appUtils = appUtils;
+        this.appConfig = appConfig;
         this.ioUtils = IOUtils;
         this.resultCollector = resultCollector;
+        this.documentStore = documentStore;
+        this.textExtractor = textExtractor;
+        this.processedUrlSet = processedUrlSet;
+        this.textIndex = textIndex;
+        this.metrics = metrics;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * The seed reader runs on the calling thread, the only one to touch the
+     * CSV parser, and queues the pages per host in the scheduler a batch at
+     * a time. A dispatcher thread claims the pages due, as many as there are
+     * free fetch slots, and hands them to the fetch stage within the
+     * concurrency and per host limits.
+     * Each stage hands the page to the next one through its bounded queue,
+     * the search stage passes the matches to the result collector.
+     * Stages are finished in order : once the seed reader is done no more
+     * fetches can be queued, once the fetchers are done no more extractions...
+     *
+     * In async fetch mode the requests are started from the dispatcher and
+     * no thread waits on them, up to max in flight requests are outstanding.
+     * Each completed fetch goes to a fetch done thread of the pipeline, which
+     * hands it to the extract stage, the client threads never block on a stage.
+     *
+     * In crawl mode the extract stage also keeps the same host links of the
+     * page, they go to the frontier once the page is done. After the seed
+     * urls this thread feeds the frontier to the scheduler until it is empty
+     * and no page is left that could add to it.
      */
     @Override
-    public void processUrl(
+    public boolean processUrl(
             Iterator<CSVRecord> iterableCSVRecord) {
 
-        while (true) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.dispatcher.start();
+
+        try {
 
             /**
-             * Lock only for as short time as possible.
-             *
-             * Each thread needs to get the next url to process.
-             * We want to block for as little time as possible.
-             * The strategy is to check if iterator has anything left.
-             * Leave crtitical section to process if it does, Exit if it does not.
-             *
-             * The set<> tracks URLs processed so far to avoid dups.
-             * We lock on `this` as the instance is a singleton.
+             * Seed read stage.
+             * Only this thread touches the iterator, the set of
+             * URLs processed so far is thread safe on its own.
+             * Blank and duplicate rows never reach the scheduler lock,
+             * the other pages go in batches.
              */
-            String urlFragment = null;
-            synchronized (this) {
-                if (!iterableCSVRecord.hasNext()) {
-                    return;
-                }
-                urlFragment = appUtils.normalizeFragment(iterableCSVRecord.next().get("URL"));
+            int batchSize = appConfig.getSeedBatchSize();
+            List<Page> batch = new ArrayList<>(batchSize);
+            while (iterableCSVRecord.hasNext()) {
+                String urlFragment = appUtils.normalizeFragment(iterableCSVRecord.next().get("URL"));
                 if (StringUtils.isBlank(urlFragment) ||
-                        processedUrlSet.contains(urlFragment)) {
+                        !processedUrlSet.add(urlFragment)) {
                     continue;
                 }
-                processedUrlSet.add(urlFragment);
+                batch.add(new Page(urlFragment, appUtils.getHost(urlFragment), 0));
+                if (batch.size() >= batchSize) {
+                    pipeline.scheduleSeeds(batch);
+                    batch.clear();
+                }
             }
+            pipeline.scheduleSeeds(batch);
 
-            /**
-             * At this point we have the fragment and no need to hold the other
-             * threads hostage. We are free to process this url.
-             * I could have fetched, processed in memory, but thought
-             * it would be nicer to see what the raw files and text files
-             * looked like =)
-             */
+            pipeline.crawl();
+            pipeline.finish();
+            return true;
+
+        } catch (InterruptedException e) {
+
+            LOGGER.error("Interrupted, abandoning the remaining urls", e);
+            Thread.currentThread().interrupt();
+            pipeline.abort();
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void markProcessed(String urlFragment) {
+        processedUrlSet.add(urlFragment);
+    }
+
+    /**
+     * Scheduler, dispatcher and stages of one run
+     */
+    private final class Pipeline {
+
+        private final HostScheduler<Page> scheduler = new HostScheduler<>(
+                appConfig.getMaxRequestsPerHost(),
+                appConfig.getHostRequestInterval(),
+                appConfig.getSchedulerQueueSize());
+        private final PipelineStage fetchStage = newStage(
+                "fetch", appConfig.getFetchThreadCount(), appConfig.getStageQueueSize());
+        private final PipelineStage extractStage = newStage(
+                "extract", appConfig.getExtractThreadCount(), appConfig.getStageQueueSize());
+        private final PipelineStage searchStage = newStage(
+                "search", appConfig.getSearchThreadCount(), appConfig.getStageQueueSize());
+        /**
+         * Async fetch mode only, takes each completed fetch off the client threads.
+         * A fetch holds its slot until its completion runs, so no more than max in flight
+         * wait here and queueing never blocks.
+         */
+        private final PipelineStage fetchDoneStage = appConfig.isAsyncFetch() ? newStage(
+                "fetch-done", 1, appConfig.getMaxInFlight()) : null;
+        private final AdaptiveLimiter limiter = new AdaptiveLimiter(
+                appConfig.isAdaptiveConcurrency() ? appConfig.getMinConcurrency() : getMaxConcurrency(),
+                getMaxConcurrency());
+        private final Thread dispatcher = new Thread(this::dispatch, "host-dispatcher");
+
+        /**
+         * Crawl mode only, all guarded by the crawl lock
+         */
+        private final Object crawlLock = new Object();
+        private final UrlFrontier frontier = appConfig.isCrawl() ? new UrlFrontier(
+                appUtils.getFrontierFolderPath(),
+                appConfig.getFrontierMemorySize(),
+                appConfig.getFrontierSegmentSize()) : null;
+        private final Map<String, Integer> hostPageCounts = new HashMap<>();  //Pages scheduled or in the frontier per host
+        private int openPages = 0;      //Scheduled and not done yet, their links may still come
+
+        Pipeline() {
+            metrics.registerQueue("scheduler", scheduler::getPendingCount);
+            metrics.registerQueue("fetch", fetchStage::getQueueDepth);
+            metrics.registerQueue("extract", extractStage::getQueueDepth);
+            metrics.registerQueue("search", searchStage::getQueueDepth);
+            metrics.registerQueue("in-flight", limiter::getInFlight);
+            metrics.registerQueue("fetch-limit", limiter::getLimit);
+            if (frontier != null) {
+                metrics.registerQueue("frontier", frontier::size);
+            }
+        }
+
+        /**
+         * Ceiling of the fetches in flight, a thread each unless async
+         */
+        private int getMaxConcurrency() {
+            return appConfig.isAsyncFetch() ? appConfig.getMaxInFlight() : appConfig.getFetchThreadCount();
+        }
+
+        /**
+         * Dispatcher thread, hands each page to the fetchers once its host is due.
+         * Claims no more pages than there are free fetch slots, so a claimed page
+         * starts right away and the per host interval holds.
+         */
+        private void dispatch() {
             try {
+                int batchSize = appConfig.getSeedBatchSize();
+                List<Page> pages;
+                while (!(pages = scheduler.take(
+                        Math.max(1, Math.min(batchSize, limiter.getAvailable())))).isEmpty()) {
+                    for (Page page : pages) {
+                        limiter.acquire();
+                        page.dispatchTime = System.nanoTime();
+                        metrics.recordDispatch();
+                        if (appConfig.isAsyncFetch()) {
+                            fetchAsync(page);
+                        } else {
+                            fetch(page);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-                Path rawFilePath = fetchFile(urlFragment);
-                Path textFilePath = extractText(urlFragment, rawFilePath);
-                List<Integer> indices = textFilePath != null ?
-                        searchKeyword(textFilePath) : ImmutableList.of();
+        private void fetch(Page page) {
+            fetchStage.submit(() -> {
+                long start = System.nanoTime();
+                boolean fetched = false;
+                try {
+                    fetched = runStep(page, Metrics.Timer.FETCH, () -> UrlProcessorImpl.this.fetch(page));
+                } finally {
+                    scheduler.done(page.host);
+                    limiter.release(start, fetched);
+                }
+                if (fetched) {
+                    submitExtract(page);
+                } else {
+                    done(page);
+                }
+            });
+        }
 
-                /**
-                 * Successfully processed, lets persist the results.
-                 */
-                resultCollector.setResult(urlFragment, indices);
+        /**
+         * The request is started here, its completion runs on the fetch done
+         * stage, never on the client threads
+         *
+         * @param page
+         */
+        private void fetchAsync(Page page) {
+            long start = System.nanoTime();
+            UrlProcessorImpl.this.fetchAsync(page).whenCompleteAsync((ignored, error) -> {
+                boolean fetched = false;
+                try {
+                    metrics.record(Metrics.Timer.FETCH, System.nanoTime() - start);
+                    scheduler.done(page.host);
+                    if (error != null) {
+                        fail(page, error instanceof CompletionException ?
+                                error.getCause() : error);
+                    } else {
+                        fetched = true;
+                    }
+                } finally {
+                    limiter.release(start, fetched);
+                    if (!fetched) {
+                        done(page);
+                    }
+                }
+                if (fetched) {
+                    submitExtract(page);
+                }
+            }, fetchDoneStage::submit);
+        }
 
-            } catch (Exception e) {
+        /**
+         * Queue the fetched page for extraction, then search
+         *
+         * @param page
+         */
+        private void submitExtract(Page page) {
+            handOver(page, extractStage, () -> {
+                if (runStep(page, Metrics.Timer.EXTRACT, () -> page.searchable = extract(page)) &&
+                        page.searchable) {
+                    handOver(page, searchStage, () -> {
+                        try {
+                            runStep(page, Metrics.Timer.SEARCH, () -> search(page));
+                        } finally {
+                            done(page);
+                        }
+                    });
+                } else {
+                    done(page);
+                }
+            });
+        }
 
-                LOGGER.error(e.getMessage(), e);
+        /**
+         * Queue the page to the next stage. A page the stage does not take
+         * has its error recorded and is done, the task owns it otherwise.
+         *
+         * @param page
+         * @param stage
+         * @param task
+         */
+        private void handOver(Page page, PipelineStage stage, Runnable task) {
+            boolean queued = false;
+            try {
+                stage.submit(task);
+                queued = true;
+            } catch (RuntimeException e) {
+                fail(page, e);
+            } finally {
+                if (!queued) {
+                    done(page);
+                }
+            }
+        }
 
-                /**
-                 * Lets persist the error
-                 */
-                resultCollector.setError(urlFragment, e.getMessage());
+        /**
+         * Queue seed urls for their host's turn, counted against the
+         * per host limit in crawl mode but never dropped
+         *
+         * @param pages
+         * @throws InterruptedException
+         */
+        private void scheduleSeeds(List<Page> pages) throws InterruptedException {
+            if (frontier != null) {
+                synchronized (crawlLock) {
+                    openPages += pages.size();
+                    for (Page page : pages) {
+                        hostPageCounts.merge(page.host, 1, Integer::sum);
+                    }
+                }
+            }
+            scheduler.addAll(pages, page -> page.host);
+        }
+
+        /**
+         * Crawl mode, once the seed urls are queued hand the links of the
+         * frontier to the scheduler a batch at a time. Stops when the frontier
+         * is empty and every page is done, no page is left to add to it.
+         * The lock is let go before the scheduler blocks, stages never wait on it for long.
+         *
+         * @throws InterruptedException
+         */
+        private void crawl() throws InterruptedException {
+
+            if (frontier == null) {
+                return;
+            }
+            int batchSize = appConfig.getSeedBatchSize();
+            List<Page> batch = new ArrayList<>(batchSize);
+            while (true) {
+                synchronized (crawlLock) {
+                    while (frontier.isEmpty() && openPages > 0) {
+                        crawlLock.wait();
+                    }
+                    if (frontier.isEmpty()) {
+                        return;
+                    }
+                    try {
+                        UrlFrontier.Link link;
+                        while (batch.size() < batchSize && (link = frontier.poll()) != null) {
+                            batch.add(new Page(link.urlFragment, appUtils.getHost(link.urlFragment), link.depth));
+                        }
+                    } catch (IOException e) {
+                        LOGGER.error("Frontier could not be read, crawl stopped", e);
+                        return;
+                    }
+                    openPages += batch.size();
+                }
+                scheduler.addAll(batch, page -> page.host);
+                batch.clear();
+            }
+        }
+
+        /**
+         * The page went as far as it goes. In crawl mode its links are queued in
+         * the frontier, the new ones only and within the per host limit.
+         *
+         * @param page
+         */
+        private void done(Page page) {
+
+            if (frontier == null) {
+                return;
+            }
+            List<String> links = page.links;
+            page.links = null;
+            synchronized (crawlLock) {
+                try {
+                    for (int i = 0; links != null && i < links.size() &&
+                            hostPageCounts.getOrDefault(page.host, 0) < appConfig.getMaxPagesPerHost(); i++) {
+                        if (processedUrlSet.add(links.get(i))) {
+                            frontier.add(links.get(i), page.depth + 1);
+                            hostPageCounts.merge(page.host, 1, Integer::sum);
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.error(MessageFormat.format(
+                            "Frontier could not be written, links of {0} dropped", page.urlFragment), e);
+                }
+                openPages--;
+                crawlLock.notifyAll();
+            }
+        }
+
+        /**
+         * All pages are queued, wait for them to go through
+         *
+         * @throws InterruptedException
+         */
+        private void finish() throws InterruptedException {
+            scheduler.close();
+            dispatcher.join();
+            limiter.awaitIdle();    //Every fetch is handed over
+            if (fetchDoneStage != null) {
+                fetchDoneStage.finish();
+            }
+            fetchStage.finish();
+            extractStage.finish();
+            searchStage.finish();
+            closeFrontier();
+        }
+
+        private void abort() {
+            dispatcher.interrupt();
+            if (fetchDoneStage != null) {
+                fetchDoneStage.abort();
+            }
+            fetchStage.abort();
+            extractStage.abort();
+            searchStage.abort();
+            closeFrontier();
+        }
+
+        /**
+         * Links left in the frontier are dropped with their segments
+         */
+        private void closeFrontier() {
+            if (frontier == null) {
+                return;
+            }
+            synchronized (crawlLock) {
+                try {
+                    frontier.close();
+                } catch (IOException e) {
+                    LOGGER.error("Frontier segments could not be deleted", e);
+                }
             }
         }
     }
 
     /**
-     * Read file contents and get matching indices
+     * Stage of a run, overridden by the tests
      *
-     * @param textFilePath
+     * @param name
+     * @param threadCount
+     * @param queueSize
+     * @return
+     */
+    PipelineStage newStage(String name, int threadCount, int queueSize) {
+        return new PipelineStage(name, threadCount, queueSize);
+    }
+
+    /**
+     * Page moving through the stages.
+     * By default the raw files and text files are kept on disk so
+     * it is easy to see what they looked like =)
+     * In memory mode keeps the html and text on the page instead.
+     */
+    private static final class Page {
+
+        private final String urlFragment;
+        private final String host;      //Scheduling key
+        private final int depth;        //Links followed from a seed url
+        private List<String> links;     //Crawl mode, same host links found on the page
+        private String html;            //In memory mode
+        private String text;
+        private boolean searchable;     //Extracted text to search
+        private long dispatchTime;      //Handed to the fetchers
+        private Path rawFilePath;       //Disk mode
+        private String contentType;     //Of the raw file, null if not sent
+        private Path textFilePath;
+
+        Page(String urlFragment, String host, int depth) {
+            this.urlFragment = urlFragment;
+            this.host = host;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Step of a stage, may fail
+     */
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /**
+     * Run and time a step, any failure is recorded as the error of the url
+     * and the page goes no further.
+     *
+     * @param page
+     * @param timer
+     * @param step
+     * @return true if the step completed
+     */
+    private boolean runStep(Page page, Metrics.Timer timer, Step step) {
+        long start = System.nanoTime();
+        try {
+
+            step.run();
+            return true;
+
+        } catch (Exception e) {
+
+            fail(page, e);
+            return false;
+
+        } finally {
+            metrics.record(timer, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record the error of the url
+     *
+     * @param page
+     * @param e
+     */
+    private void fail(Page page, Throwable e) {
+
+        LOGGER.error(e.getMessage(), e);
+        metrics.recordError(e);
+
+        /**
+         * Lets persist the error
+         */
+        resultCollector.setError(page.urlFragment, e.getMessage());
+        complete(page);
+    }
+
+    /**
+     * The url has its result or error
+     *
+     * @param page
+     */
+    private void complete(Page page) {
+        metrics.record(Metrics.Timer.URL, System.nanoTime() - page.dispatchTime);
+    }
+
+    /**
+     * Fetch stage
+     *
+     * @param page
+     * @throws IOException
+     */
+    private void fetch(Page page) throws IOException {
+
+        if (!appConfig.isInMemory()) {
+            page.rawFilePath = fetchFile(page);
+            return;
+        }
+
+        String url = appUtils.getUrl(page.urlFragment);
+        LOGGER.info(MessageFormat.format("Fetch url {0}", url));
+        page.html = ioUtils.getHttpContent(url, appConfig.getConnectionTimeout());
+        if (appConfig.isSaveFiles()) {
+            documentStore.storeRaw(page.urlFragment, page.html);
+        }
+    }
+
+    /**
+     * Async fetch, same outcome as fetch once the future completes.
+     * Nothing is thrown, a url or path that cannot be used fails the future.
+     *
+     * @param page
      * @return
+     */
+    private CompletableFuture<Void> fetchAsync(Page page) {
+        try {
+            return startFetchAsync(page);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Void> startFetchAsync(Page page) {
+
+        String url = appUtils.getUrl(page.urlFragment);
+        if (!appConfig.isInMemory()) {
+            Path localHTML = appUtils.getLocalRawFilePath(page.urlFragment);
+            LOGGER.info(MessageFormat.format(
+                    "Fetch url {0} to {1}",
+                    url, localHTML.toString()));
+            return ioUtils.getHttpFileAsync(url, localHTML.toString(), appConfig.getConnectionTimeout())
+                    .thenAccept(contentType -> {
+                        page.contentType = contentType;
+                        page.rawFilePath = localHTML;
+                    });
+        }
+
+        LOGGER.info(MessageFormat.format("Fetch url {0}", url));
+        return ioUtils.getHttpContentAsync(url, appConfig.getConnectionTimeout())
+                .thenAccept(html -> {
+                    page.html = html;
+                    if (appConfig.isSaveFiles()) {
+                        documentStore.storeRaw(page.urlFragment, html);
+                    }
+                });
+    }
+
+    /**
+     * Extract stage.
+     * A page without text is done, its empty result is persisted here.
+     * The text is indexed when building the index, empty if there is none.
+     * In crawl mode the links of a page short of the max depth are kept on it.
+     *
+     * @param page
+     * @return true when there is text to search
      * @throws IOException
      */
-    private List<Integer> searchKeyword(
-            Path textFilePath) throws IOException {
+    private boolean extract(Page page) throws IOException {
 
-        String text = ioUtils.readTextFile(new File(textFilePath.toString()));
-        if (StringUtils.isBlank(text)) {
-            return null;
+        Consumer<String> links = page.depth < appConfig.getCrawlDepth() ? collectLinks(page) : null;
+        if (appConfig.isInMemory()) {
+            page.text = extractText(page.html, links);
+            page.html = null;
+            if (page.text != null && appConfig.isSaveFiles()) {
+                documentStore.storeText(page.urlFragment, page.text);
+            }
+            if (page.text != null && appConfig.isBuildIndex()) {
+                textIndex.addDocument(page.urlFragment, page.text);
+            }
+        } else {
+            page.textFilePath = extractText(page.urlFragment, page.rawFilePath, page.contentType, links);
         }
 
-        return appUtils.findAllMatches(text);
+        if (page.text == null && page.textFilePath == null) {
+            if (appConfig.isBuildIndex()) {
+                textIndex.addDocument(page.urlFragment, "");
+            }
+            resultCollector.setResult(page.urlFragment, ImmutableMap.of());
+            complete(page);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Keep the links of the page to its own host on the page, resolved and normalized
+     *
+     * @param page
+     * @return gets the href of each link
+     */
+    private Consumer<String> collectLinks(Page page) {
+
+        String pageUrl = appUtils.getUrl(page.urlFragment);
+        List<String> links = new ArrayList<>();
+        page.links = links;
+        return href -> {
+            String link = appUtils.resolveLink(pageUrl, href);
+            if (link != null && page.host.equals(appUtils.getHost(link))) {
+                links.add(link);
+            }
+        };
+    }
+
+    /**
+     * Search stage, successfully processed, lets persist the results.
+     *
+     * @param page
+     * @throws IOException
+     */
+    private void search(Page page) throws IOException {
+
+        Map<String, MatchOffsets> indices = appConfig.isInMemory() ?
+                appUtils.findAllMatches(page.text) : searchKeyword(page.textFilePath);
+        page.text = null;
+        resultCollector.setResult(page.urlFragment, indices);
+        complete(page);
+    }
+
+    /**
+     * Search the UTF-8 bytes of the text file and get matching indices per keyword,
+     * the file is mapped and never decoded
+     *
+     * @param textFilePath
+     * @return
+     * @throws IOException
+     */
+    private Map<String, MatchOffsets> searchKeyword(
+            Path textFilePath) throws IOException {
+
+        return appUtils.findAllMatches(ioUtils.readFileBytes(new File(textFilePath.toString())));
     }
 
     /**
      * Extract and store text from raw html locally in <root folder>/text/
+     * and index it when building the index
      *
      * @param urlFragment
      * @param rawFilePath
+     * @param contentType : of the response, for its charset
+     * @param links : gets the href of each link, null to skip them
      * @return
      * @throws IOException
      */
     private Path extractText(
             String urlFragment,
-            Path rawFilePath) throws IOException {
+            Path rawFilePath,
+            String contentType,
+            Consumer<String> links) throws IOException {
 
-        String html = ioUtils.readTextFile(new File(rawFilePath.toString()));
-        if (StringUtils.isBlank(html)) {
+        String text = extractText(
+                ioUtils.readHtmlFile(new File(rawFilePath.toString()), contentType), links);
+        if (text == null) {
             return null;
         }
-        String text = Jsoup.parse(html).text();
-        if (StringUtils.isBlank(text)) {
-            return null;
-        }
-        text = text.toLowerCase();
 
         Path localTextFiPath = appUtils.getLocalTextFilePath(urlFragment);
         ioUtils.writeTextFile(new File(localTextFiPath.toString()), text);
+        if (appConfig.isBuildIndex()) {
+            textIndex.addDocument(urlFragment, text);
+        }
         return localTextFiPath;
     }
 
     /**
-     * Fetch html and copy it locally in <root folder>/raw/
+     * Extract the lower cased text from html
      *
-     * @param urlFragment
+     * @param html
+     * @param links : gets the href of each link, null to skip them
+     * @return text, null if there is none
+     */
+    private String extractText(String html, Consumer<String> links) {
+
+        if (StringUtils.isBlank(html)) {
+            return null;
+        }
+        String text = textExtractor.extractText(html, links);
+        if (StringUtils.isBlank(text)) {
+            return null;
+        }
+        return text.toLowerCase();
+    }
+
+    /**
+     * Fetch html and copy it locally in <root folder>/raw/,
+     * keeps the content type on the page
+     *
+     * @param page
      * @return
      * @throws IOException
      */
-    private Path fetchFile(String urlFragment) throws IOException {
+    private Path fetchFile(Page page) throws IOException {
 
-        Path localHTML = appUtils.getLocalRawFilePath(urlFragment);
-        String url = appUtils.getUrl(urlFragment);
+        Path localHTML = appUtils.getLocalRawFilePath(page.urlFragment);
+        String url = appUtils.getUrl(page.urlFragment);
         LOGGER.info(MessageFormat.format(
                 "Fetch url {0} to {1}",
                 url, localHTML.toString()));
-        ioUtils.getHttpFile(url, localHTML.toString(), Constants.CONNECTION_TIMEOUT);
+        page.contentType = ioUtils.getHttpFile(url, localHTML.toString(), appConfig.getConnectionTimeout());
         return localHTML;
     }
 }
@@ -1,8 +1,20 @@
 package com.websearcher.impl;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.websearcher.AppConfig;
+import com.websearcher.DocumentStore;
 import com.websearcher.IOUtils;
+import com.websearcher.Metrics;
+import com.websearcher.ProgressJournal;
 import com.websearcher.ResultCollector;
+import com.websearcher.ResultWriter;
+import com.websearcher.SeenUrlSet;
+import com.websearcher.TextExtractor;
+import com.websearcher.TextFolderSearcher;
+import com.websearcher.TextIndex;
 import com.websearcher.UrlProcessor;
 
 public class WebSearcherModule extends AbstractModule {
@@ -13,5 +25,83 @@ public class WebSearcherModule extends AbstractModule {
         bind(IOUtils.class).to(IOUtilsImpl.class);
         bind(UrlProcessor.class).to(UrlProcessorImpl.class);
         bind(ResultCollector.class).to(ResultCollectorImpl.class);
+        bind(TextIndex.class).to(SegmentTextIndex.class);
+        bind(TextFolderSearcher.class).to(ForkJoinTextFolderSearcher.class);
+        bind(Metrics.class).to(PipelineMetrics.class);
+    }
+
+    /**
+     * Streaming extractor unless jsoup was asked for
+     */
+    @Provides
+    @Singleton
+    TextExtractor provideTextExtractor(
+            AppConfig appConfig,
+            StreamingTextExtractor streamingTextExtractor,
+            JsoupTextExtractor jsoupTextExtractor) {
+
+        return appConfig.isJsoupExtractor() ?
+                jsoupTextExtractor : streamingTextExtractor;
+    }
+
+    /**
+     * Writer of the results format asked for
+     */
+    @Provides
+    @Singleton
+    ResultWriter provideResultWriter(
+            AppConfig appConfig,
+            Provider<TextResultWriter> textResultWriter,
+            Provider<JsonLinesResultWriter> jsonLinesResultWriter,
+            Provider<BinaryResultWriter> binaryResultWriter) {
+
+        switch (appConfig.getResultFormat()) {
+            case JSONL:
+                return jsonLinesResultWriter.get();
+            case BINARY:
+                return binaryResultWriter.get();
+            default:
+                return textResultWriter.get();
+        }
+    }
+
+    /**
+     * Pack files in the pack layout, one file per url otherwise
+     */
+    @Provides
+    @Singleton
+    DocumentStore provideDocumentStore(
+            AppConfig appConfig,
+            Provider<AsyncFileDocumentStore> fileDocumentStore,
+            Provider<PackedDocumentStore> packedDocumentStore) {
+
+        return appConfig.getStorageLayout() == AppConfig.StorageLayout.PACK ?
+                packedDocumentStore.get() : fileDocumentStore.get();
+    }
+
+    /**
+     * Exact compact set unless the Bloom filter was asked for
+     */
+    @Provides
+    @Singleton
+    SeenUrlSet provideSeenUrlSet(AppConfig appConfig) {
+
+        return appConfig.isBloomDedup() ?
+                new BloomUrlSet(appConfig.getExpectedUrlCount(), appConfig.getDedupFalsePositiveRate()) :
+                new CompactUrlSet(appConfig.getExpectedUrlCount());
+    }
+
+    /**
+     * No journal when searching the index or the text files, the journal of
+     * an interrupted crawl is kept for its next run
+     */
+    @Provides
+    @Singleton
+    ProgressJournal provideProgressJournal(
+            AppConfig appConfig,
+            Provider<FileProgressJournal> fileProgressJournal) {
+
+        return appConfig.isSearchIndex() || appConfig.isRescanText() ?
+                new NoProgressJournal() : fileProgressJournal.get();
     }
 }
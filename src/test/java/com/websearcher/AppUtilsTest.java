@@ -0,0 +1,99 @@
+package com.websearcher;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AppUtilsTest {
+
+    private AppUtils appUtils = null;
+
+    @Before
+    public void setupTests() throws IOException {
+        appUtils = new AppUtils("test", "/tmp");
+    }
+
+    @Test
+    public void normalizeFragmentTest() {
+
+        assertNull(appUtils.normalizeFragment(" "));
+        assertEquals("google.com", appUtils.normalizeFragment("google.com/"));
+        assertEquals("google.com", appUtils.normalizeFragment("HTTP://Google.COM:80/"));
+        assertEquals("google.com/Maps", appUtils.normalizeFragment(" google.com/Maps#top "));
+        assertEquals("https://google.com/a?q=B", appUtils.normalizeFragment("HTTPS://google.com:443/a?q=B"));
+        assertEquals("google.com:8080/x", appUtils.normalizeFragment("google.com:8080/x/"));
+    }
+
+    @Test
+    public void getUrlTest() {
+
+        assertEquals("http://google.com", appUtils.getUrl("google.com"));
+        assertEquals("https://google.com", appUtils.getUrl("https://google.com"));
+        assertEquals("google.com", appUtils.getHost("https://Google.com:443/x"));
+    }
+
+    @Test
+    public void getUrlEmbeddedUrlTest() {
+
+        assertEquals("http://a.com/r?u=http://b.com", appUtils.getUrl("a.com/r?u=http://b.com"));
+        assertEquals("a.com", appUtils.getHost("a.com/r?u=http://b.com"));
+        assertEquals("a.com/r?u=https://b.com", appUtils.normalizeFragment("A.com/r?u=https://b.com"));
+    }
+
+    @Test
+    public void resolveLinkTest() {
+
+        assertEquals("google.com/a.html", appUtils.resolveLink("http://google.com", "a.html"));
+        assertEquals("google.com/maps/b?q=1", appUtils.resolveLink("http://google.com/maps/x", "b?q=1#top"));
+        assertEquals("google.com", appUtils.resolveLink("http://google.com/maps/x", "/"));
+        assertEquals("https://mail.google.com/x", appUtils.resolveLink("http://google.com", "HTTPS://Mail.google.com/x"));
+        assertEquals("google.com/x", appUtils.resolveLink("https://google.com/a", "http://google.com/x"));
+        assertEquals("https://google.com/c", appUtils.resolveLink("https://google.com/a/b", "../c"));
+        assertNull(appUtils.resolveLink("http://google.com", "mailto:me@google.com"));
+        assertNull(appUtils.resolveLink("http://google.com", "javascript:void(0)"));
+        assertNull(appUtils.resolveLink("http://google.com", "a b"));
+        assertNull(appUtils.resolveLink("http://google.com", " "));
+    }
+
+    @Test
+    public void resolveHostileLinkTest() {
+
+        /**
+         * Links that climb above the host root are dropped, .. inside the path is resolved
+         */
+        assertNull(appUtils.resolveLink("http://a.com/b/c", "../../../../tmp/pwn"));
+        assertNull(appUtils.resolveLink("http://a.com/b/c", "/../tmp/pwn"));
+        assertNull(appUtils.resolveLink("http://a.com", "http://a.com/.."));
+        assertEquals("a.com/tmp/x", appUtils.resolveLink("http://a.com/b/c", "../tmp/./x"));
+        assertEquals("a.com/b/..x", appUtils.resolveLink("http://a.com/b/c", "..x"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void documentPathOutsideRootTest() {
+        appUtils.getLocalRawFilePath("a.com/../../../tmp/pwn");
+    }
+
+    @Test
+    public void getTextFileFragmentTest() {
+
+        assertEquals("google.com", appUtils.getTextFileFragment(appUtils.getLocalTextFilePath("google.com")));
+        assertEquals("google.com/maps/x", appUtils.getTextFileFragment(appUtils.getLocalTextFilePath("google.com/maps/x")));
+        assertEquals("https://google.com/a", appUtils.getTextFileFragment(appUtils.getLocalTextFilePath("https://google.com/a")));
+    }
+
+    @Test
+    public void shardedFolderTest() throws IOException {
+
+        AppUtils sharded = new AppUtils(Collections.singletonList("test"), "/tmp", true);
+        Path textFile = sharded.getLocalTextFilePath("https://google.com/maps?q=a b");
+        assertEquals(3, sharded.getTextFileRoot().relativize(textFile).getNameCount());
+        assertEquals("https://google.com/maps?q=a b", sharded.getTextFileFragment(textFile));
+        assertEquals(textFile.getParent(), sharded.getLocalTextFilePath("https://google.com/maps?q=a b").getParent());
+    }
+}
@@ -0,0 +1,103 @@
+package com.websearcher;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ByteKeywordMatcherTest {
+
+    @Test
+    public void findAllTest() {
+
+        ByteKeywordMatcher matcher = new ByteKeywordMatcher(Arrays.asList("he", "she", "hers", "his"));
+        Map<String, List<Integer>> matches = findAll(matcher, "she said his hers is hers, he she");
+
+        assertEquals(Arrays.asList(0, 30), matches.get("she"));
+        assertEquals(Arrays.asList(27), matches.get("he"));
+        assertEquals(Arrays.asList(9), matches.get("his"));
+        assertEquals(Arrays.asList(13, 21), matches.get("hers"));
+    }
+
+    @Test
+    public void offsetsTest() {
+
+        /**
+         * Offsets count chars : 2 byte, 3 byte and surrogate pair sequences before the match
+         */
+        ByteKeywordMatcher matcher = new ByteKeywordMatcher(Arrays.asList("caf\u00e9", "web"));
+        Map<String, List<Integer>> matches = findAll(matcher,
+                "\u00e9t\u00e9 \u20ac \ud83d\ude00 caf\u00e9 web WEB Caf\u00e9 \u00e9web");
+
+        assertEquals(Arrays.asList(9, 22), matches.get("caf\u00e9"));
+        assertEquals(Arrays.asList(14, 18), matches.get("web"));
+    }
+
+    @Test
+    public void nonOverlappingTest() {
+
+        ByteKeywordMatcher matcher = new ByteKeywordMatcher(Arrays.asList("a a", "aa"));
+        Map<String, List<Integer>> matches = findAll(matcher, "a a a a aa");
+
+        assertEquals(Arrays.asList(0, 4), matches.get("a a"));
+        assertEquals(Arrays.asList(8), matches.get("aa"));
+    }
+
+    @Test
+    public void sameAsKeywordMatcherTest() {
+
+        String[] words = {"the", "then", "he", "web", "webs", "a", "an", "x", "_", "caf\u00e9",
+                "9", "\u4e2d\u6587", "\ud801\udc00", "\u20ac"};
+        String[] separators = {" ", "  ", ", ", ".", "-", "", "\n", "\u00e9", "\ud83d\ude00"};
+        Random random = new Random(17);
+        List<String> keywords = Arrays.asList(
+                "the", "then", "he", "web", "a", "an", "caf\u00e9", "the web", "9", "\u4e2d\u6587", "\u20ac");
+        KeywordMatcher keywordMatcher = new KeywordMatcher(keywords);
+        ByteKeywordMatcher byteKeywordMatcher = new ByteKeywordMatcher(keywords);
+
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int word = 0; word < 60; word++) {
+                text.append(words[random.nextInt(words.length)])
+                        .append(separators[random.nextInt(separators.length)]);
+            }
+            Map<String, List<Integer>> expected = new HashMap<>();
+            keywordMatcher.findAll(text, (keywordIndex, start) ->
+                    expected.computeIfAbsent(keywords.get(keywordIndex), keyword -> new ArrayList<>()).add(start));
+            assertEquals(text.toString(), expected, findAll(byteKeywordMatcher, text.toString()));
+        }
+    }
+
+    @Test
+    public void findAllMatchesTest() throws IOException {
+
+        /**
+         * Byte and char search give the same results, keywords in the same order
+         */
+        AppUtils appUtils = new AppUtils(Arrays.asList("web", "the web", "site"), "/tmp");
+        String text = "a site on the web, the web site";
+        ByteBuffer utf8 = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+
+        Map<String, MatchOffsets> byChars = appUtils.findAllMatches(text);
+        Map<String, MatchOffsets> byBytes = appUtils.findAllMatches(utf8);
+        assertEquals(byChars, byBytes);
+        assertEquals(new ArrayList<>(byChars.keySet()), new ArrayList<>(byBytes.keySet()));
+        assertEquals(0, utf8.position());
+    }
+
+    private static Map<String, List<Integer>> findAll(ByteKeywordMatcher matcher, String text) {
+        Map<String, List<Integer>> matches = new HashMap<>();
+        matcher.findAll(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), (keywordIndex, start) ->
+                matches.computeIfAbsent(matcher.getKeywords().get(keywordIndex), keyword -> new ArrayList<>()).add(start));
+        return matches;
+    }
+}
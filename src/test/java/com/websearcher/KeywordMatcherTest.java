@@ -0,0 +1,77 @@
+package com.websearcher;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class KeywordMatcherTest {
+
+    @Test
+    public void findAllTest() {
+
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("he", "she", "hers", "his"));
+        Map<String, List<Integer>> matches = findAll(matcher, "she said his hers is hers, he she");
+
+        assertEquals(Arrays.asList(0, 30), matches.get("she"));
+        assertEquals(Arrays.asList(27), matches.get("he"));
+        assertEquals(Arrays.asList(9), matches.get("his"));
+        assertEquals(Arrays.asList(13, 21), matches.get("hers"));
+    }
+
+    @Test
+    public void wordBoundaryTest() {
+
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("the", "c++", "a a"));
+        Map<String, List<Integer>> matches = findAll(matcher, "the other theme, bathe the_ the. c++ c++x a a a");
+
+        assertEquals(Arrays.asList(0, 28), matches.get("the"));
+        //Same as \b : "c++" needs a word character right after it
+        assertEquals(Arrays.asList(37), matches.get("c++"));
+        assertEquals(Arrays.asList(42), matches.get("a a"));
+    }
+
+    @Test
+    public void matchesRegexTest() {
+
+        String[] words = {"the", "then", "he", "web", "webs", "a", "an", "x", "_", "caf\u00e9", "9"};
+        String[] separators = {" ", "  ", ", ", ".", "-", "", "\n", "\u00e9"};
+        Random random = new Random(11);
+        List<String> keywords = Arrays.asList("the", "then", "he", "web", "a", "an", "caf\u00e9", "the web", "9");
+        KeywordMatcher matcher = new KeywordMatcher(keywords);
+
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int word = 0; word < 60; word++) {
+                text.append(words[random.nextInt(words.length)])
+                        .append(separators[random.nextInt(separators.length)]);
+            }
+            Map<String, List<Integer>> matches = findAll(matcher, text.toString());
+            for (String keyword : keywords) {
+                List<Integer> expected = new ArrayList<>();
+                Matcher regex = Pattern.compile("\\b" + Pattern.quote(keyword) + "\\b").matcher(text);
+                while (regex.find()) {
+                    expected.add(regex.start());
+                }
+                assertEquals(text + " / " + keyword, expected,
+                        matches.getOrDefault(keyword, new ArrayList<>()));
+            }
+        }
+    }
+
+    private static Map<String, List<Integer>> findAll(KeywordMatcher matcher, String text) {
+        Map<String, List<Integer>> matches = new HashMap<>();
+        matcher.findAll(text, (keywordIndex, start) ->
+                matches.computeIfAbsent(matcher.getKeywords().get(keywordIndex),
+                        keyword -> new ArrayList<>()).add(start));
+        return matches;
+    }
+}
@@ -0,0 +1,155 @@
+package com.websearcher;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the whole WebSearcherApp pipeline in process against a LoadTestServer
+ * and reports throughput, per url latency, peak heap and CPU.
+ * Heap and CPU are the JVM's, so the server's share is included.
+ */
+class LoadTestHarness {
+
+    private static final Pattern SUMMARY = Pattern.compile("^Urls (\\d+) \\(.*?\\), errors (\\d+),");
+
+    /**
+     * Figures of one run
+     */
+    static class Report {
+
+        private int status;
+        private long urlCount;
+        private long errorCount;
+        private double seconds;
+        private double p50;         //Milliseconds from dispatch to result, per url
+        private double p99;
+        private long peakHeap;      //Bytes
+        private double cpuSeconds;
+
+        int getStatus() {
+            return status;
+        }
+
+        long getUrlCount() {
+            return urlCount;
+        }
+
+        long getErrorCount() {
+            return errorCount;
+        }
+
+        double getUrlsPerSecond() {
+            return urlCount / seconds;
+        }
+
+        double getP50() {
+            return p50;
+        }
+
+        double getP99() {
+            return p99;
+        }
+
+        long getPeakHeap() {
+            return peakHeap;
+        }
+
+        double getCpuSeconds() {
+            return cpuSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d urls (%d errors) in %.2f s : %.1f urls/s, url p50 %.1f ms p99 %.1f ms, " +
+                            "peak heap %.1f MB, cpu %.2f s (%.2f cores)",
+                    urlCount, errorCount, seconds, getUrlsPerSecond(), p50, p99,
+                    peakHeap / 1048576.0, cpuSeconds, cpuSeconds / seconds);
+        }
+    }
+
+    private LoadTestHarness() {
+    }
+
+    /**
+     * Crawl every page of the server for its keyword
+     * @param server
+     * @param outputFolder : emptied first by the --restart run
+     * @param appArgs : extra WebSearcherApp options, e.g. --async
+     * @return
+     * @throws IOException
+     */
+    static Report run(
+            LoadTestServer server,
+            Path outputFolder,
+            String... appArgs) throws IOException {
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "-k", LoadTestServer.KEYWORD,
+                "-o", outputFolder.toString(),
+                "--seed-url", server.getSeedUrl(),
+                "--host-interval", "0",
+                "--restart"));
+        args.addAll(Arrays.asList(appArgs));
+
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long cpuStart = getProcessCpuTime();
+        long start = System.nanoTime();
+
+        Report report = new Report();
+        report.status = WebSearcherApp.run(args.toArray(new String[0]));
+
+        report.seconds = (System.nanoTime() - start) / 1e9;
+        report.cpuSeconds = (getProcessCpuTime() - cpuStart) / 1e9;
+        for (MemoryPoolMXBean pool : heapPools) {
+            report.peakHeap += pool.getPeakUsage().getUsed();
+        }
+        readMetrics(outputFolder.resolve("metrics.txt"), report);
+        return report;
+    }
+
+    /**
+     * Url counts and latencies from the metrics file of the run
+     */
+    private static void readMetrics(Path metricsFile, Report report) throws IOException {
+
+        if (!Files.exists(metricsFile)) {
+            return;
+        }
+        for (String line : Files.readAllLines(metricsFile, StandardCharsets.UTF_8)) {
+            Matcher summary = SUMMARY.matcher(line);
+            if (summary.find()) {
+                report.urlCount = Long.parseLong(summary.group(1));
+                report.errorCount = Long.parseLong(summary.group(2));
+            } else if (line.startsWith("url ")) {
+                String[] columns = line.trim().split("\\s+");   //name count mean p50 p90 p99 max
+                report.p50 = Double.parseDouble(columns[3]);
+                report.p99 = Double.parseDouble(columns[5]);
+            }
+        }
+    }
+
+    private static long getProcessCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.OperatingSystemMXBean ?
+                ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : 0;
+    }
+}
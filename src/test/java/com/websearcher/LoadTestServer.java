@@ -0,0 +1,328 @@
+package com.websearcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In process stand in for the crawled sites, serves synthetic pages.
+ *
+ * /urls.txt is the seed CSV listing /page/0 to /page/pageCount-1, spread
+ * over hostCount hosts 127.0.0.1, 127.0.0.2, ... which all loop back to this
+ * server (Linux routes the whole 127/8 block to the loopback interface).
+ * Each page draws its latency, failure, slow drip and words from a Random
+ * seeded with its number, so a run is the same every time.
+ */
+class LoadTestServer implements Closeable {
+
+    static final String KEYWORD = "needle";
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "search", "page", "web", "index", "crawl", "text",
+            "server", "latency", "request", "host", "queue", "thread", "result"};
+    private static final int DRIP_CHUNKS = 10;
+
+    /**
+     * Shape of the load, defaults make a quick run
+     */
+    static class Settings {
+
+        private int pageCount = 200;
+        private int hostCount = 8;
+        private int pageSize = 16 * 1024;       //Bytes of html per page
+        private int minLatency = 5;             //Milliseconds before any response
+        private int meanLatency = 20;           //Mean of the exponential latency on top of minLatency
+        private double errorRate = 0.05;        //Pages whose connection is dropped without a response
+        private double slowDripRate = 0.05;     //Pages sent in chunks spread over dripTime
+        private int dripTime = 500;             //Milliseconds
+        private boolean gzip = true;            //Pages gzipped for clients that accept it
+        private long seed = 42;
+
+        int getPageCount() {
+            return pageCount;
+        }
+
+        void setPageCount(int pageCount) {
+            this.pageCount = pageCount;
+        }
+
+        int getHostCount() {
+            return hostCount;
+        }
+
+        void setHostCount(int hostCount) {
+            if (hostCount < 1 || hostCount > 254) {
+                throw new IllegalArgumentException("Host count must be between 1 and 254: " + hostCount);
+            }
+            this.hostCount = hostCount;
+        }
+
+        int getPageSize() {
+            return pageSize;
+        }
+
+        void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        int getMinLatency() {
+            return minLatency;
+        }
+
+        void setMinLatency(int minLatency) {
+            this.minLatency = minLatency;
+        }
+
+        int getMeanLatency() {
+            return meanLatency;
+        }
+
+        void setMeanLatency(int meanLatency) {
+            this.meanLatency = meanLatency;
+        }
+
+        double getErrorRate() {
+            return errorRate;
+        }
+
+        void setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+        }
+
+        double getSlowDripRate() {
+            return slowDripRate;
+        }
+
+        void setSlowDripRate(double slowDripRate) {
+            this.slowDripRate = slowDripRate;
+        }
+
+        int getDripTime() {
+            return dripTime;
+        }
+
+        void setDripTime(int dripTime) {
+            this.dripTime = dripTime;
+        }
+
+        boolean isGzip() {
+            return gzip;
+        }
+
+        void setGzip(boolean gzip) {
+            this.gzip = gzip;
+        }
+
+        long getSeed() {
+            return seed;
+        }
+
+        void setSeed(long seed) {
+            this.seed = seed;
+        }
+
+        /**
+         * Settings overridden by the loadtest.* system properties
+         * @return
+         */
+        static Settings fromSystemProperties() {
+
+            Settings settings = new Settings();
+            settings.setPageCount(Integer.getInteger("loadtest.pages", settings.pageCount));
+            settings.setHostCount(Integer.getInteger("loadtest.hosts", settings.hostCount));
+            settings.setPageSize(Integer.getInteger("loadtest.pageSize", settings.pageSize));
+            settings.setMinLatency(Integer.getInteger("loadtest.minLatency", settings.minLatency));
+            settings.setMeanLatency(Integer.getInteger("loadtest.meanLatency", settings.meanLatency));
+            settings.setErrorRate(Double.parseDouble(
+                    System.getProperty("loadtest.errorRate", String.valueOf(settings.errorRate))));
+            settings.setSlowDripRate(Double.parseDouble(
+                    System.getProperty("loadtest.slowDripRate", String.valueOf(settings.slowDripRate))));
+            settings.setDripTime(Integer.getInteger("loadtest.dripTime", settings.dripTime));
+            settings.setGzip(Boolean.parseBoolean(
+                    System.getProperty("loadtest.gzip", String.valueOf(settings.gzip))));
+            settings.setSeed(Long.getLong("loadtest.seed", settings.seed));
+            return settings;
+        }
+    }
+
+    /**
+     * What a page does, drawn from its seed
+     */
+    private static final class PageShape {
+
+        private final long latency;
+        private final boolean failed;
+        private final boolean slowDrip;
+        private final Random random;    //Left to draw the words
+
+        PageShape(Settings settings, int number) {
+            random = new Random(settings.seed * 1_000_003 + number);
+            latency = settings.minLatency +
+                    Math.round(-settings.meanLatency * Math.log(1 - random.nextDouble()));
+            failed = random.nextDouble() < settings.errorRate;
+            slowDrip = random.nextDouble() < settings.slowDripRate;
+        }
+    }
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    LoadTestServer(Settings settings) throws IOException {
+
+        this.settings = settings;
+
+        /**
+         * Other loopback addresses only reach a wildcard bind
+         */
+        server = HttpServer.create(settings.hostCount == 1 ?
+                new InetSocketAddress("127.0.0.1", 0) : new InetSocketAddress(0), 1024);
+        server.createContext("/urls.txt", this::serveSeed);
+        server.createContext("/page/", this::servePage);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return seed CSV url to pass as --seed-url
+     */
+    String getSeedUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/urls.txt";
+    }
+
+    /**
+     * @return page requests answered or dropped so far
+     */
+    long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return page requests dropped so far
+     */
+    long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return pages that are dropped every time they are asked for
+     */
+    int getFailingPageCount() {
+        int failing = 0;
+        for (int number = 0; number < settings.pageCount; number++) {
+            if (new PageShape(settings, number).failed) {
+                failing++;
+            }
+        }
+        return failing;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serveSeed(HttpExchange exchange) throws IOException {
+
+        StringBuilder csv = new StringBuilder("Rank,URL\r\n");
+        int port = server.getAddress().getPort();
+        for (int number = 0; number < settings.pageCount; number++) {
+            csv.append(number + 1).append(",127.0.0.").append(1 + number % settings.hostCount)
+                    .append(':').append(port).append("/page/").append(number).append("\r\n");
+        }
+        send(exchange, "text/csv", csv.toString().getBytes(StandardCharsets.US_ASCII), false);
+    }
+
+    private void servePage(HttpExchange exchange) throws IOException {
+
+        requestCount.incrementAndGet();
+        int number;
+        try {
+            number = Integer.parseInt(exchange.getRequestURI().getPath().substring("/page/".length()));
+        } catch (NumberFormatException e) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        PageShape shape = new PageShape(settings, number);
+        try {
+            Thread.sleep(shape.latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+            return;
+        }
+        if (shape.failed) {
+            failedCount.incrementAndGet();
+            exchange.close();   //No response at all, the client sees the connection drop
+            return;
+        }
+        byte[] html = getHtml(number, shape.random);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (settings.gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream(html.length / 4);
+            try (GZIPOutputStream os = new GZIPOutputStream(gzipped)) {
+                os.write(html);
+            }
+            html = gzipped.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        send(exchange, "text/html; charset=UTF-8", html, shape.slowDrip);
+    }
+
+    /**
+     * Html of about pageSize bytes, the keyword is one word in fifty
+     */
+    private byte[] getHtml(int number, Random random) {
+
+        StringBuilder html = new StringBuilder(settings.pageSize + 64)
+                .append("<html><head><title>Page ").append(number)
+                .append("</title><script>var ignored = 1;</script></head><body><p>");
+        while (html.length() < settings.pageSize) {
+            html.append(random.nextInt(50) == 0 ? KEYWORD : WORDS[random.nextInt(WORDS.length)])
+                    .append(random.nextInt(12) == 0 ? ".</p><p>" : " ");
+        }
+        return html.append("</p></body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void send(
+            HttpExchange exchange,
+            String contentType,
+            byte[] body,
+            boolean slowDrip) throws IOException {
+
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            if (!slowDrip) {
+                os.write(body);
+                return;
+            }
+            int chunk = (body.length + DRIP_CHUNKS - 1) / DRIP_CHUNKS;
+            for (int offset = 0; offset < body.length; offset += chunk) {
+                os.write(body, offset, Math.min(chunk, body.length - offset));
+                os.flush();
+                Thread.sleep(settings.dripTime / DRIP_CHUNKS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.websearcher;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MatchOffsetsTest {
+
+    @Test
+    public void roundTripTest() {
+
+        Random random = new Random(3);
+        int[] offsets = new int[10000];
+        int offset = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            offset += random.nextInt(i % 100 == 0 ? 1 << 24 : 200);
+            offsets[i] = offset;
+        }
+
+        MatchOffsets matchOffsets = MatchOffsets.of(offsets);
+        assertEquals(offsets.length, matchOffsets.size());
+        assertArrayEquals(offsets, matchOffsets.toArray());
+        assertTrue(matchOffsets.getByteLength() < offsets.length * 2);
+    }
+
+    @Test
+    public void toStringTest() {
+        assertEquals("[]", new MatchOffsets().toString());
+        assertEquals("[0, 10, 300000]", MatchOffsets.of(0, 10, 300000).toString());
+        assertEquals(MatchOffsets.of(1, 2), MatchOffsets.of(1, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decreasingOffsetTest() {
+        MatchOffsets.of(5, 4);
+    }
+}
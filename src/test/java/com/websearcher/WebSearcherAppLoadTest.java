@@ -0,0 +1,85 @@
+package com.websearcher;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * End to end runs against the in process LoadTestServer.
+ * loadTest is the offline benchmark, skipped unless -Dloadtest=true :
+ * mvn test -Dtest=WebSearcherAppLoadTest#loadTest -Dloadtest=true -Dloadtest.pages=5000 "-Dloadtest.args=--async"
+ */
+public class WebSearcherAppLoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebSearcherAppLoadTest.class);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void threadPerRequestTest() throws IOException {
+        checkSmallRun();
+    }
+
+    @Test
+    public void asyncTest() throws IOException {
+        checkSmallRun("--async", "--in-memory");
+    }
+
+    @Test
+    public void loadTest() throws IOException {
+
+        Assume.assumeTrue(Boolean.getBoolean("loadtest"));
+
+        String args = System.getProperty("loadtest.args", "").trim();
+        try (LoadTestServer server = new LoadTestServer(LoadTestServer.Settings.fromSystemProperties())) {
+            LoadTestHarness.Report report = LoadTestHarness.run(server,
+                    temporaryFolder.getRoot().toPath(), args.isEmpty() ? new String[0] : args.split("\\s+"));
+            LOGGER.info("Load test " + report);
+            assertEquals(0, report.getStatus());
+        }
+    }
+
+    /**
+     * Every page ends up with a result or, for the dropped ones, an error
+     */
+    private void checkSmallRun(String... appArgs) throws IOException {
+
+        LoadTestServer.Settings settings = new LoadTestServer.Settings();
+        settings.setPageCount(60);
+        settings.setHostCount(4);
+        settings.setPageSize(4096);
+        settings.setMinLatency(1);
+        settings.setMeanLatency(5);
+        settings.setErrorRate(0.1);
+        settings.setSlowDripRate(0.1);
+        settings.setDripTime(100);
+
+        Path output = temporaryFolder.getRoot().toPath();
+        try (LoadTestServer server = new LoadTestServer(settings)) {
+            LoadTestHarness.Report report = LoadTestHarness.run(server, output, appArgs);
+
+            assertEquals(0, report.getStatus());
+            assertEquals(60, report.getUrlCount());
+            assertTrue(server.getFailingPageCount() > 0);
+            assertEquals(server.getFailingPageCount(), report.getErrorCount());
+            assertTrue(report.getP50() > 0);
+            assertTrue(report.getP99() >= report.getP50());
+            assertTrue(report.getPeakHeap() > 0);
+        }
+        String results = new String(Files.readAllBytes(output.resolve("results.txt")), StandardCharsets.UTF_8);
+        assertTrue(Pattern.compile("/page/\\d+ : \\[\\d").matcher(results).find());     //Keyword found
+    }
+}
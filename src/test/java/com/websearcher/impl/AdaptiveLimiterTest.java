@@ -0,0 +1,104 @@
+package com.websearcher.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private AtomicLong clock = null;    //Nanos, moved by the test only
+
+    @Before
+    public void setupTests() {
+        clock = new AtomicLong();
+    }
+
+    @Test
+    public void growsToCeilingTest() throws InterruptedException {
+
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 10, clock::get);
+        assertEquals(2, limiter.getLimit());
+        limiter.acquire();
+        assertEquals(1, limiter.getAvailable());
+        limiter.release(clock.get(), true);
+        for (int i = 0; i < 50; i++) {
+            runAtLimit(limiter, FAST, true);
+        }
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(10, limiter.getAvailable());
+    }
+
+    @Test
+    public void latencyCutTest() throws InterruptedException {
+
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 10, clock::get);
+        for (int i = 0; i < 50; i++) {
+            runAtLimit(limiter, FAST, true);
+        }
+
+        /**
+         * Latency jumps as a saturated server queues the requests :
+         * one cut for the fetches that were in flight together
+         */
+        runAtLimit(limiter, SLOW, true);
+        assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    public void errorCutTest() throws InterruptedException {
+
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 10, clock::get);
+        for (int i = 0; i < 50; i++) {
+            runAtLimit(limiter, FAST, true);
+        }
+
+        /**
+         * A few errors are expected of any crawl, a run of them is not
+         */
+        long start = clock.incrementAndGet();
+        limiter.acquire();
+        limiter.release(start, false);
+        assertEquals(10, limiter.getLimit());
+        for (int i = 0; i < 40; i++) {
+            runAtLimit(limiter, FAST, false);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void fixedTest() throws InterruptedException {
+
+        AdaptiveLimiter limiter = new AdaptiveLimiter(5, 5, clock::get);
+        runAtLimit(limiter, FAST, false);
+        runAtLimit(limiter, SLOW, true);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    /**
+     * Fill every slot then release them all, latency later
+     */
+    private void runAtLimit(
+            AdaptiveLimiter limiter,
+            long latency,
+            boolean succeeded) throws InterruptedException {
+
+        int slots = limiter.getLimit();
+        long start = clock.incrementAndGet();   //Starts fall after any earlier cut
+        for (int i = 0; i < slots; i++) {
+            limiter.acquire();
+        }
+        clock.addAndGet(latency);
+        for (int i = 0; i < slots; i++) {
+            limiter.release(start, succeeded);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.websearcher.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ResultCollector;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BinaryResultWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeTest() throws IOException {
+
+        AppUtils appUtils = new AppUtils(Arrays.asList("web", "site"), temporaryFolder.getRoot().toString());
+        ResultCollector resultCollector = mock(ResultCollector.class);
+        when(resultCollector.getErrorCount()).thenReturn(1);
+        when(resultCollector.getResultCount()).thenReturn(1);
+        when(resultCollector.getMatchCount("site")).thenReturn(2L);
+        when(resultCollector.getUrlCount("site")).thenReturn(1L);
+
+        try (BinaryResultWriter writer = new BinaryResultWriter(appUtils)) {
+            writer.writeResult("a.com", ImmutableMap.of("site", MatchOffsets.of(5, 1000)));
+            writer.writeError("b.com", "timeout");
+            writer.writeSummary(resultCollector);
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(appUtils.getResultsFilePath(AppConfig.ResultFormat.BINARY))))) {
+
+            byte[] magic = new byte[4];
+            in.readFully(magic);
+            assertArrayEquals(BinaryResultWriter.MAGIC, magic);
+            assertEquals(2, in.readInt());
+            assertEquals("web", readString(in));
+            assertEquals("site", readString(in));
+
+            assertEquals(BinaryResultWriter.RESULT, in.readByte());
+            in.readInt();
+            assertEquals("a.com", readString(in));
+            assertEquals(1, in.readInt());
+            assertEquals(1, in.readInt());
+            assertEquals(MatchOffsets.of(5, 1000), MatchOffsets.readFrom(in));
+
+            /**
+             * Records are skipped by their length
+             */
+            assertEquals(BinaryResultWriter.ERROR, in.readByte());
+            int length = in.readInt();
+            assertEquals(4 + 5 + 4 + 7, length);
+            in.skipBytes(length);
+
+            assertEquals(BinaryResultWriter.SUMMARY, in.readByte());
+            assertEquals(4 + 4 + 2 * 16, in.readInt());
+            assertEquals(1, in.readInt());
+            assertEquals(1, in.readInt());
+            assertEquals(0, in.readLong());
+            assertEquals(0, in.readLong());
+            assertEquals(2, in.readLong());
+            assertEquals(1, in.readLong());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+package com.websearcher.impl;
+
+import com.websearcher.Constants;
+import com.websearcher.SeenUrlSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompactUrlSetTest {
+
+    @Test
+    public void addTest() {
+
+        SeenUrlSet urlSet = new CompactUrlSet(16);
+        assertTrue(urlSet.add("google.com"));
+        assertTrue(urlSet.add("google.com/maps"));
+        assertTrue(urlSet.add("caf\u00e9.fr"));
+        assertFalse(urlSet.add("google.com"));
+        assertFalse(urlSet.add("caf\u00e9.fr"));
+        assertEquals(3, urlSet.size());
+
+        /**
+         * Grows well past the expected size, long keys need a multi byte length
+         */
+        StringBuilder longUrl = new StringBuilder("example.com/");
+        for (int i = 0; i < 300; i++) {
+            longUrl.append('x');
+        }
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(urlSet.add("site" + i + ".com"));
+        }
+        assertTrue(urlSet.add(longUrl.toString()));
+        for (int i = 0; i < 100000; i += 7) {
+            assertFalse(urlSet.add("site" + i + ".com"));
+        }
+        assertFalse(urlSet.add(longUrl.toString()));
+        assertEquals(100004, urlSet.size());
+    }
+
+    @Test
+    public void keysGrowTest() {
+
+        /**
+         * Sized for the default expected urls, only the tables are
+         * allocated up front, about 16 MB, the keys grow with the urls
+         */
+        CompactUrlSet urlSet = new CompactUrlSet(Constants.EXPECTED_URL_COUNT);
+        long empty = urlSet.getMemoryUsage();
+        assertTrue(empty < 17L * 1024 * 1024);
+        for (int i = 0; i < 100000; i++) {
+            urlSet.add("site" + i + ".com");
+        }
+        assertTrue(urlSet.getMemoryUsage() > empty + 1024 * 1024);
+    }
+
+    @Test
+    public void concurrentAddTest() throws InterruptedException {
+
+        SeenUrlSet urlSet = new CompactUrlSet(1000);
+        AtomicInteger added = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            threads.add(new Thread(() -> {
+                for (int url = 0; url < 20000; url++) {
+                    if (urlSet.add("url" + url)) {
+                        added.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(20000, added.get());
+        assertEquals(20000, urlSet.size());
+    }
+
+    @Test
+    public void bloomAddTest() {
+
+        SeenUrlSet urlSet = new BloomUrlSet(1000, 0.001);
+        assertTrue(urlSet.add("google.com"));
+        assertFalse(urlSet.add("google.com"));
+        int added = 0;
+        for (int i = 0; i < 1000; i++) {
+            added += urlSet.add("site" + i + ".com") ? 1 : 0;
+        }
+        assertTrue(added > 990);
+    }
+}
@@ -0,0 +1,208 @@
+package com.websearcher.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ContentEncodingsTest {
+
+    private static final byte[] PAGE = createPage();
+
+    @Test
+    public void decodeTest() throws IOException {
+
+        assertArrayEquals(PAGE, decode(gzip(PAGE), "gzip"));
+        assertArrayEquals(PAGE, decode(deflate(PAGE, false), "Deflate"));
+        assertArrayEquals(PAGE, decode(deflate(PAGE, true), "deflate"));
+        assertArrayEquals(PAGE, decode(PAGE, null));
+        assertArrayEquals(PAGE, decode(PAGE, "identity"));
+        try {
+            decode(PAGE, "br");
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("br"));
+        }
+    }
+
+    @Test
+    public void subscriberTest() {
+
+        /**
+         * Whatever the chunk boundaries, header fields included
+         */
+        byte[] named = gzipWithName(PAGE, "page.html");
+        Random random = new Random(3);
+        for (int round = 0; round < 20; round++) {
+            int maxChunk = round == 0 ? 1 : 1 + random.nextInt(4096);
+            assertArrayEquals(PAGE, receive(gzip(PAGE), "gzip", maxChunk, random));
+            assertArrayEquals(PAGE, receive(named, "x-gzip", maxChunk, random));
+            assertArrayEquals(PAGE, receive(deflate(PAGE, false), "deflate", maxChunk, random));
+            assertArrayEquals(PAGE, receive(deflate(PAGE, true), "deflate", maxChunk, random));
+            assertArrayEquals(PAGE, receive(PAGE, null, maxChunk, random));
+        }
+        assertArrayEquals(new byte[0], receive(new byte[0], "gzip", 1, random));   //304
+    }
+
+    @Test
+    public void corruptTest() {
+
+        byte[] body = gzip(PAGE);
+        byte[] badCrc = body.clone();
+        badCrc[body.length - 8] ^= 1;
+        for (byte[] bad : Arrays.asList(badCrc, Arrays.copyOf(body, body.length - 3), PAGE)) {
+            try {
+                receive(bad, "gzip", 100, new Random(1));
+                fail();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        try {
+            receive(PAGE, "br", 100, new Random(1));
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause().getMessage().contains("br"));
+        }
+    }
+
+    /**
+     * Feed the body in random chunks to a decoding byte array subscriber
+     */
+    private static byte[] receive(byte[] body, String contentEncoding, int maxChunk, Random random) {
+
+        AtomicLong wireBytes = new AtomicLong();
+        HttpResponse.BodySubscriber<byte[]> subscriber = ContentEncodings.decoding(
+                HttpResponse.BodyHandlers.ofByteArray(), wireBytes::addAndGet)
+                .apply(new ResponseInfo(contentEncoding));
+        boolean[] cancelled = {false};
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+                cancelled[0] = true;
+            }
+        });
+        int pos = 0;
+        while (pos < body.length && !cancelled[0]) {
+            List<ByteBuffer> buffers = new ArrayList<>();
+            for (int i = random.nextInt(3); i >= 0 && pos < body.length; i--) {
+                int length = Math.min(body.length - pos, 1 + random.nextInt(maxChunk));
+                buffers.add(ByteBuffer.wrap(body, pos, length).slice());
+                pos += length;
+            }
+            subscriber.onNext(buffers);
+        }
+        if (!cancelled[0]) {
+            subscriber.onComplete();
+            assertEquals(body.length, wireBytes.get());
+        }
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    private static byte[] decode(byte[] body, String contentEncoding) throws IOException {
+        try (InputStream is = ContentEncodings.decode(new ByteArrayInputStream(body), contentEncoding)) {
+            return is.readAllBytes();
+        }
+    }
+
+    private static byte[] gzip(byte[] page) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(bytes)) {
+            os.write(page);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Gzip with the FNAME and FEXTRA header fields set
+     */
+    private static byte[] gzipWithName(byte[] page, String name) {
+        byte[] body = gzip(page);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(body, 0, 3);
+        bytes.write(body[3] | 8 | 4);
+        bytes.write(body, 4, 6);
+        bytes.write(3);
+        bytes.write(0);
+        bytes.write(new byte[]{1, 2, 3}, 0, 3);
+        byte[] nameBytes = name.getBytes(StandardCharsets.ISO_8859_1);
+        bytes.write(nameBytes, 0, nameBytes.length);
+        bytes.write(0);
+        bytes.write(body, 10, body.length - 10);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] page, boolean raw) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream os = new DeflaterOutputStream(bytes, new Deflater(6, raw))) {
+            os.write(page);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] createPage() {
+        StringBuilder page = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            page.append("<p>word").append(random.nextInt(50)).append("</p>\n");
+        }
+        return page.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class ResponseInfo implements HttpResponse.ResponseInfo {
+
+        private final HttpHeaders headers;
+
+        ResponseInfo(String contentEncoding) {
+            headers = HttpHeaders.of(contentEncoding == null ? Collections.emptyMap() :
+                    Collections.singletonMap("Content-Encoding", Collections.singletonList(contentEncoding)),
+                    (name, value) -> true);
+        }
+
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.websearcher.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ProgressJournal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class FileProgressJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void replayTest() throws IOException {
+
+        AppUtils appUtils = new AppUtils(Arrays.asList("web", "page"), temporaryFolder.getRoot().toString());
+        ProgressJournal journal = new FileProgressJournal(appUtils, new AppConfig());
+        journal.appendResult("a.com", ImmutableMap.of("web", MatchOffsets.of(3, 300, 70000)));
+        journal.appendResult("b.com", ImmutableMap.of());
+        journal.appendResult("c.com", ImmutableMap.of("page", MatchOffsets.of(1)));
+        journal.close();
+
+        /**
+         * Crash in the middle of the next record
+         */
+        try (RandomAccessFile file = new RandomAccessFile(appUtils.getJournalFilePath().toFile(), "rw")) {
+            file.seek(file.length());
+            file.write(new byte[]{0, 0, 0, 0, 10, 'd', '.'});
+        }
+
+        List<String> replayed = new ArrayList<>();
+        ProgressJournal resumed = new FileProgressJournal(appUtils, new AppConfig());
+        assertEquals(3, resumed.replay(recorder(replayed)));
+        assertEquals(Arrays.asList("a.com=[3, 300, 70000]", "b.com", "c.com=null"), replayed);
+
+        /**
+         * Appends go after the last complete record
+         */
+        resumed.appendResult("d.com", ImmutableMap.of());
+        resumed.close();
+        replayed.clear();
+        assertEquals(4, new FileProgressJournal(appUtils, new AppConfig()).replay(recorder(replayed)));
+        assertEquals("d.com", replayed.get(3));
+
+        new FileProgressJournal(appUtils, new AppConfig()).complete();
+        assertFalse(Files.exists(appUtils.getJournalFilePath()));
+    }
+
+    @Test
+    public void otherKeywordsNotReplayedTest() throws IOException {
+
+        String folder = temporaryFolder.getRoot().toString();
+        ProgressJournal journal = new FileProgressJournal(new AppUtils("web", folder), new AppConfig());
+        journal.appendResult("a.com", ImmutableMap.of());
+        journal.close();
+
+        List<String> replayed = new ArrayList<>();
+        assertEquals(0, new FileProgressJournal(new AppUtils("page", folder), new AppConfig()).replay(recorder(replayed)));
+        assertEquals(0, replayed.size());
+    }
+
+    private static ProgressJournal.Listener recorder(List<String> replayed) {
+        return (url, searchIndexMap) ->
+                replayed.add(url + (searchIndexMap.isEmpty() ? "" : "=" + searchIndexMap.get("web")));
+    }
+}
@@ -0,0 +1,59 @@
+package com.websearcher.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.DocumentStore;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ResultCollector;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ForkJoinTextFolderSearcherTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void searchTest() throws IOException {
+
+        AppUtils appUtils = new AppUtils(Arrays.asList("web", "new york"), temporaryFolder.getRoot().toString());
+        write(appUtils, "a.com", "the web, new york web");
+        write(appUtils, "b.com/deep/page", "nothing here");
+        write(appUtils, "https://c.com", "web");
+        write(appUtils, "d.com", "");
+        for (int i = 0; i < 100; i++) {
+            write(appUtils, "e" + i + ".com", "web " + i);
+        }
+
+        AppConfig appConfig = new AppConfig();
+        appConfig.setSearchThreadCount(4);
+        ResultCollector resultCollector = mock(ResultCollector.class);
+        assertEquals(104, new ForkJoinTextFolderSearcher(appUtils, appConfig, mock(DocumentStore.class)).search(resultCollector));
+
+        verify(resultCollector).setResult(eq("a.com"), eq(ImmutableMap.of(
+                "web", MatchOffsets.of(4, 18), "new york", MatchOffsets.of(9))));
+        verify(resultCollector).setResult(eq("b.com/deep/page"), eq(ImmutableMap.of()));
+        verify(resultCollector).setResult(eq("https://c.com"), eq(ImmutableMap.of("web", MatchOffsets.of(0))));
+        verify(resultCollector).setResult(eq("d.com"), eq(ImmutableMap.of()));
+        verify(resultCollector).setResult(eq("e99.com"), eq(ImmutableMap.of("web", MatchOffsets.of(0))));
+    }
+
+    private static void write(AppUtils appUtils, String urlFragment, String text) throws IOException {
+        Path textFile = appUtils.getLocalTextFilePath(urlFragment);
+        Files.createDirectories(textFile.getParent());
+        Files.write(textFile, text.getBytes(Charset.defaultCharset()));
+    }
+}
@@ -0,0 +1,79 @@
+package com.websearcher.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HostSchedulerTest {
+
+    @Test
+    public void interleavesHostsTest() throws InterruptedException {
+
+        HostScheduler<String> scheduler = new HostScheduler<>(1, 0, 100);
+        scheduler.add("a.com", "a1");
+        scheduler.add("a.com", "a2");
+        scheduler.add("a.com", "a3");
+        scheduler.add("b.com", "b1");
+        scheduler.add("c.com", "c1");
+        scheduler.close();
+
+        /**
+         * One request at a time per host, a.com waits for its first url to be done
+         */
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            order.add(scheduler.take());
+        }
+        assertEquals(Arrays.asList("a1", "b1", "c1"), order);
+        assertEquals(2, scheduler.getPendingCount());
+
+        scheduler.done("a.com");
+        assertEquals("a2", scheduler.take());
+        scheduler.done("a.com");
+        assertEquals("a3", scheduler.take());
+        assertNull(scheduler.take());
+    }
+
+    @Test
+    public void batchTest() throws InterruptedException {
+
+        HostScheduler<String> scheduler = new HostScheduler<>(1, 0, 100);
+        scheduler.addAll(Arrays.asList("a1", "a2", "b1", "c1", "c2"), task -> task.substring(0, 1) + ".com");
+        scheduler.close();
+
+        /**
+         * Only the tasks take() would hand out now, one per host
+         */
+        assertEquals(Arrays.asList("a1", "b1"), scheduler.take(2));
+        assertEquals(Collections.singletonList("c1"), scheduler.take(10));
+        assertEquals(2, scheduler.getPendingCount());
+
+        scheduler.done("a.com");
+        scheduler.done("c.com");
+        assertEquals(Arrays.asList("a2", "c2"), scheduler.take(10));
+        assertTrue(scheduler.take(10).isEmpty());
+    }
+
+    @Test
+    public void delaysRequestsToSameHostTest() throws InterruptedException {
+
+        HostScheduler<String> scheduler = new HostScheduler<>(10, 100, 100);
+        scheduler.add("a.com", "a1");
+        scheduler.add("a.com", "a2");
+        scheduler.close();
+
+        long start = System.nanoTime();
+        assertEquals("a1", scheduler.take());
+        assertEquals("a2", scheduler.take());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 100);
+        assertNull(scheduler.take());
+    }
+}
@@ -0,0 +1,57 @@
+package com.websearcher.impl;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class HtmlCharsetsTest {
+
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    @Test
+    public void headerTest() {
+
+        byte[] body = "<p>caf\u00e9</p>".getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals(WINDOWS_1252, HtmlCharsets.detect(body, "text/html; charset=ISO-8859-1"));
+        assertEquals(StandardCharsets.UTF_8, HtmlCharsets.detect(body, "text/html; charset=\"utf-8\""));
+        assertEquals("<p>caf\u00e9</p>", HtmlCharsets.decode(body, "text/html;charset=latin1"));
+    }
+
+    @Test
+    public void metaTest() {
+
+        String html = "<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=windows-1251\">" +
+                "</head><body>\u043f\u0440\u0438\u0432\u0435\u0442</body></html>";
+        byte[] body = html.getBytes(Charset.forName("windows-1251"));
+        assertEquals(Charset.forName("windows-1251"), HtmlCharsets.detect(body, "text/html"));
+        assertEquals(html, HtmlCharsets.decode(body, null));
+
+        //The header wins over the meta tag, UTF-16 in a readable meta tag is UTF-8
+        assertEquals(StandardCharsets.UTF_8, HtmlCharsets.detect(body, "text/html; charset=utf-8"));
+        assertEquals(StandardCharsets.UTF_8, HtmlCharsets.detect(
+                "<meta charset='utf-16'>".getBytes(StandardCharsets.US_ASCII), null));
+    }
+
+    @Test
+    public void byteOrderMarkTest() {
+
+        byte[] text = "\ufeff<p>caf\u00e9</p>".getBytes(StandardCharsets.UTF_16LE);
+        assertEquals(StandardCharsets.UTF_16LE, HtmlCharsets.detect(text, "text/html; charset=utf-8"));
+        assertEquals("<p>caf\u00e9</p>", HtmlCharsets.decode(text, "text/html; charset=utf-8"));
+
+        byte[] utf8 = "\ufeff<p>caf\u00e9</p>".getBytes(StandardCharsets.UTF_8);
+        assertEquals("<p>caf\u00e9</p>", HtmlCharsets.decode(utf8, "text/html; charset=iso-8859-1"));
+    }
+
+    @Test
+    public void fallbackTest() {
+
+        byte[] body = "<p>caf\u00e9</p>".getBytes(StandardCharsets.UTF_8);
+        assertEquals(StandardCharsets.UTF_8, HtmlCharsets.detect(body, null));
+        assertEquals(StandardCharsets.UTF_8, HtmlCharsets.detect(body, "text/html; charset=no-such-charset"));
+        assertEquals("<p>caf\u00e9</p>", HtmlCharsets.decode(body, "text/html"));
+    }
+}
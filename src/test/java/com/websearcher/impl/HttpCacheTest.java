@@ -0,0 +1,63 @@
+package com.websearcher.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void reloadTest() throws IOException {
+
+        Path folder = temporaryFolder.getRoot().toPath();
+        HttpCache cache = new HttpCache(folder, 3600, 1024);
+        cache.put("http://a.com", "page a".getBytes(StandardCharsets.UTF_8),
+                "\"1\"", "Mon, 01 Apr 2019 10:00:00 GMT", "text/html; charset=utf-8");
+
+        /**
+         * Next run finds the entry with its validators
+         */
+        HttpCache reloaded = new HttpCache(folder, 3600, 1024);
+        HttpCache.Entry entry = reloaded.get("http://a.com");
+        assertNotNull(entry);
+        assertEquals("\"1\"", entry.getEtag());
+        assertEquals("Mon, 01 Apr 2019 10:00:00 GMT", entry.getLastModified());
+        assertEquals("text/html; charset=utf-8", entry.getContentType());
+        assertTrue(reloaded.isFresh(entry));
+        assertEquals("page a", new String(reloaded.readBody(entry), StandardCharsets.UTF_8));
+        assertNull(reloaded.get("http://b.com"));
+
+        HttpCache noMaxAge = new HttpCache(folder, 0, 1024);
+        assertFalse(noMaxAge.isFresh(noMaxAge.get("http://a.com")));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedTest() throws IOException, InterruptedException {
+
+        HttpCache cache = new HttpCache(temporaryFolder.getRoot().toPath(), 0, 25);
+        cache.put("http://a.com", new byte[10], null, null, null);
+        Thread.sleep(5);
+        cache.put("http://b.com", new byte[10], null, null, null);
+        Thread.sleep(5);
+        cache.get("http://a.com");
+        cache.put("http://c.com", new byte[10], null, null, null);
+
+        assertNotNull(cache.get("http://a.com"));
+        assertNull(cache.get("http://b.com"));
+        assertNotNull(cache.get("http://c.com"));
+        assertEquals(20, cache.getSize());
+    }
+}
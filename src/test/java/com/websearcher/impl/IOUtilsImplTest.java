@@ -0,0 +1,253 @@
+package com.websearcher.impl;
+
+import com.sun.net.httpserver.HttpServer;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.Constants;
+import com.websearcher.Metrics;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class IOUtilsImplTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void copyTest() throws IOException {
+
+        byte[] page = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(page);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        long copied = IOUtilsImpl.copy(new ByteArrayInputStream(page), os, 8 * 1024);
+
+        assertEquals(page.length, copied);
+        assertArrayEquals(page, os.toByteArray());
+    }
+
+    @Test
+    public void copyEmptyTest() throws IOException {
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertEquals(0, IOUtilsImpl.copy(new ByteArrayInputStream(new byte[0]), os, 1024));
+        assertEquals(0, os.size());
+    }
+
+    @Test
+    public void conditionalGetTest() throws IOException {
+
+        /**
+         * Page with an ETag, answers 304 when the client already has it
+         */
+        AtomicInteger fullResponses = new AtomicInteger();
+        AtomicInteger notModified = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/page", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                fullResponses.incrementAndGet();
+                byte[] body = "<p>cached page</p>".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/page";
+        AppUtils appUtils = new AppUtils("page", temporaryFolder.getRoot().toString());
+        AppConfig appConfig = new AppConfig();
+        appConfig.setHttpCache(true);
+        Metrics metrics = mock(Metrics.class);
+        try {
+            try (IOUtilsImpl ioUtils = new IOUtilsImpl(appUtils, appConfig, metrics)) {
+                assertEquals("<p>cached page</p>", ioUtils.getHttpContent(url, 5));
+            }
+            for (Metrics.Timer timer : new Metrics.Timer[]{
+                    Metrics.Timer.DNS, Metrics.Timer.CONNECT, Metrics.Timer.RESPONSE, Metrics.Timer.DOWNLOAD}) {
+                verify(metrics).record(eq(timer), anyLong());
+            }
+            verify(metrics).addBytes(18);
+
+            /**
+             * Next run revalidates and reuses the body
+             */
+            try (IOUtilsImpl ioUtils = new IOUtilsImpl(appUtils, appConfig, mock(Metrics.class))) {
+                assertEquals("<p>cached page</p>", ioUtils.getHttpContent(url, 5));
+                String filePath = temporaryFolder.newFile().toString();
+                ioUtils.getHttpFile(url, filePath, 5);
+                assertEquals("<p>cached page</p>", ioUtils.readTextFile(new File(filePath)));
+            }
+        } finally {
+            server.stop(0);
+        }
+
+        assertEquals(1, fullResponses.get());
+        assertEquals(2, notModified.get());
+    }
+
+    @Test
+    public void compressionTest() throws Exception {
+
+        /**
+         * Page sent gzipped to clients that ask for it
+         */
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < 2000; i++) {
+            html.append("<p>caf\u00e9 page ").append(i % 10).append("</p>");
+        }
+        byte[] page = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(gzipped)) {
+            os.write(page);
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/page", exchange -> {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            byte[] body = gzip ? gzipped.toByteArray() : page;
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/page";
+        AppUtils appUtils = new AppUtils("page", temporaryFolder.getRoot().toString());
+        AppConfig appConfig = new AppConfig();
+        AtomicLong wireBytes = new AtomicLong();
+        Metrics metrics = mock(Metrics.class);
+        doAnswer(invocation -> wireBytes.addAndGet(invocation.getArgument(0))).when(metrics).addBytes(anyLong());
+        String expected = new String(page, StandardCharsets.UTF_8);
+        try {
+            try (IOUtilsImpl ioUtils = new IOUtilsImpl(appUtils, appConfig, metrics)) {
+                assertEquals(expected, ioUtils.getHttpContent(url, 5));
+                assertEquals(expected, ioUtils.getHttpContentAsync(url, 5).join());
+
+                File file = temporaryFolder.newFile();
+                assertEquals("text/html; charset=UTF-8", ioUtils.getHttpFile(url, file.toString(), 5));
+                assertArrayEquals(page, Files.readAllBytes(file.toPath()));
+                assertEquals("text/html; charset=UTF-8", ioUtils.getHttpFileAsync(url, file.toString(), 5).join());
+                assertArrayEquals(page, Files.readAllBytes(file.toPath()));
+            }
+            assertEquals(4L * gzipped.size(), wireBytes.get());
+
+            appConfig.setCompression(false);
+            wireBytes.set(0);
+            try (IOUtilsImpl ioUtils = new IOUtilsImpl(appUtils, appConfig, metrics)) {
+                assertEquals(expected, ioUtils.getHttpContent(url, 5));
+                assertEquals(expected, ioUtils.getHttpContentAsync(url, 5).join());
+            }
+            assertEquals(2L * page.length, wireBytes.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void shardedFileTest() throws IOException {
+
+        /**
+         * Disk mode with the sharded layout, the hashed sub folders are created on the first fetch
+         */
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "<p>sharded page</p>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        String urlFragment = "127.0.0.1:" + server.getAddress().getPort() + "/a/b";
+        AppUtils appUtils = new AppUtils(Collections.singletonList("page"), temporaryFolder.getRoot().toString(), true);
+        File rawFile = appUtils.getLocalRawFilePath(urlFragment).toFile();
+        try (IOUtilsImpl ioUtils = new IOUtilsImpl(appUtils, new AppConfig(), mock(Metrics.class))) {
+            ioUtils.getHttpFile(appUtils.getUrl(urlFragment), rawFile.toString(), 5);
+        } finally {
+            server.stop(0);
+        }
+
+        assertEquals(appUtils.getRawFileRoot().toFile(), rawFile.getParentFile().getParentFile().getParentFile());
+        assertEquals("<p>sharded page</p>", new String(Files.readAllBytes(rawFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void malformedUrlAsyncTest() throws IOException {
+
+        /**
+         * Fails the future instead of throwing to the caller
+         */
+        AppUtils appUtils = new AppUtils("page", temporaryFolder.getRoot().toString());
+        try (IOUtilsImpl ioUtils = new IOUtilsImpl(appUtils, new AppConfig(), mock(Metrics.class))) {
+            assertTrue(ioUtils.getHttpContentAsync("http://bad url", 5).isCompletedExceptionally());
+            assertTrue(ioUtils.getHttpFileAsync("http://bad url",
+                    temporaryFolder.getRoot() + "/raw/bad url.html", 5).isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void readBytesTest() throws IOException {
+
+        /**
+         * Small files are read into the heap, large ones mapped
+         */
+        byte[] small = "a small page".getBytes(StandardCharsets.UTF_8);
+        byte[] large = new byte[Constants.MAP_THRESHOLD + 1];
+        new Random(42).nextBytes(large);
+        File smallFile = temporaryFolder.newFile();
+        File largeFile = temporaryFolder.newFile();
+        Files.write(smallFile.toPath(), small);
+        Files.write(largeFile.toPath(), large);
+
+        ByteBuffer smallBytes = IOUtilsImpl.readBytes(smallFile.toPath());
+        ByteBuffer largeBytes = IOUtilsImpl.readBytes(largeFile.toPath());
+
+        assertFalse(smallBytes instanceof MappedByteBuffer);
+        assertEquals(ByteBuffer.wrap(small), smallBytes);
+        assertTrue(largeBytes instanceof MappedByteBuffer);
+        assertEquals(ByteBuffer.wrap(large), largeBytes);
+    }
+}
@@ -0,0 +1,51 @@
+package com.websearcher.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ResultCollector;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JsonLinesResultWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeTest() throws IOException {
+
+        AppUtils appUtils = new AppUtils(Arrays.asList("web", "the \"web\""), temporaryFolder.getRoot().toString());
+        ResultCollector resultCollector = mock(ResultCollector.class);
+        when(resultCollector.getErrorCount()).thenReturn(1);
+        when(resultCollector.getResultCount()).thenReturn(2);
+        when(resultCollector.getMatchCount("web")).thenReturn(3L);
+        when(resultCollector.getUrlCount("web")).thenReturn(1L);
+
+        try (JsonLinesResultWriter writer = new JsonLinesResultWriter(appUtils)) {
+            writer.writeResult("a.com/caf\u00e9", ImmutableMap.of("web", MatchOffsets.of(1, 20, 300)));
+            writer.writeResult("b.com", ImmutableMap.of());
+            writer.writeError("c.com", "Read timed out\n\tat \\ \u0001");
+            writer.writeSummary(resultCollector);
+        }
+
+        assertEquals(Arrays.asList(
+                "{\"url\":\"a.com/caf\u00e9\",\"matches\":{\"web\":[1,20,300]}}",
+                "{\"url\":\"b.com\",\"matches\":{}}",
+                "{\"url\":\"c.com\",\"error\":\"Read timed out\\n\\tat \\\\ \\u0001\"}",
+                "{\"summary\":{\"errors\":1,\"urls\":2,\"keywords\":{\"web\":{\"matches\":3,\"urls\":1}," +
+                        "\"the \\\"web\\\"\":{\"matches\":0,\"urls\":0}}}}"),
+                Files.readAllLines(appUtils.getResultsFilePath(AppConfig.ResultFormat.JSONL), StandardCharsets.UTF_8));
+    }
+}
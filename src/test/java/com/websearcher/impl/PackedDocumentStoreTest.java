@@ -0,0 +1,90 @@
+package com.websearcher.impl;
+
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.DocumentStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PackedDocumentStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void storeAndReadTest() throws IOException {
+
+        AppUtils appUtils = new AppUtils("web", temporaryFolder.getRoot().toString());
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            html.append("<p>web page ").append(i).append("</p>");
+        }
+
+        DocumentStore store = new PackedDocumentStore(appUtils, new AppConfig());
+        store.storeRaw("a.com/x/y", html.toString());
+        store.storeText("a.com/x/y", "web page caf\u00e9");
+        store.storeText("b.com", "");
+        store.storeText("b.com", "second");
+        assertEquals("web page caf\u00e9", store.readText("a.com/x/y"));
+        store.close();
+
+        Path pack = appUtils.getPackFolderPath().resolve("raw-00000.pack");
+        assertTrue(Files.size(pack) < html.length() / 4);
+
+        store = new PackedDocumentStore(appUtils, new AppConfig());
+        assertEquals(html.toString(), store.readRaw("a.com/x/y"));
+        assertEquals("second", store.readText("b.com"));
+        assertNull(store.readText("c.com"));
+        assertNull(store.readRaw("b.com"));
+        assertEquals(new HashSet<>(Arrays.asList("a.com/x/y", "b.com")), new HashSet<>(store.getTextFragments()));
+        store.close();
+    }
+
+    @Test
+    public void recoverTest() throws IOException {
+
+        AppUtils appUtils = new AppUtils("web", temporaryFolder.getRoot().toString());
+        DocumentStore store = new PackedDocumentStore(appUtils, new AppConfig());
+        store.storeText("a.com", "first");
+        store.storeText("b.com", "second");
+        store.close();
+
+        /**
+         * Crash : the last index entry is lost and a record is torn
+         */
+        Path index = appUtils.getPackFolderPath().resolve("text-00000.idx");
+        Path pack = appUtils.getPackFolderPath().resolve("text-00000.pack");
+        long packSize = Files.size(pack);
+        try (RandomAccessFile file = new RandomAccessFile(index.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(pack.toFile(), "rw")) {
+            file.seek(file.length());
+            file.write(new byte[]{0, 0, 0, 5, 'c', '.'});
+        }
+
+        store = new PackedDocumentStore(appUtils, new AppConfig());
+        assertEquals("first", store.readText("a.com"));
+        assertEquals("second", store.readText("b.com"));
+        assertEquals(packSize, Files.size(pack));
+        store.storeText("c.com", "third");
+        store.close();
+
+        store = new PackedDocumentStore(appUtils, new AppConfig());
+        assertEquals("second", store.readText("b.com"));
+        assertEquals("third", store.readText("c.com"));
+        store.close();
+    }
+}
@@ -0,0 +1,86 @@
+package com.websearcher.impl;
+
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.Metrics;
+import com.websearcher.ResultCollector;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PipelineMetricsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void histogramTest() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100000; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50000.5, histogram.getMean(), 0.001);
+        for (double percentile : new double[]{50, 90, 99}) {
+            double expected = percentile * 1000;
+            assertEquals(expected, histogram.getPercentile(percentile), expected * 0.04);
+        }
+        assertEquals(100000, histogram.getPercentile(100));
+        assertEquals(0, new LatencyHistogram().getPercentile(50));
+    }
+
+    @Test
+    public void reportTest() throws Exception {
+
+        AppUtils appUtils = new AppUtils("web", temporaryFolder.getRoot().toString());
+        ResultCollector resultCollector = mock(ResultCollector.class);
+        when(resultCollector.getResultCount()).thenReturn(14);    //5 restored from the journal
+        when(resultCollector.getErrorCount()).thenReturn(1);
+
+        PipelineMetrics metrics = new PipelineMetrics(appUtils, new AppConfig(), () -> resultCollector);
+        metrics.start();
+
+        /**
+         * The rates start with the first dispatch and only count the urls of this run
+         */
+        assertEquals(0, metrics.getUrlsPerSecond(), 0);
+        metrics.recordDispatch();
+        for (int url = 0; url < 10; url++) {
+            metrics.record(Metrics.Timer.URL, 1_000_000);
+        }
+        assertTrue(metrics.getUrlsPerSecond() > 0);
+        metrics.record(Metrics.Timer.FETCH, 120_000_000);
+        metrics.addBytes(2048);
+        metrics.recordError(new UncheckedIOException(new IOException("timeout")));
+        metrics.registerQueue("fetch", () -> 7);
+
+        ObjectName name = new ObjectName("com.websearcher:type=Metrics");
+        assertEquals(10L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "UrlCount"));
+        Map<String, Double> latencies = metrics.getLatencies();
+        assertEquals(1.0, latencies.get("fetch.count"), 0);
+        assertEquals(120.0, latencies.get("fetch.p99"), 120 * 0.04);
+        assertTrue(metrics.getSummary().contains("queues fetch=7"));
+
+        metrics.close();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        String report = new String(Files.readAllBytes(appUtils.getMetricsFilePath()), StandardCharsets.UTF_8);
+        assertTrue(report.startsWith("Urls 10 "));
+        assertTrue(report.contains("UncheckedIOException 1"));
+    }
+}
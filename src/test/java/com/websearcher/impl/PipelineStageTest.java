@@ -0,0 +1,29 @@
+package com.websearcher.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class PipelineStageTest {
+
+    @Test
+    public void chainedStagesTest() throws InterruptedException {
+
+        PipelineStage first = new PipelineStage("first", 4, 2);
+        PipelineStage second = new PipelineStage("second", 1, 1);
+        AtomicInteger completed = new AtomicInteger();
+
+        /**
+         * Small queues, submit blocks instead of rejecting
+         */
+        for (int task = 0; task < 500; task++) {
+            first.submit(() -> second.submit(completed::incrementAndGet));
+        }
+        first.finish();
+        second.finish();
+
+        assertEquals(500, completed.get());
+    }
+}
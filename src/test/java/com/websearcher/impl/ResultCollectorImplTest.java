@@ -1,31 +1,130 @@
 package com.websearcher.impl;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.websearcher.Constants;
+import com.websearcher.MatchOffsets;
+import com.websearcher.ProgressJournal;
 import com.websearcher.ResultCollector;
+import com.websearcher.ResultWriter;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 public class ResultCollectorImplTest {
 
+    private ResultWriter resultWriter = null;
+    private ProgressJournal progressJournal = null;
     private ResultCollector resultCollector = null;
 
     @Before
     public void setupTests() {
-        resultCollector = new ResultCollectorImpl();
+        resultWriter = mock(ResultWriter.class);
+        progressJournal = mock(ProgressJournal.class);
+        resultCollector = new ResultCollectorImpl(resultWriter, progressJournal);
     }
 
     @Test
-    public void setResultTest() {
-        resultCollector.setResult("test", ImmutableList.of(1,2,3));
-        Map<String, List<Integer>> results = resultCollector.getSearchResultMap();
-        assertEquals(1, results.size());
-        assertEquals(3, results.values().iterator().next().size());
+    public void setResultTest() throws IOException {
+
+        resultCollector.setResult("test", ImmutableMap.of("keyword", MatchOffsets.of(1,2,3)));
+        resultCollector.setError("bad", "timeout");
+        resultCollector.close();
+
+        assertEquals(1, resultCollector.getResultCount());
+        assertEquals(1, resultCollector.getErrorCount());
+        assertEquals(3, resultCollector.getMatchCount("keyword"));
+        assertEquals(1, resultCollector.getUrlCount("keyword"));
+
+        InOrder inOrder = inOrder(resultWriter);
+        inOrder.verify(resultWriter).writeResult(eq("test"), eq(ImmutableMap.of("keyword", MatchOffsets.of(1,2,3))));
+        inOrder.verify(resultWriter).writeError("bad", "timeout");
+        inOrder.verify(resultWriter).writeSummary(resultCollector);
+        inOrder.verify(resultWriter).close();
+    }
+
+    @Test
+    public void onlyNewResultsJournaledTest() throws IOException {
+
+        resultCollector.restoreResult("old", ImmutableMap.of("keyword", MatchOffsets.of(4)));
+        resultCollector.setResult("new", ImmutableMap.of());
+        resultCollector.setError("new-bad", "timeout");
+        resultCollector.close();
+
+        assertEquals(2, resultCollector.getResultCount());
+        assertEquals(1, resultCollector.getErrorCount());
+        verify(resultWriter).writeResult(eq("old"), eq(ImmutableMap.of("keyword", MatchOffsets.of(4))));
+        verify(resultWriter).writeError("new-bad", "timeout");
+        verify(progressJournal).appendResult(eq("new"), eq(ImmutableMap.of()));
+        verify(progressJournal, never()).appendResult(eq("old"), any());
+        verify(progressJournal, never()).appendResult(eq("new-bad"), any());
     }
 
-    //More tests here
+    @Test
+    public void concurrentResultsTest() throws Exception {
+
+        List<Thread> threads = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            final int threadIndex = thread;
+            threads.add(new Thread(() -> {
+                for (int url = 0; url < 1000; url++) {
+                    resultCollector.setResult(threadIndex + "-" + url,
+                            ImmutableMap.of("keyword", MatchOffsets.of(url)));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        resultCollector.close();
+
+        assertEquals(8000, resultCollector.getResultCount());
+        assertEquals(8000, resultCollector.getMatchCount("keyword"));
+        verify(resultWriter, times(8000)).writeResult(any(), any());
+    }
+
+    @Test(timeout = 10000)
+    public void boundedQueueTest() throws Exception {
+
+        /**
+         * The writer is stuck on the first result, the producer fills
+         * the queue and then waits instead of queueing more
+         */
+        CountDownLatch writerStuck = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writerStuck.await();
+            return null;
+        }).when(resultWriter).writeResult(eq("0"), any());
+        AtomicInteger queued = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            for (int url = 0; url < Constants.RESULT_QUEUE_SIZE + 2; url++) {
+                resultCollector.setResult(String.valueOf(url), ImmutableMap.of());
+                queued.incrementAndGet();
+            }
+        });
+        producer.start();
+        while (queued.get() <= Constants.RESULT_QUEUE_SIZE || producer.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(Constants.RESULT_QUEUE_SIZE + 1, queued.get());
+
+        writerStuck.countDown();
+        producer.join();
+        resultCollector.close();
+        verify(resultWriter, times(Constants.RESULT_QUEUE_SIZE + 2)).writeResult(any(), any());
+    }
 }
@@ -0,0 +1,111 @@
+package com.websearcher.impl;
+
+import com.websearcher.AppConfig;
+import com.websearcher.AppUtils;
+import com.websearcher.MatchOffsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class SegmentTextIndexTest {
+
+    private static final String[] TEXTS = {
+            "new york, new york. the new  york times",
+            "send an e-mail to news@new.york or e - mail",
+            "aaa aaa aaa and new yorker",
+            "",
+            "tabs\tnew\tyork and new york_city"
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void searchMatchesTextSearchTest() throws IOException {
+
+        List<String> keywords = Arrays.asList("new york", "e-mail", "aaa aaa", "york", "mail", "missing");
+        AppUtils appUtils = new AppUtils(keywords, temporaryFolder.getRoot().toString());
+
+        /**
+         * Two segments, one per run
+         */
+        SegmentTextIndex index = new SegmentTextIndex(appUtils, new AppConfig());
+        index.clear();
+        for (int i = 0; i < 3; i++) {
+            index.addDocument("url" + i, TEXTS[i]);
+        }
+        index.close();
+        index = new SegmentTextIndex(appUtils, new AppConfig());
+        for (int i = 3; i < TEXTS.length; i++) {
+            index.addDocument("url" + i, TEXTS[i]);
+        }
+        index.close();
+
+        Map<String, Map<String, MatchOffsets>> found = new HashMap<>();
+        assertEquals(TEXTS.length, new SegmentTextIndex(appUtils, new AppConfig()).search(appUtils.getKeywords(), found::put));
+        for (int i = 0; i < TEXTS.length; i++) {
+            assertEquals(TEXTS[i], appUtils.findAllMatches(TEXTS[i]), found.get("url" + i));
+        }
+    }
+
+    @Test
+    public void concurrentSegmentsTest() throws Exception {
+
+        /**
+         * Every document fills a segment, written outside the
+         * lock while the other threads keep adding
+         */
+        AppUtils appUtils = new AppUtils(Arrays.asList("new york", "mail"), temporaryFolder.getRoot().toString());
+        AppConfig appConfig = new AppConfig();
+        appConfig.setIndexSegmentSize(1);
+        SegmentTextIndex index = new SegmentTextIndex(appUtils, appConfig);
+        index.clear();
+        List<Thread> threads = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            final int threadIndex = thread;
+            threads.add(new Thread(() -> {
+                for (int doc = 0; doc < 50; doc++) {
+                    try {
+                        index.addDocument(threadIndex + "-" + doc, TEXTS[doc % TEXTS.length]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        index.close();
+
+        Map<String, Map<String, MatchOffsets>> found = new HashMap<>();
+        assertEquals(200, new SegmentTextIndex(appUtils, appConfig).search(appUtils.getKeywords(), found::put));
+        assertEquals(200, found.size());
+        for (int doc = 0; doc < 50; doc++) {
+            assertEquals(appUtils.findAllMatches(TEXTS[doc % TEXTS.length]), found.get("3-" + doc));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedKeywordTest() throws IOException {
+
+        AppUtils appUtils = new AppUtils("c++", temporaryFolder.getRoot().toString());
+        SegmentTextIndex index = new SegmentTextIndex(appUtils, new AppConfig());
+        index.addDocument("url", "c++ code");
+        index.close();
+        index.search(appUtils.getKeywords(), (url, matches) -> { });
+    }
+}
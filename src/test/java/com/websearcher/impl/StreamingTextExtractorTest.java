@@ -0,0 +1,133 @@
+package com.websearcher.impl;
+
+import com.websearcher.TextExtractor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingTextExtractorTest {
+
+    private static final String[] CORPUS = {
+            "",
+            "plain text, no tags",
+            "<html><head><title>Title</title></head><body><p>Hello <b>bold</b> world</p></body></html>",
+            "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title> Spaced   Title </title>"
+                    + "<link rel=\"stylesheet\" href=\"a.css\"></head>\n<body>\n<div>One</div>Two<span>Three</span></body></html>",
+            "<div><p>a</p><span>b</span></div>c<br>d<br/>e</br>f",
+            "<p>Tom &amp; Jerry &lt;3 &copy; &nbsp;x&nbsp;&nbsp;y &#169; &#x41; &amp</p>",
+            "<script>var a = '<p>not text</p>';</script>after<style>p { color: red }</style>done",
+            "<SCRIPT type='text/javascript'>if (a < b && c > d) {}</SCRIPT >Text",
+            "<pre>  keep\n   this   </pre>  and <b>collapse\n\n   this</b>",
+            "<textarea>  a &amp; <b>b</b>  </textarea><title>x</title>",
+            "<!-- comment <p>hidden</p> -->visible<!---->too<!-->end",
+            "<a href=\"/x?a=1&b=2\" title='it\"s'>link</a> <a href=x=y>two</a> <img alt=\"a > b\">tail",
+            "<ul><li>one<li>two</ul><table><tr><td>c1<td>c2</tr></table>",
+            "3 < 4 and 5 > 2, a <3 b",
+            "<iframe><p>raw &amp; text</p></iframe><noframes>nf</noframes><xmp><b>x</b></xmp>",
+            "<h1>Heading</h1><h2>Sub</h2><section><article><header>h</header><main>m</main></article></section>",
+            "before<![CDATA[ cdata <b> ]]>after",
+            "<?xml version=\"1.0\"?><p>xml decl</p>",
+            "soft\u00adhy\u200bphen zero\u200dwidth caf\u00e9",
+            "<div>a</div><!-- c --><div>b</div> <em>c</em>",
+            "<p>unterminated <b attr=\"x",
+            "<p>dangling tag <b",
+            "text </ odd> more </>",
+    };
+
+    private TextExtractor streamingExtractor = null;
+    private TextExtractor jsoupExtractor = null;
+
+    @Before
+    public void setupTests() {
+        streamingExtractor = new StreamingTextExtractor();
+        jsoupExtractor = new JsoupTextExtractor();
+    }
+
+    @Test
+    public void matchesJsoupOnCorpusTest() {
+        for (String html : CORPUS) {
+            assertEquals(html, jsoupExtractor.extractText(html), streamingExtractor.extractText(html));
+        }
+    }
+
+    @Test
+    public void matchesJsoupOnGeneratedPagesTest() {
+        Random random = new Random(7);
+        for (int page = 0; page < 50; page++) {
+            String html = generatePage(random);
+            assertEquals(html, jsoupExtractor.extractText(html), streamingExtractor.extractText(html));
+        }
+    }
+
+    @Test
+    public void linksMatchJsoupTest() {
+
+        for (String html : CORPUS) {
+            List<String> expected = new ArrayList<>();
+            List<String> links = new ArrayList<>();
+            assertEquals(html, jsoupExtractor.extractText(html, expected::add),
+                    streamingExtractor.extractText(html, links::add));
+            assertEquals(html, expected, links);
+        }
+
+        List<String> links = new ArrayList<>();
+        streamingExtractor.extractText("<a name=top>x</a><A class=\"c\" HREF = 'a.html?x=1&amp;y=2'>a</A>"
+                + "<area href=\"no\"><a href=\"/b\"/><a\nhref=c>c</a><script>'<a href=d>'</script>", links::add);
+        assertEquals(Arrays.asList("a.html?x=1&y=2", "/b", "c"), links);
+    }
+
+    @Test
+    public void skipsScriptAndStyleTest() {
+        assertEquals("a b c", streamingExtractor.extractText(
+                "a<script>alert('x')</script>b<style>.x{}</style>c"));
+    }
+
+    /**
+     * Well formed page made of the usual building blocks
+     *
+     * @param random
+     * @return
+     */
+    private static String generatePage(Random random) {
+
+        String[] words = {"the", "web", "searcher", "fetch", "page",
+                "&amp;", "caf&eacute;", "a&nbsp;b", "x &lt; y", "3 < 4", "\n  "};
+        String[] inline = {"b", "i", "span", "a", "em", "strong", "code"};
+        String[] block = {"div", "p", "li", "h2", "section", "article", "blockquote"};
+
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Page</title>"
+                + "<script>var x = '<div>';</script></head><body>");
+        for (int section = 0; section < 20; section++) {
+            String blockTag = block[random.nextInt(block.length)];
+            html.append('<').append(blockTag).append(" class=\"c").append(section).append("\">");
+            for (int word = 0; word < 30; word++) {
+                String text = words[random.nextInt(words.length)];
+                if (random.nextInt(5) == 0) {
+                    String inlineTag = inline[random.nextInt(inline.length)];
+                    html.append('<').append(inlineTag).append('>').append(text)
+                            .append("</").append(inlineTag).append('>');
+                } else {
+                    html.append(text);
+                }
+                html.append(random.nextBoolean() ? " " : "");
+                if (random.nextInt(40) == 0) {
+                    html.append("<br>");
+                }
+            }
+            html.append("</").append(blockTag).append('>');
+            if (random.nextInt(4) == 0) {
+                html.append("<!-- section ").append(section).append(" -->");
+            }
+            if (random.nextInt(4) == 0) {
+                html.append("tail text");
+            }
+        }
+        return html.append("</body></html>").toString();
+    }
+}
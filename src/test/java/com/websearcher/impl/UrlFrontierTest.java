@@ -0,0 +1,99 @@
+package com.websearcher.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UrlFrontierTest {
+
+    private Path folder = null;
+    private UrlFrontier frontier = null;
+
+    @Before
+    public void setupTests() throws IOException {
+        folder = Files.createTempDirectory("frontier").resolve("frontier");
+        frontier = new UrlFrontier(folder, 4, 3);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        frontier.close();
+        Files.deleteIfExists(folder.getParent());
+    }
+
+    @Test
+    public void inMemoryTest() throws IOException {
+
+        frontier.add("a.com", 1);
+        frontier.add("a.com/x", 2);
+
+        assertEquals(2, frontier.size());
+        assertEquals(0, frontier.getSpilledCount());
+        assertFalse(Files.exists(folder));
+        assertLink("a.com", 1, frontier.poll());
+        assertLink("a.com/x", 2, frontier.poll());
+        assertNull(frontier.poll());
+        assertTrue(frontier.isEmpty());
+    }
+
+    @Test
+    public void spillTest() throws IOException {
+
+        /**
+         * Links come back in the order they were added, whether they
+         * were kept in memory or spilled, while links keep being added
+         */
+        int added = 0;
+        int taken = 0;
+        for (; added < 10; added++) {
+            frontier.add("a.com/" + added, added);
+        }
+        assertEquals(10, frontier.size());
+        assertEquals(6, frontier.getSpilledCount());
+        assertEquals(2, Files.list(folder).count());    //Two full segments
+
+        for (; taken < 5; taken++) {
+            assertLink("a.com/" + taken, taken, frontier.poll());
+        }
+        for (; added < 13; added++) {
+            frontier.add("a.com/\u00e9/" + added, added);
+        }
+        while (!frontier.isEmpty()) {
+            String expected = taken < 10 ? "a.com/" + taken : "a.com/\u00e9/" + taken;
+            assertLink(expected, taken, frontier.poll());
+            taken++;
+        }
+        assertEquals(13, taken);
+        assertNull(frontier.poll());
+        assertEquals(0, Files.list(folder).count());    //Segments are deleted once read
+
+        frontier.add("a.com/again", 0);
+        assertEquals(0, frontier.getSpilledCount());
+    }
+
+    @Test
+    public void closeTest() throws IOException {
+
+        for (int i = 0; i < 20; i++) {
+            frontier.add("a.com/" + i, 0);
+        }
+        frontier.close();
+
+        assertTrue(frontier.isEmpty());
+        assertFalse(Files.exists(folder));
+    }
+
+    private static void assertLink(String urlFragment, int depth, UrlFrontier.Link link) {
+        assertEquals(urlFragment, link.urlFragment);
+        assertEquals(depth, link.depth);
+    }
+}
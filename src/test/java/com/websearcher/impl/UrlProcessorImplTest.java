@@ -8,8 +8,15 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -17,24 +24,32 @@ public class UrlProcessorImplTest {
 
     private IOUtils ioUtils = null;
     private ResultCollector resultCollector = null;
+    private DocumentStore documentStore = null;
+    private AppConfig appConfig = null;
     private UrlProcessor urlProcessor = null;
     @Before
     public void setupTests() throws IOException {
 
         ioUtils = mock(IOUtils.class);
         resultCollector = mock(ResultCollector.class);
+        documentStore = mock(DocumentStore.class);
+        appConfig = new AppConfig();
         urlProcessor = new UrlProcessorImpl(
                 new AppUtils("test", "/tmp"),
-                ioUtils, resultCollector);
+                appConfig, ioUtils, resultCollector, documentStore,
+                new StreamingTextExtractor(), new CompactUrlSet(16), mock(TextIndex.class), mock(Metrics.class));
     }
 
     @Test
     public void testProcessUrl() throws IOException {
 
-        doNothing().when(ioUtils).getHttpFile(
-                anyString(), anyString(), eq(Constants.CONNECTION_TIMEOUT));
+        when(ioUtils.getHttpFile(anyString(), anyString(), eq(Constants.CONNECTION_TIMEOUT)))
+                .thenReturn("text/html; charset=UTF-8");
         doNothing().when(ioUtils).writeTextFile(any(File.class), anyString());
-        when(ioUtils.readTextFile(any(File.class))).thenReturn("This is a text file");
+        when(ioUtils.readHtmlFile(any(File.class), eq("text/html; charset=UTF-8")))
+                .thenReturn("This is a Test file");
+        when(ioUtils.readFileBytes(any(File.class))).thenAnswer(invocation ->
+                ByteBuffer.wrap("this is a test file".getBytes(StandardCharsets.UTF_8)));
 
         try(ByteArrayInputStream is = new ByteArrayInputStream(
                 createSampleCSV(
@@ -46,15 +61,223 @@ public class UrlProcessorImplTest {
 
             Iterator<CSVRecord> recordsIterator =
                     CSVFormat.EXCEL.withHeader().parse(bufferedReader).iterator();
-            urlProcessor.processUrl(recordsIterator);
+            assertTrue(urlProcessor.processUrl(recordsIterator));
         }
 
         verify(ioUtils).getHttpFile(eq("http://facebook.com"), any(), eq(Constants.CONNECTION_TIMEOUT));
         verify(ioUtils).getHttpFile(eq("http://google.com"), any(), eq(Constants.CONNECTION_TIMEOUT));
         verify(ioUtils).getHttpFile(eq("http://twitter.com"), any(), eq(Constants.CONNECTION_TIMEOUT));
 
-        verify(ioUtils, times(3)).writeTextFile(any(File.class), anyString());
-        verify(ioUtils, times(6)).readTextFile(any(File.class));
+        verify(ioUtils, times(3)).writeTextFile(any(File.class), eq("this is a test file"));
+        verify(ioUtils, times(3)).readHtmlFile(any(File.class), anyString());
+        verify(ioUtils, times(3)).readFileBytes(any(File.class));
+        verify(resultCollector).setResult(eq("google.com"), eq(Collections.singletonMap("test", MatchOffsets.of(10))));
+    }
+
+    @Test
+    public void testProcessUrlInMemory() throws IOException {
+
+        appConfig.setInMemory(true);
+        appConfig.setSaveFiles(true);
+        when(ioUtils.getHttpContent(anyString(), eq(Constants.CONNECTION_TIMEOUT)))
+                .thenReturn("<html><body>This is a Test page</body></html>");
+
+        try(ByteArrayInputStream is = new ByteArrayInputStream(
+                createSampleCSV(
+                        "facebook.com",
+                        "google.com").getBytes());
+
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is))) {
+
+            Iterator<CSVRecord> recordsIterator =
+                    CSVFormat.EXCEL.withHeader().parse(bufferedReader).iterator();
+            urlProcessor.processUrl(recordsIterator);
+        }
+
+        verify(ioUtils).getHttpContent(eq("http://facebook.com"), eq(Constants.CONNECTION_TIMEOUT));
+        verify(ioUtils).getHttpContent(eq("http://google.com"), eq(Constants.CONNECTION_TIMEOUT));
+        verify(ioUtils, never()).getHttpFile(anyString(), anyString(), anyInt());
+        verify(ioUtils, never()).readHtmlFile(any(File.class), any());
+        verify(ioUtils, never()).readFileBytes(any(File.class));
+        verify(documentStore).storeText(eq("google.com"), eq("this is a test page"));
+        verify(resultCollector).setResult(eq("facebook.com"), eq(Collections.singletonMap("test", MatchOffsets.of(10))));
+    }
+
+    @Test
+    public void testProcessUrlAsync() throws IOException {
+
+        appConfig.setInMemory(true);
+        appConfig.setAsyncFetch(true);
+        appConfig.setMaxInFlight(1);
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("Connection refused"));
+        when(ioUtils.getHttpContentAsync(eq("http://facebook.com"), eq(Constants.CONNECTION_TIMEOUT)))
+                .thenReturn(CompletableFuture.supplyAsync(() -> "<p>This is a Test page</p>"));
+        when(ioUtils.getHttpContentAsync(eq("http://google.com"), eq(Constants.CONNECTION_TIMEOUT)))
+                .thenReturn(failed);
+
+        try(ByteArrayInputStream is = new ByteArrayInputStream(
+                createSampleCSV(
+                        "facebook.com",
+                        "google.com").getBytes());
+
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is))) {
+
+            Iterator<CSVRecord> recordsIterator =
+                    CSVFormat.EXCEL.withHeader().parse(bufferedReader).iterator();
+            urlProcessor.processUrl(recordsIterator);
+        }
+
+        verify(ioUtils, never()).getHttpContent(anyString(), anyInt());
+        verify(resultCollector).setResult(eq("facebook.com"), eq(Collections.singletonMap("test", MatchOffsets.of(10))));
+        verify(resultCollector).setError(eq("google.com"), eq("Connection refused"));
+    }
+
+    @Test(timeout = 10000)
+    public void testProcessUrlAsyncMalformedUrl() throws IOException {
+
+        /**
+         * A url the client cannot parse throws before any future exists,
+         * it is recorded as an error and the run still ends, crawl included
+         */
+        appConfig.setInMemory(true);
+        appConfig.setAsyncFetch(true);
+        appConfig.setMaxInFlight(1);
+        appConfig.setCrawlDepth(1);
+        when(ioUtils.getHttpContentAsync(eq("http://bad url"), eq(Constants.CONNECTION_TIMEOUT)))
+                .thenThrow(new IllegalArgumentException("Illegal character in authority at index 7"));
+        when(ioUtils.getHttpContentAsync(eq("http://google.com"), eq(Constants.CONNECTION_TIMEOUT)))
+                .thenReturn(CompletableFuture.completedFuture("<p>This is a Test page</p>"));
+
+        try(ByteArrayInputStream is = new ByteArrayInputStream(
+                createSampleCSV(
+                        "bad url",
+                        "google.com").getBytes());
+
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is))) {
+
+            Iterator<CSVRecord> recordsIterator =
+                    CSVFormat.EXCEL.withHeader().parse(bufferedReader).iterator();
+            urlProcessor.processUrl(recordsIterator);
+        }
+
+        verify(resultCollector).setError(eq("bad url"), eq("Illegal character in authority at index 7"));
+        verify(resultCollector).setResult(eq("google.com"), eq(Collections.singletonMap("test", MatchOffsets.of(10))));
+    }
+
+    @Test
+    public void testCrawl() throws IOException {
+
+        /**
+         * Same host links are followed two links deep, the frontier spills
+         * past two links and a.com is capped at 5 pages
+         */
+        appConfig.setInMemory(true);
+        appConfig.setCrawlDepth(2);
+        appConfig.setMaxPagesPerHost(5);
+        appConfig.setFrontierMemorySize(2);
+        appConfig.setFrontierSegmentSize(2);
+        when(ioUtils.getHttpContent(anyString(), eq(Constants.CONNECTION_TIMEOUT))).thenReturn("<p>no links</p>");
+        when(ioUtils.getHttpContent(eq("http://site.com"), eq(Constants.CONNECTION_TIMEOUT))).thenReturn(
+                "<a href=\"/one\">1</a><a href=\"two/\">2</a><a href=\"http://other.com/x\">x</a>"
+                        + "<a href=\"#top\">top</a><a href=\"mailto:me@site.com\">me</a>");
+        when(ioUtils.getHttpContent(eq("http://site.com/one"), eq(Constants.CONNECTION_TIMEOUT))).thenReturn(
+                "<a href=\"deep\">deep</a><a href=\"/two\">two</a><a href=\"/\">home</a>");
+        when(ioUtils.getHttpContent(eq("http://site.com/deep"), eq(Constants.CONNECTION_TIMEOUT))).thenReturn(
+                "<a href=\"/too-deep\">too deep</a>");
+        when(ioUtils.getHttpContent(eq("http://a.com"), eq(Constants.CONNECTION_TIMEOUT))).thenReturn(
+                "<a href=/1>1</a><a href=/2>2</a><a href=/3>3</a><a href=/4>4</a><a href=/5>5</a><a href=/6>6</a>");
+
+        try(ByteArrayInputStream is = new ByteArrayInputStream(
+                createSampleCSV(
+                        "site.com",
+                        "a.com").getBytes());
+
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is))) {
+
+            Iterator<CSVRecord> recordsIterator =
+                    CSVFormat.EXCEL.withHeader().parse(bufferedReader).iterator();
+            urlProcessor.processUrl(recordsIterator);
+        }
+
+        for (String url : new String[]{"http://site.com", "http://site.com/one", "http://site.com/two",
+                "http://site.com/deep", "http://a.com", "http://a.com/1", "http://a.com/4"}) {
+            verify(ioUtils).getHttpContent(eq(url), eq(Constants.CONNECTION_TIMEOUT));
+        }
+        verify(ioUtils, never()).getHttpContent(eq("http://site.com/too-deep"), anyInt());
+        verify(ioUtils, never()).getHttpContent(eq("http://other.com/x"), anyInt());
+        verify(ioUtils, never()).getHttpContent(eq("http://a.com/5"), anyInt());
+        verify(ioUtils, times(9)).getHttpContent(anyString(), anyInt());
+        verify(resultCollector, times(9)).setResult(anyString(), any());
+    }
+
+    @Test
+    public void testProcessUrlInterrupted() throws IOException {
+
+        /**
+         * An interrupted run is reported as abandoned, its journal is kept
+         */
+        try(ByteArrayInputStream is = new ByteArrayInputStream(
+                createSampleCSV(
+                        "facebook.com",
+                        "google.com").getBytes());
+
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is))) {
+
+            Iterator<CSVRecord> recordsIterator =
+                    CSVFormat.EXCEL.withHeader().parse(bufferedReader).iterator();
+            Thread.currentThread().interrupt();
+            assertFalse(urlProcessor.processUrl(recordsIterator));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCrawlExtractRejected() throws IOException {
+
+        /**
+         * A fetched page the extract stage does not take is recorded as an
+         * error and done, the crawl does not wait on it forever
+         */
+        appConfig.setInMemory(true);
+        appConfig.setAsyncFetch(true);
+        appConfig.setCrawlDepth(1);
+        when(ioUtils.getHttpContentAsync(anyString(), eq(Constants.CONNECTION_TIMEOUT)))
+                .thenReturn(CompletableFuture.completedFuture("<a href=\"/one\">1</a>"));
+        urlProcessor = new UrlProcessorImpl(
+                new AppUtils("test", "/tmp"),
+                appConfig, ioUtils, resultCollector, documentStore,
+                new StreamingTextExtractor(), new CompactUrlSet(16), mock(TextIndex.class), mock(Metrics.class)) {
+            @Override
+            PipelineStage newStage(String name, int threadCount, int queueSize) {
+                if (!"extract".equals(name)) {
+                    return super.newStage(name, threadCount, queueSize);
+                }
+                return new PipelineStage(name, threadCount, queueSize) {
+                    @Override
+                    void submit(Runnable task) {
+                        throw new RejectedExecutionException("Extract stage is closed");
+                    }
+                };
+            }
+        };
+
+        try(ByteArrayInputStream is = new ByteArrayInputStream(
+                createSampleCSV(
+                        "site.com",
+                        "google.com").getBytes());
+
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is))) {
+
+            Iterator<CSVRecord> recordsIterator =
+                    CSVFormat.EXCEL.withHeader().parse(bufferedReader).iterator();
+            urlProcessor.processUrl(recordsIterator);
+        }
+
+        verify(resultCollector).setError(eq("site.com"), eq("Extract stage is closed"));
+        verify(resultCollector).setError(eq("google.com"), eq("Extract stage is closed"));
+        verify(resultCollector, never()).setResult(anyString(), any());
     }
 
     private String createSampleCSV(String...urls) throws IOException {